@@ -1,5 +1,6 @@
 package com.kelseyde.calvin.board;
 
+import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.utils.notation.FEN;
 
 import java.util.Arrays;
@@ -22,6 +23,7 @@ public class Board {
     private Move[] moves;
     private boolean white;
     private int ply;
+    private boolean secondaryKeyEnabled;
 
     public Board() {
         this.variant     = ChessVariant.STANDARD;
@@ -187,14 +189,21 @@ public class Board {
         state.halfMoveClock = resetClock ? 0 : ++state.halfMoveClock;
 
         final int castleRights = updateCastleRights(from, to, piece);
-        state.key ^= Key.rights(state.rights, castleRights);
-        state.rights = castleRights;
+        if (castleRights != state.rights) {
+            state.key ^= Key.rights(variant, state.rights, castleRights);
+            if (secondaryKeyEnabled) {
+                state.secondaryKey ^= Key.secondaryRights(variant, state.rights, castleRights);
+            }
+            state.rights = castleRights;
+        }
 
         final int enPassantFile = move.isPawnDoubleMove() ? File.of(to) : -1;
         state.key ^= Key.enPassant(state.enPassantFile, enPassantFile);
-        state.enPassantFile = enPassantFile;
-
         state.key ^= Key.sideToMove();
+        if (secondaryKeyEnabled) {
+            state.secondaryKey ^= Key.secondaryEnPassant(state.enPassantFile, enPassantFile) ^ Key.secondarySideToMove();
+        }
+        state.enPassantFile = enPassantFile;
     }
 
     private void unmakeCastlingMove(int from, int to) {
@@ -269,6 +278,47 @@ public class Board {
         }
     }
 
+    /**
+     * Computes the Zobrist key of the position after a move, without making it. A search can use it to start loading the
+     * transposition table entry of a child position before calling {@link #makeMove(Move)}.
+     * <br>The move is expected to be legal (or at least pseudo legal) in the current position.
+     * @param move the move
+     * @return the key that {@link #key()} would return after the move is made
+     */
+    public long keyAfter(Move move) {
+        final int from = move.from();
+        final int to = move.to();
+        final Piece piece = pieces[from];
+        long key = state.key;
+        if (move.isCastling()) {
+            final boolean kingside = Castling.isKingside(from, to);
+            final int rookTo = Castling.rookTo(kingside, white);
+            key ^= switch (variant) {
+                case STANDARD -> Key.piece(from, to, Piece.KING, white)
+                        ^ Key.piece(Castling.rookFrom(kingside, white), rookTo, Piece.ROOK, white);
+                // In Chess960 the 'to' square of a castling move is the rook square
+                case CHESS960 -> Key.piece(from, Castling.kingTo(kingside, white), Piece.KING, white)
+                        ^ Key.piece(to, rookTo, Piece.ROOK, white);
+            };
+        } else if (move.isEnPassant()) {
+            key ^= Key.piece(from, to, Piece.PAWN, white) ^ Key.piece(white ? to - 8 : to + 8, Piece.PAWN, !white);
+        } else {
+            final Piece captured = pieces[to];
+            key ^= move.isPromotion()
+                    ? Key.piece(from, Piece.PAWN, white) ^ Key.piece(to, move.promoPiece(), white)
+                    : Key.piece(from, to, piece, white);
+            if (captured != null) {
+                key ^= Key.piece(to, captured, !white);
+            }
+        }
+        final int castleRights = updateCastleRights(from, to, piece);
+        if (castleRights != state.rights) {
+            key ^= Key.rights(variant, state.rights, castleRights);
+        }
+        key ^= Key.enPassant(state.enPassantFile, move.isPawnDoubleMove() ? File.of(to) : -1);
+        return key ^ Key.sideToMove();
+    }
+
     /**
      * Make a 'null' move, meaning the side to move passes their turn and gives the opponent a double-move. Used exclusively
      * during null-move pruning during search.
@@ -276,8 +326,9 @@ public class Board {
     public void makeNullMove() {
         white = !white;
         final long key = state.key ^ Key.nullMove(state.enPassantFile);
+        final long secondaryKey = secondaryKeyEnabled ? state.secondaryKey ^ Key.secondaryNullMove(state.enPassantFile) : 0L;
         final long[] nonPawnKeys = new long[] {state.nonPawnKeys[0], state.nonPawnKeys[1]};
-        final BoardState newState = new BoardState(key, state.pawnKey, nonPawnKeys, null, -1, state.getRights(), 0);
+        final BoardState newState = new BoardState(key, secondaryKey, state.pawnKey, nonPawnKeys, null, -1, state.getRights(), 0);
         states[ply++] = state;
         state = newState;
     }
@@ -310,6 +361,9 @@ public class Board {
     private void updateKeys(int from, int to, Piece piece, boolean white) {
         final long hash = Key.piece(from, to, piece, white);
         state.key ^= hash;
+        if (secondaryKeyEnabled) {
+            state.secondaryKey ^= Key.secondaryPiece(from, to, piece, white);
+        }
         if (piece == Piece.PAWN) {
             state.pawnKey ^= hash;
         } else {
@@ -321,6 +375,9 @@ public class Board {
     private void updateKeys(int square, Piece piece, boolean white) {
         final long hash = Key.piece(square, piece, white);
         state.key ^= hash;
+        if (secondaryKeyEnabled) {
+            state.secondaryKey ^= Key.secondaryPiece(square, piece, white);
+        }
         if (piece == Piece.PAWN) {
             state.pawnKey ^= hash;
         } else {
@@ -354,6 +411,33 @@ public class Board {
         bitboards[colourIndex] |= toggleMask;
     }
 
+    /**
+     * Puts a piece on an empty square. Only the bitboards and the mailbox are updated, the keys of the board should be
+     * computed once all the pieces are placed (see {@link Key#generateKeys(Board)}).
+     * @param square the square, it should be empty
+     * @param piece the piece
+     * @param white the colour of the piece
+     */
+    public void addPiece(int square, Piece piece, boolean white) {
+        updateBitboard(square, piece, white);
+        updateMailbox(square, piece);
+    }
+
+    /**
+     * Removes all the pieces and the moves history of the board, and resets its state (no castling rights, no en passant
+     * file, white to move). The allocated arrays are reused and the variant and the secondary key setting are kept, so
+     * that a board can be refilled without allocating a new one.
+     */
+    public void clear() {
+        Arrays.fill(bitboards, 0L);
+        Arrays.fill(pieces, null);
+        Arrays.fill(states, null);
+        Arrays.fill(moves, null);
+        state.clear();
+        white = true;
+        ply = 0;
+    }
+
     private int updateCastleRights(int from, int to, Piece pieceType) {
         int newRights = state.getRights();
         if (newRights == Castling.empty()) {
@@ -552,6 +636,40 @@ public class Board {
         return state.getKey();
     }
 
+    /**
+     * Gets the 128-bit key of the position, made of the main {@link #key()} and an independent secondary key.
+     * <br>With 128 bits, the probability of a collision stays negligible even among billions of positions, so the key can
+     * be used to identify positions in large databases without storing the positions themselves.
+     * @return a new key
+     * @throws IllegalStateException if the secondary key is not enabled (see {@link #setSecondaryKeyEnabled(boolean)})
+     */
+    public Key128 key128() {
+        if (!secondaryKeyEnabled) {
+            throw new IllegalStateException("The secondary key is not enabled");
+        }
+        return new Key128(state.key, state.secondaryKey);
+    }
+
+    /**
+     * Enables or disables the secondary key required by {@link #key128()}.
+     * <br>The secondary key is disabled by default, so that boards that don't need it don't pay for its updates when moves
+     * are made. When it is enabled, the secondary key of the current position is computed; the moves history is not
+     * updated, so this method can only be called when no move has been made yet.
+     * @param enabled true to maintain the secondary key
+     * @throws IllegalStateException if a move has already been made
+     */
+    public void setSecondaryKeyEnabled(boolean enabled) {
+        if (ply != 0) {
+            throw new IllegalStateException("The secondary key can't be enabled or disabled once moves are made");
+        }
+        this.secondaryKeyEnabled = enabled;
+        state.secondaryKey = enabled ? Key.generateSecondaryKey(this) : 0L;
+    }
+
+    public boolean isSecondaryKeyEnabled() {
+        return secondaryKeyEnabled;
+    }
+
     public long pawnKey() {
         return state.getPawnKey();
     }
@@ -560,8 +678,17 @@ public class Board {
         return state.nonPawnKeys;
     }
 
+    /**
+     * Sets the variant of the board.
+     * <br>As castling rights are not hashed the same way in both variants, the keys of the current position are recomputed
+     * when the variant changes; the moves history is not updated, so the variant should be set before moves are made.
+     * @param variant the variant
+     */
     public void setVariant(ChessVariant variant) {
-        this.variant = variant;
+        if (variant != this.variant) {
+            this.variant = variant;
+            Key.generateKeys(this);
+        }
     }
 
     public ChessVariant variant() {
@@ -607,6 +734,79 @@ public class Board {
         return FEN.toBoard(fen);
     }
 
+    /**
+     * Parses a legal move in UCI notation (e.g. "e2e4", "e7e8q"). Its special move flag (castling, en passant,
+     * pawn double move) is deduced from this board.
+     * <br>A new move generator is allocated, callers that parse many moves should prefer {@link #parseUciMove(CharSequence, int, MoveGenerator)}.
+     * @param uci the sequence that contains the move
+     * @param offset the index of the first character of the move in uci
+     * @return a legal move
+     * @throws IllegalArgumentException if the notation is invalid or the move is illegal
+     */
+    public Move parseUciMove(CharSequence uci, int offset) {
+        return parseUciMove(uci, offset, new MoveGenerator());
+    }
+
+    /**
+     * Parses a legal move in UCI notation (e.g. "e2e4", "e7e8q"). Its special move flag (castling, en passant,
+     * pawn double move) is deduced from this board, the legal moves are not generated.
+     * <br>Castling moves are accepted as the king moving to its destination square in standard chess ("e1g1") and as
+     * the king moving to the square of its rook in both variants ("e1h1").
+     * <br>The move is 5 characters long if it is a promotion, 4 otherwise: the moves of a UCI "position" command can be
+     * parsed without splitting the command.
+     * @param uci the sequence that contains the move
+     * @param offset the index of the first character of the move in uci
+     * @param moveGenerator the move generator used to check the move is legal
+     * @return a legal move
+     * @throws IllegalArgumentException if the notation is invalid or the move is illegal
+     */
+    public Move parseUciMove(CharSequence uci, int offset, MoveGenerator moveGenerator) {
+        if (offset < 0 || uci.length() - offset < 4) {
+            throw new IllegalArgumentException("Invalid move notation " + uci);
+        }
+        final int from = parseSquare(uci, offset);
+        final int to = parseSquare(uci, offset + 2);
+        if (from < 0 || to < 0) {
+            throw new IllegalArgumentException("Invalid move notation " + uci.subSequence(offset, offset + 4));
+        }
+        final Piece piece = pieces[from];
+        int flag = Move.NO_FLAG;
+        int destination = to;
+        if (uci.length() > offset + 4 && Character.isLetter(uci.charAt(offset + 4))) {
+            flag = Move.promoFlag(uci.charAt(offset + 4));
+            if (flag < 0) {
+                throw new IllegalArgumentException("Invalid promotion piece in " + uci.subSequence(offset, offset + 5));
+            }
+        } else if (piece == Piece.PAWN) {
+            if (Math.abs(to - from) == 16) {
+                flag = Move.PAWN_DOUBLE_MOVE_FLAG;
+            } else if (File.of(from) != File.of(to) && pieces[to] == null) {
+                flag = Move.EN_PASSANT_FLAG;
+            }
+        } else if (piece == Piece.KING && Bits.contains(getPieces(white), from)) {
+            final boolean kingside = Castling.isKingside(from, to);
+            final int rook = Castling.getRook(state.rights, kingside, white);
+            if (to == rook && rook != Castling.NO_ROOK) {
+                // The king moves to the square of its rook, the standard encoding uses the king destination square
+                flag = Move.CASTLE_FLAG;
+                destination = variant == ChessVariant.STANDARD ? Castling.kingTo(kingside, white) : to;
+            } else if (variant == ChessVariant.STANDARD && Math.abs(to - from) == 2) {
+                flag = Move.CASTLE_FLAG;
+            }
+        }
+        final Move move = new Move(from, destination, flag);
+        if (!moveGenerator.isLegal(this, move)) {
+            throw new IllegalArgumentException("Illegal move " + uci.subSequence(offset, offset + (move.isPromotion() ? 5 : 4)));
+        }
+        return move;
+    }
+
+    private static int parseSquare(CharSequence uci, int index) {
+        final int file = uci.charAt(index) - 'a';
+        final int rank = uci.charAt(index + 1) - '1';
+        return file < 0 || file > 7 || rank < 0 || rank > 7 ? -1 : Square.of(rank, file);
+    }
+
     private void checkMaxPly() {
         if (ply >= states.length) {
             BoardState[] newStates = new BoardState[states.length + 64];
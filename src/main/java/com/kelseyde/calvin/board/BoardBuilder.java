@@ -46,7 +46,7 @@ public class BoardBuilder {
             // We will maintain a list of free cells in order to position the remaining piece
             final List<Integer> freeCells = IntStream.range(0, 8).mapToObj(Integer::valueOf).collect(Collectors.toList());
             freeCells.remove(Integer.valueOf(whiteCellBishop));
-            freeCells.remove(Integer.valueOf(Square.flipFile(whiteCellBishop)));
+            freeCells.remove(Integer.valueOf(blackCellBishop));
             // Add queens
             final int queenPosition = freeCells.remove(position%6);
             builder.addPiece(Square.of(0, queenPosition), QUEEN, true);
@@ -328,9 +328,7 @@ public class BoardBuilder {
         board.getState().setRights(rights);
         board.getState().setHalfMoveClock(fiftyMoveCounter);
 
-        board.getState().setKey(Key.generateKey(board));
-        board.getState().setPawnKey(Key.generatePawnKey(board));
-        board.getState().setNonPawnKeys(Key.generateNonPawnKeys(board));
+        Key.generateKeys(board);
         return board;
     }
     
@@ -9,6 +9,7 @@ package com.kelseyde.calvin.board;
 public class BoardState {
 
     public long key;
+    public long secondaryKey;
     public long pawnKey;
     public long[] nonPawnKeys;
     public int enPassantFile;
@@ -18,6 +19,7 @@ public class BoardState {
 
     public BoardState() {
         this.key = 0L;
+        this.secondaryKey = 0L;
         this.pawnKey = 0L;
         this.nonPawnKeys = new long[2];
         this.captured = null;
@@ -26,8 +28,9 @@ public class BoardState {
         this.halfMoveClock = 0;
     }
 
-    public BoardState(long key, long pawnKey, long[] nonPawnKeys, Piece captured, int enPassantFile, int rights, int halfMoveClock) {
+    public BoardState(long key, long secondaryKey, long pawnKey, long[] nonPawnKeys, Piece captured, int enPassantFile, int rights, int halfMoveClock) {
         this.key = key;
+        this.secondaryKey = secondaryKey;
         this.pawnKey = pawnKey;
         this.nonPawnKeys = nonPawnKeys;
         this.captured = captured;
@@ -40,6 +43,10 @@ public class BoardState {
         return key;
     }
 
+    public long getSecondaryKey() {
+        return secondaryKey;
+    }
+
     public long getPawnKey() {
         return pawnKey;
     }
@@ -64,6 +71,10 @@ public class BoardState {
         this.key = key;
     }
 
+    public void setSecondaryKey(long secondaryKey) {
+        this.secondaryKey = secondaryKey;
+    }
+
     public void setPawnKey(long pawnKey) {
         this.pawnKey = pawnKey;
     }
@@ -84,9 +95,24 @@ public class BoardState {
         this.halfMoveClock = halfMoveClock;
     }
 
+    /**
+     * Resets this state to an empty position: no keys, no castling rights, no en passant file and no captured piece.
+     */
+    public void clear() {
+        key = 0L;
+        secondaryKey = 0L;
+        pawnKey = 0L;
+        nonPawnKeys[0] = 0L;
+        nonPawnKeys[1] = 0L;
+        captured = null;
+        enPassantFile = -1;
+        rights = Castling.empty();
+        halfMoveClock = 0;
+    }
+
     public BoardState copy() {
         long[] nonPawnKeysCopy = new long[]{nonPawnKeys[0], nonPawnKeys[1]};
-        return new BoardState(key, pawnKey, nonPawnKeysCopy, captured, enPassantFile, rights, halfMoveClock);
+        return new BoardState(key, secondaryKey, pawnKey, nonPawnKeysCopy, captured, enPassantFile, rights, halfMoveClock);
     }
 
     @Override
@@ -95,6 +121,7 @@ public class BoardState {
         if (o == null || getClass() != o.getClass()) return false;
         BoardState boardState = (BoardState) o;
         return key == boardState.key
+                && secondaryKey == boardState.secondaryKey
                 && pawnKey == boardState.pawnKey
                 && enPassantFile == boardState.enPassantFile
                 && rights == boardState.rights
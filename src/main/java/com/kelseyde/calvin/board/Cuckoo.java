@@ -0,0 +1,116 @@
+package com.kelseyde.calvin.board;
+
+import com.kelseyde.calvin.movegen.Attacks;
+
+/**
+ * Cuckoo hash tables of the keys of all the reversible moves (moves of a non-pawn piece on an empty board), used to detect
+ * upcoming repetitions.
+ * <br>The key of a reversible move is the XOR of the keys of the moved piece on its two squares and of the side to move key.
+ * So the difference between the keys of two positions that are one reversible move apart is the key of that move.
+ *
+ * @see <a href="https://marcelk.net/2013-04-06/paper/upcoming-rep-v2.pdf">Marcel van Kervinck's paper</a>
+ */
+final class Cuckoo {
+
+    private static final int SIZE = 8192;
+    private static final int MASK = SIZE - 1;
+    /** The number of reversible moves of all pieces of both colours. */
+    static final int MOVES_COUNT = 3668;
+
+    private static final long[] KEYS = new long[SIZE];
+    private static final short[] MOVES = new short[SIZE];
+
+    static {
+        int count = 0;
+        for (Piece piece : Piece.values()) {
+            if (piece == Piece.PAWN) {
+                continue;
+            }
+            for (boolean white : new boolean[] {true, false}) {
+                for (int from = 0; from < Square.COUNT; from++) {
+                    for (int to = from + 1; to < Square.COUNT; to++) {
+                        if (Bits.contains(attacks(piece, from), to)) {
+                            insert(Key.piece(from, to, piece, white) ^ Key.sideToMove(), new Move(from, to).value());
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        if (count != MOVES_COUNT) {
+            throw new IllegalStateException("Unexpected number of reversible moves: " + count);
+        }
+    }
+
+    private Cuckoo() {
+        super();
+    }
+
+    /** Looks for the reversible move whose key is a given key.
+     * @param key a key
+     * @return the index of the move in the table, or -1 if the key is not the key of a reversible move
+     */
+    static int find(long key) {
+        int index = h1(key);
+        if (KEYS[index] == key) {
+            return index;
+        }
+        index = h2(key);
+        return KEYS[index] == key ? index : -1;
+    }
+
+    /** Gets the start square of a move of the table.
+     * <br>As the moves are reversible, the start and destination squares of a move are interchangeable.
+     * @param index the index returned by {@link #find(long)}
+     * @return a square
+     */
+    static int from(int index) {
+        return MOVES[index] & 0x3F;
+    }
+
+    /** Gets the destination square of a move of the table.
+     * @param index the index returned by {@link #find(long)}
+     * @return a square
+     */
+    static int to(int index) {
+        return (MOVES[index] >>> 6) & 0x3F;
+    }
+
+    private static void insert(long key, short move) {
+        // Cuckoo insertion: the new entry evicts the entry in its slot, which moves to its alternate slot, and so on.
+        // The number of evictions is bounded, so that unsuitable keys fail instead of looping forever.
+        int index = h1(key);
+        for (int i = 0; i < SIZE; i++) {
+            final long evictedKey = KEYS[index];
+            final short evictedMove = MOVES[index];
+            KEYS[index] = key;
+            MOVES[index] = move;
+            if (evictedKey == 0) {
+                return;
+            }
+            key = evictedKey;
+            move = evictedMove;
+            index = index == h1(key) ? h2(key) : h1(key);
+        }
+        throw new IllegalStateException("Unable to insert the reversible move keys in the cuckoo table");
+    }
+
+    private static long attacks(Piece piece, int square) {
+        return switch (piece) {
+            case KNIGHT -> Attacks.knightAttacks(square);
+            case BISHOP -> Attacks.bishopAttacks(square, 0L);
+            case ROOK -> Attacks.rookAttacks(square, 0L);
+            case QUEEN -> Attacks.bishopAttacks(square, 0L) | Attacks.rookAttacks(square, 0L);
+            case KING -> Attacks.kingAttacks(square);
+            case PAWN -> 0L;
+        };
+    }
+
+    private static int h1(long key) {
+        return (int) key & MASK;
+    }
+
+    private static int h2(long key) {
+        return (int) (key >>> 16) & MASK;
+    }
+}
@@ -71,6 +71,67 @@ public final class Draw {
         return false;
     }
 
+    /** Checks if the side to move can reach a position already encountered in the board's history with a single move.
+     * <br>Search can use this test to score such a position as a draw one ply before the repetition actually occurs.
+     * This test uses precomputed tables of the keys of the reversible moves and is faster than a linear scan of the history:
+     * most of the positions are rejected after a few XOR operations.
+     * <br>The reached position should be a repetition of a position encountered during the search (at a ply greater than 0).
+     * For positions before the search root, a repetition is reported only if the position reached is already a repetition.
+     * @param board the board
+     * @param searchPly the number of moves played on the board since the search root
+     * @return true if the side to move has a move that repeats a position
+     * @see <a href="https://marcelk.net/2013-04-06/paper/upcoming-rep-v2.pdf">Marcel van Kervinck's paper</a>
+     */
+    public static boolean hasUpcomingRepetition(Board board, int searchPly) {
+        final int ply = board.getPly();
+        final BoardState state = board.getState();
+        // No need to check the positions before the last half move clock reset as they are not reproducible
+        final int end = Math.min(state.getHalfMoveClock(), ply);
+        if (end < 3) {
+            return false;
+        }
+        final BoardState[] states = board.getStates();
+        final long key = state.getKey();
+        final long occupied = board.getOccupied();
+        // other is the XOR of the keys of the moves of the opponent since the position being checked, it is 0 if the opponent
+        // pieces are back on their squares
+        long other = key ^ states[ply - 1].getKey() ^ Key.sideToMove();
+        for (int i = 3; i <= end; i += 2) {
+            other ^= states[ply - i + 1].getKey() ^ states[ply - i].getKey() ^ Key.sideToMove();
+            if (other != 0) {
+                continue;
+            }
+            final int index = Cuckoo.find(key ^ states[ply - i].getKey());
+            if (index < 0) {
+                continue;
+            }
+            final int from = Cuckoo.from(index);
+            final int to = Cuckoo.to(index);
+            if ((Ray.between(from, to) & occupied) != 0) {
+                continue;
+            }
+            if (searchPly > i) {
+                return true;
+            }
+            // Both directions of a move share the same key, check the piece belongs to the side to move
+            final int square = Bits.contains(occupied, from) ? from : to;
+            if (Bits.contains(board.getPieces(board.isWhite()), square) && isRepeated(states, ply - i, ply - end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRepeated(BoardState[] states, int ply, int lastReproductiblePly) {
+        final long key = states[ply].getKey();
+        for (int i = ply - 4; i >= lastReproductiblePly; i -= 2) {
+            if (states[i].getKey() == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** Checks if the current position where the material is insufficient to force a mate, without the collaboration of the opponent.
      * <br>This includes the FIDE rules (see {@link #isInsufficientMaterialFIDERule(Board board)}) situations and others, for instance
      * when both opponents have bishops of opposite colors, or one have two knights and the other only its king.<br>
@@ -158,6 +219,6 @@ public final class Draw {
      * @return true if the board is a draw due to a stalemate
      */
     public static boolean isStalemate(Board board, MoveGenerator moveGenerator) {
-        return !moveGenerator.isCheck(board, board.isWhite()) && moveGenerator.generateMoves(board).isEmpty();
+        return !moveGenerator.isCheck(board, board.isWhite()) && !moveGenerator.hasLegalMove(board);
     }
 }
@@ -8,20 +8,34 @@ import java.util.Random;
  * It is used to quickly identify positions that have already been examined by the move generator/evaluator, cutting
  * down on a lot of double-work.
  *
+ * <br>A secondary key, built from independent random numbers, can be maintained alongside the main key. Both keys form a
+ * {@link Key128 128-bit key} that position databases can trust to identify a position (see {@link Board#key128()}).
+ * It is only maintained by the boards that enable it (see {@link Board#setSecondaryKeyEnabled(boolean)}).
+ *
  * @see <a href="https://www.chessprogramming.org/Zobrist_Hashing">Chess Programming Wiki</a>
  */
 // TODO: try only generating key once for each update
 public class Key {
 
+    // One key per combination of castling sides (standard chess)
     private static final int CASTLING_RIGHTS_COUNT = 16;
+    // One key per castling rook square (Chess960), the extra entry for Castling.NO_ROOK stays 0
+    private static final int CASTLING_ROOKS_COUNT = Square.COUNT + 1;
     private static final int EN_PASSANT_FILES_COUNT = 9;
 
     private static final long[][][] PIECE_SQUARE_HASH = new long[Square.COUNT][2][Piece.COUNT];
     private static final long[] CASTLING_RIGHTS = new long[CASTLING_RIGHTS_COUNT];
+    private static final long[] CASTLING_ROOKS = new long[CASTLING_ROOKS_COUNT];
     private static final long[] EN_PASSANT_FILE = new long[EN_PASSANT_FILES_COUNT];
     private static final long SIDE_TO_MOVE;
+    private static final long[][][] SECONDARY_PIECE_SQUARE_HASH = new long[Square.COUNT][2][Piece.COUNT];
+    private static final long[] SECONDARY_CASTLING_RIGHTS = new long[CASTLING_RIGHTS_COUNT];
+    private static final long[] SECONDARY_CASTLING_ROOKS = new long[CASTLING_ROOKS_COUNT];
+    private static final long[] SECONDARY_EN_PASSANT_FILE = new long[EN_PASSANT_FILES_COUNT];
+    private static final long SECONDARY_SIDE_TO_MOVE;
     private static final int WHITE = 0;
     private static final int BLACK = 1;
+    private static final Piece[] PIECES = Piece.values();
 
     static {
 
@@ -35,102 +49,148 @@ public class Key {
             }
         }
 
-        // Generate random Zobrist keys for castling rights and en passant files
+        // Generate random Zobrist keys for castling rights
         for (int i = 0; i < CASTLING_RIGHTS.length; i++) {
             CASTLING_RIGHTS[i] = random.nextLong();
         }
+
+        // Generate random Zobrist keys for en passant files
         for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
             EN_PASSANT_FILE[i] = random.nextLong();
         }
 
         // Generate random key for side to move
         SIDE_TO_MOVE = random.nextLong();
-    }
-
-    public static long generateKey(Board board) {
-        long key = 0L;
 
-        // Define arrays for each piece type and color
-        long[][] pieces = {
-                { board.getPawns(true), board.getPawns(false) },
-                { board.getKnights(true), board.getKnights(false) },
-                { board.getBishops(true), board.getBishops(false) },
-                { board.getRooks(true), board.getRooks(false) },
-                { board.getQueens(true), board.getQueens(false) },
-                { board.getKing(true), board.getKing(false) }
-        };
+        // Generate random Zobrist keys for Chess960 castling rook squares, after the other keys so that they keep their values
+        for (int i = 0; i < Square.COUNT; i++) {
+            CASTLING_ROOKS[i] = random.nextLong();
+        }
 
-        // Loop through each square and piece type
+        // Generate the secondary keys with an independent generator, so that the primary keys are unchanged
+        final Random secondary = new Random(19950618);
         for (int square = 0; square < Square.COUNT; square++) {
-            for (int pieceType = 0; pieceType < Piece.COUNT; pieceType++) {
-                key = updateKeyForPiece(key, pieces[pieceType][WHITE], pieces[pieceType][BLACK], square, pieceType);
+            for (int pieceIndex = 0; pieceIndex < Piece.COUNT; pieceIndex++) {
+                SECONDARY_PIECE_SQUARE_HASH[square][WHITE][pieceIndex] = secondary.nextLong();
+                SECONDARY_PIECE_SQUARE_HASH[square][BLACK][pieceIndex] = secondary.nextLong();
             }
         }
+        for (int i = 0; i < SECONDARY_CASTLING_RIGHTS.length; i++) {
+            SECONDARY_CASTLING_RIGHTS[i] = secondary.nextLong();
+        }
+        for (int i = 0; i < SECONDARY_EN_PASSANT_FILE.length; i++) {
+            SECONDARY_EN_PASSANT_FILE[i] = secondary.nextLong();
+        }
+        SECONDARY_SIDE_TO_MOVE = secondary.nextLong();
+        for (int i = 0; i < Square.COUNT; i++) {
+            SECONDARY_CASTLING_ROOKS[i] = secondary.nextLong();
+        }
+    }
 
-        // Update key with en passant, castling rights, and side to move
-        key ^= EN_PASSANT_FILE[board.getState().getEnPassantFile() + 1];
-        key ^= castling(board.getState().getRights());
-        if (board.isWhite()) {
-            key ^= SIDE_TO_MOVE;
+    /**
+     * Computes the key, secondary key, pawn key and non-pawn keys of a board in a single pass over its piece bitboards,
+     * and stores them in the board's current state. The secondary key is only computed if it is enabled on the board
+     * (see {@link Board#setSecondaryKeyEnabled(boolean)}), it is 0 otherwise.
+     * @param board the board
+     */
+    public static void generateKeys(Board board) {
+        final BoardState state = board.getState();
+        long key = 0L;
+        final boolean secondary = board.isSecondaryKeyEnabled();
+        long secondaryKey = 0L;
+        long pawnKey = 0L;
+        long whiteNonPawnKey = 0L;
+        long blackNonPawnKey = 0L;
+        for (Piece piece : PIECES) {
+            final int pieceIndex = piece.index();
+            final long whitePieces = board.getPieces(piece, true);
+            final long blackPieces = board.getPieces(piece, false);
+            final long white = squaresKey(PIECE_SQUARE_HASH, whitePieces, WHITE, pieceIndex);
+            final long black = squaresKey(PIECE_SQUARE_HASH, blackPieces, BLACK, pieceIndex);
+            key ^= white ^ black;
+            if (secondary) {
+                secondaryKey ^= squaresKey(SECONDARY_PIECE_SQUARE_HASH, whitePieces, WHITE, pieceIndex)
+                        ^ squaresKey(SECONDARY_PIECE_SQUARE_HASH, blackPieces, BLACK, pieceIndex);
+            }
+            if (piece == Piece.PAWN) {
+                pawnKey = white ^ black;
+            } else {
+                whiteNonPawnKey ^= white;
+                blackNonPawnKey ^= black;
+            }
         }
+        state.setKey(key ^ stateKey(board));
+        state.setSecondaryKey(secondary ? secondaryKey ^ secondaryStateKey(board) : 0L);
+        state.setPawnKey(pawnKey);
+        // The state's array is not shared with other states, it is reused to avoid an allocation
+        state.nonPawnKeys[WHITE] = whiteNonPawnKey;
+        state.nonPawnKeys[BLACK] = blackNonPawnKey;
+    }
 
-        return key;
+    public static long generateKey(Board board) {
+        long key = 0L;
+        for (Piece piece : PIECES) {
+            key ^= squaresKey(PIECE_SQUARE_HASH, board.getPieces(piece, true), WHITE, piece.index());
+            key ^= squaresKey(PIECE_SQUARE_HASH, board.getPieces(piece, false), BLACK, piece.index());
+        }
+        return key ^ stateKey(board);
     }
 
-    public static long generatePawnKey(Board board) {
+    /**
+     * Computes the secondary key of a board from scratch, whether it is enabled on the board or not.
+     * @param board the board
+     * @return the key that {@link Board#key128()} pairs with the main key
+     */
+    public static long generateSecondaryKey(Board board) {
         long key = 0L;
+        for (Piece piece : PIECES) {
+            key ^= squaresKey(SECONDARY_PIECE_SQUARE_HASH, board.getPieces(piece, true), WHITE, piece.index());
+            key ^= squaresKey(SECONDARY_PIECE_SQUARE_HASH, board.getPieces(piece, false), BLACK, piece.index());
+        }
+        return key ^ secondaryStateKey(board);
+    }
 
-        // Get the bitboards for white and black pawns
-        long whitePawns = board.getPawns(true);
-        long blackPawns = board.getPawns(false);
+    public static long generatePawnKey(Board board) {
+        final int pawn = Piece.PAWN.index();
+        return squaresKey(PIECE_SQUARE_HASH, board.getPawns(true), WHITE, pawn) ^ squaresKey(PIECE_SQUARE_HASH, board.getPawns(false), BLACK, pawn);
+    }
 
-        // Loop through each square
-        if (whitePawns != 0L || blackPawns != 0L) {  // Early exit optimization if no pawns
-            for (int square = 0; square < Square.COUNT; square++) {
-                key = updateKeyForPiece(key, whitePawns, blackPawns, square, Piece.PAWN.index());
+    public static long[] generateNonPawnKeys(Board board) {
+        final long[] keys = new long[2];
+        for (Piece piece : PIECES) {
+            if (piece != Piece.PAWN) {
+                keys[WHITE] ^= squaresKey(PIECE_SQUARE_HASH, board.getPieces(piece, true), WHITE, piece.index());
+                keys[BLACK] ^= squaresKey(PIECE_SQUARE_HASH, board.getPieces(piece, false), BLACK, piece.index());
             }
         }
+        return keys;
+    }
 
+    // XOR of the keys of a piece on each square of a bitboard
+    private static long squaresKey(long[][][] hash, long bitboard, int colour, int pieceIndex) {
+        long key = 0L;
+        while (bitboard != 0) {
+            key ^= hash[Bits.next(bitboard)][colour][pieceIndex];
+            bitboard = Bits.pop(bitboard);
+        }
         return key;
     }
 
-    public static long[] generateNonPawnKeys(Board board) {
-        long[] keys = new long[2];
-
-        // Array of piece types and their corresponding bitboards for both sides
-        long[][] nonPawnPieces = {
-                { board.getKnights(true), board.getKnights(false) },
-                { board.getBishops(true), board.getBishops(false) },
-                { board.getRooks(true), board.getRooks(false) },
-                { board.getQueens(true), board.getQueens(false) },
-                { board.getKing(true), board.getKing(false) }
-        };
-
-        // Array of corresponding piece indices
-        int[] pieceIndices = {
-                Piece.KNIGHT.index(), Piece.BISHOP.index(),
-                Piece.ROOK.index(), Piece.QUEEN.index(), Piece.KING.index()
-        };
-
-        // Loop through each square and update the keys based on the pieces on the board
-        for (int square = 0; square < 64; square++) {
-            for (int i = 0; i < nonPawnPieces.length; i++) {
-                if (((nonPawnPieces[i][WHITE] >>> square) & 1) == 1) {
-                    keys[WHITE] ^= PIECE_SQUARE_HASH[square][WHITE][pieceIndices[i]];
-                } else if (((nonPawnPieces[i][BLACK] >>> square) & 1) == 1) {
-                    keys[BLACK] ^= PIECE_SQUARE_HASH[square][BLACK][pieceIndices[i]];
-                }
-            }
+    // Part of the key that depends on en passant, castling rights, and side to move
+    private static long stateKey(Board board) {
+        long key = EN_PASSANT_FILE[board.getState().getEnPassantFile() + 1]
+                ^ castling(CASTLING_RIGHTS, CASTLING_ROOKS, board.variant(), board.getState().getRights());
+        if (board.isWhite()) {
+            key ^= SIDE_TO_MOVE;
         }
-
-        return keys;
+        return key;
     }
 
-    private static long updateKeyForPiece(long key, long whiteBitboard, long blackBitboard, int square, int pieceIndex) {
-        if (((whiteBitboard >>> square) & 1) == 1) {
-            key ^= PIECE_SQUARE_HASH[square][WHITE][pieceIndex];
-        } else if (((blackBitboard >>> square) & 1) == 1) {
-            key ^= PIECE_SQUARE_HASH[square][BLACK][pieceIndex];
+    private static long secondaryStateKey(Board board) {
+        long key = SECONDARY_EN_PASSANT_FILE[board.getState().getEnPassantFile() + 1]
+                ^ castling(SECONDARY_CASTLING_RIGHTS, SECONDARY_CASTLING_ROOKS, board.variant(), board.getState().getRights());
+        if (board.isWhite()) {
+            key ^= SECONDARY_SIDE_TO_MOVE;
         }
         return key;
     }
@@ -145,7 +205,12 @@ public class Key {
     }
 
     public static long rights(int oldCastlingRights, int newCastlingRights) {
-        return castling(oldCastlingRights) ^ castling(newCastlingRights);
+        return CASTLING_RIGHTS[sides(oldCastlingRights)] ^ CASTLING_RIGHTS[sides(newCastlingRights)];
+    }
+
+    public static long rights(ChessVariant variant, int oldCastlingRights, int newCastlingRights) {
+        return castling(CASTLING_RIGHTS, CASTLING_ROOKS, variant, oldCastlingRights)
+                ^ castling(CASTLING_RIGHTS, CASTLING_ROOKS, variant, newCastlingRights);
     }
 
     public static long enPassant(int oldEnPassantFile, int newEnPassantFile) {
@@ -160,7 +225,44 @@ public class Key {
         return EN_PASSANT_FILE[oldEnPassantFile + 1] ^ EN_PASSANT_FILE[0] ^ SIDE_TO_MOVE;
     }
 
-    private static long castling(int rights) {
+    public static long secondaryPiece(int from, int to, Piece pieceType, boolean white) {
+        return SECONDARY_PIECE_SQUARE_HASH[from][Colour.index(white)][pieceType.index()]
+                ^ SECONDARY_PIECE_SQUARE_HASH[to][Colour.index(white)][pieceType.index()];
+    }
+
+    public static long secondaryPiece(int square, Piece pieceType, boolean white) {
+        return SECONDARY_PIECE_SQUARE_HASH[square][Colour.index(white)][pieceType.index()];
+    }
+
+    public static long secondaryRights(ChessVariant variant, int oldCastlingRights, int newCastlingRights) {
+        return castling(SECONDARY_CASTLING_RIGHTS, SECONDARY_CASTLING_ROOKS, variant, oldCastlingRights)
+                ^ castling(SECONDARY_CASTLING_RIGHTS, SECONDARY_CASTLING_ROOKS, variant, newCastlingRights);
+    }
+
+    public static long secondaryEnPassant(int oldEnPassantFile, int newEnPassantFile) {
+        return SECONDARY_EN_PASSANT_FILE[oldEnPassantFile + 1] ^ SECONDARY_EN_PASSANT_FILE[newEnPassantFile + 1];
+    }
+
+    public static long secondarySideToMove() {
+        return SECONDARY_SIDE_TO_MOVE;
+    }
+
+    public static long secondaryNullMove(int oldEnPassantFile) {
+        return SECONDARY_EN_PASSANT_FILE[oldEnPassantFile + 1] ^ SECONDARY_EN_PASSANT_FILE[0] ^ SECONDARY_SIDE_TO_MOVE;
+    }
+
+    private static long castling(long[] rightsHash, long[] rooksHash, ChessVariant variant, int rights) {
+        return switch (variant) {
+            case STANDARD -> rightsHash[sides(rights)];
+            // Hashes the rook square of each castling right rather than just whether the right exists, so that Chess960
+            // positions whose castling rooks stand on different files get different keys
+            case CHESS960 -> rooksHash[Castling.getRook(rights, true, true)] ^ rooksHash[Castling.getRook(rights, false, true)]
+                    ^ rooksHash[Castling.getRook(rights, true, false)] ^ rooksHash[Castling.getRook(rights, false, false)];
+        };
+    }
+
+    // The index of the castling rights in the standard chess table
+    private static int sides(int rights) {
         final int whiteShort = 0x04;
         final int whiteLong = 0x08;
         final int blackShort = 0x01;
@@ -179,8 +281,7 @@ public class Key {
         if (Castling.queensideAllowed(rights, false)) {
             flags |= blackLong;
         }
-        return CASTLING_RIGHTS[flags];
-
+        return flags;
     }
 
 }
\ No newline at end of file
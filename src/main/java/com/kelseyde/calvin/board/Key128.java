@@ -0,0 +1,27 @@
+package com.kelseyde.calvin.board;
+
+/**
+ * A 128-bit Zobrist key, made of the main key of a position and its secondary key.
+ * <br>Keys are ordered as unsigned 128-bit numbers whose high part is the main key, so that sorted keys can be
+ * searched by their main key alone.
+ *
+ * @param key the main key (see {@link Board#key()})
+ * @param secondaryKey the secondary key, computed from random numbers independent of the main key's ones
+ * @see Board#key128()
+ */
+public record Key128(long key, long secondaryKey) implements Comparable<Key128> {
+
+    @Override
+    public int compareTo(Key128 other) {
+        final int result = Long.compareUnsigned(key, other.key);
+        return result != 0 ? result : Long.compareUnsigned(secondaryKey, other.secondaryKey);
+    }
+
+    /** Gets the hexadecimal representation of this key.
+     * @return a string of 32 hexadecimal digits, the main key first
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", key, secondaryKey);
+    }
+}
@@ -1,8 +1,5 @@
 package com.kelseyde.calvin.board;
 
-import java.util.Arrays;
-import java.util.Optional;
-
 /**
  * Represents a single chess move.
  * @param value The move encoded as a 16-bit integer. Bits 0 - 5 represent the start square,
@@ -122,11 +119,8 @@ public record Move(short value) {
      */
     public boolean matches(Move move) {
         if (move == null) return false;
-        boolean squareMatch = from() == move.from() && to() == move.to();
-        boolean promotionMatch = Optional.ofNullable(promoPiece())
-                .map(piece -> piece.equals(move.promoPiece()))
-                .orElse(true);
-        return squareMatch && promotionMatch;
+        final Piece promoPiece = promoPiece();
+        return from() == move.from() && to() == move.to() && (promoPiece == null || promoPiece == move.promoPiece());
     }
 
     @Override
@@ -156,15 +150,29 @@ public record Move(short value) {
 
         int flag = NO_FLAG;
         if (uci.length() == 5) {
-            String pieceCode = uci.substring(4, 5);
-            Piece promotionPieceType = Arrays.stream(Piece.values())
-                    .filter(entry -> entry.code().equalsIgnoreCase(pieceCode))
-                    .findAny().orElseThrow();
-            flag = Piece.promoFlag(promotionPieceType);
+            flag = promoFlag(uci.charAt(4));
+            if (flag < 0) {
+                throw new IllegalArgumentException("Invalid promotion piece in " + uci);
+            }
         }
         return new Move(from, to, flag);
     }
 
+    /**
+     * Gets the promotion flag of a UCI promotion character.
+     * @param code a promotion character, 'q' | 'b' | 'r' | 'n' (upper case is accepted)
+     * @return one of the PROMOTE_TO_ flags, or -1 if the character is not a promotion piece
+     */
+    static int promoFlag(char code) {
+        return switch (code) {
+            case 'q', 'Q' -> PROMOTE_TO_QUEEN_FLAG;
+            case 'r', 'R' -> PROMOTE_TO_ROOK_FLAG;
+            case 'b', 'B' -> PROMOTE_TO_BISHOP_FLAG;
+            case 'n', 'N' -> PROMOTE_TO_KNIGHT_FLAG;
+            default -> -1;
+        };
+    }
+
     /**
      * Generates a {@link Move} from combined algebraic notation (e.g. "e2e4"), as used in the UCI protocol.
      * Special case promotion: "a2a1q" - values 'q' | 'b' | 'r' | 'n'
@@ -30,32 +30,34 @@ public class MoveGenerator {
     private long king;
 
     private List<Move> legalMoves;
+    private final List<Move> scratchMoves = new ArrayList<>(4);
 
     public List<Move> generateMoves(Board board) {
         return generateMoves(board, MoveFilter.ALL);
     }
 
     public List<Move> generateMoves(Board board, MoveFilter filter) {
+        return generateMoves(board, filter, null);
+    }
 
-        white = board.isWhite();
-
-        // Initialise piece fields
-        initPieces(board, white);
-
-        final int kingSquare = Bits.next(king);
-        this.filter = filter;
+    /**
+     * Generates the legal moves in a buffer provided by the caller, in order to avoid allocating a new list at each call.
+     *
+     * @param board   The current board state.
+     * @param filter  The filter to apply on the generated moves.
+     * @param moves   The list to fill, its previous content is removed. If null, a new list is allocated.
+     * @return the list containing the legal moves.
+     */
+    public List<Move> generateMoves(Board board, MoveFilter filter, List<Move> moves) {
 
-        // Initialize capture and push masks
-        captureMask = Square.ALL;
-        pushMask = Square.ALL;
+        final int kingSquare = init(board, filter);
 
-        // Calculate pins and checks
-        calculatePins(board, white);
-        checkersMask = calculateCheckers(board, kingSquare);
-        checkersCount = Bits.count(checkersMask);
-
-        final int estimatedLegalMoves = estimateLegalMoves();
-        legalMoves = new ArrayList<>(estimatedLegalMoves);
+        if (moves == null) {
+            legalMoves = new ArrayList<>(estimateLegalMoves());
+        } else {
+            moves.clear();
+            legalMoves = moves;
+        }
 
         if (checkersCount > 0 && filter == MoveFilter.QUIET) {
             return legalMoves;
@@ -69,20 +71,7 @@ public class MoveGenerator {
             return legalMoves;
         }
 
-        if (checkersCount == 1) {
-            // If only one checker, we can evade check by capturing it
-            captureMask = checkersMask;
-
-            final int checkerSquare = Bits.next(checkersMask);
-            if (board.pieceAt(checkerSquare).isSlider()) {
-                // If the piece giving check is a slider, we can evade check by blocking it
-                pushMask = Ray.between(checkerSquare, kingSquare);
-            } else {
-                // If the piece is not a slider, we can only evade check by capturing it
-                // Therefore all non-capture 'push' moves are illegal.
-                pushMask = Square.NONE;
-            }
-        }
+        calculateCheckEvasionMasks(board, kingSquare);
 
         // Generate all the other legal moves using the capture and push masks
         generatePawnMoves(board);
@@ -94,6 +83,61 @@ public class MoveGenerator {
 
     }
 
+    /**
+     * Checks if the side to move has at least one legal move, without generating the full list of legal moves.
+     * King moves are checked first, then the moves of the other pieces, and the search stops at the first legal move.
+     * This is much cheaper than <code>generateMoves(board).isEmpty()</code> to detect checkmates and stalemates.
+     *
+     * @param board   The current board state.
+     * @return true if the side to move has a legal move, false if it is checkmated or stalemated.
+     */
+    public boolean hasLegalMove(Board board) {
+
+        final int kingSquare = init(board, MoveFilter.ALL);
+
+        if (hasLegalKingMove(board, kingSquare)) {
+            return true;
+        }
+
+        if (checkersCount == 2) {
+            // If we are in double-check, the only legal moves are king moves
+            return false;
+        }
+
+        calculateCheckEvasionMasks(board, kingSquare);
+        final long targetMask = pushMask | captureMask;
+        final long friendlies = board.getPieces(white);
+        final long occupied = board.getOccupied();
+
+        // Pinned knights can never move
+        long unpinnedKnights = knights & ~pinMask;
+        while (unpinnedKnights != 0) {
+            if ((Attacks.knightAttacks(Bits.next(unpinnedKnights)) & ~friendlies & targetMask) != 0) {
+                return true;
+            }
+            unpinnedKnights = Bits.pop(unpinnedKnights);
+        }
+
+        if (hasLegalSlidingMove(bishops | queens, friendlies, occupied, targetMask, true, false)
+                || hasLegalSlidingMove(rooks | queens, friendlies, occupied, targetMask, false, true)) {
+            return true;
+        }
+
+        if (hasLegalPawnMove(board, occupied)) {
+            return true;
+        }
+
+        // En passant and castling are rare, so they are generated in a scratch list
+        scratchMoves.clear();
+        legalMoves = scratchMoves;
+        if (pawns != 0) {
+            generateEnPassant(board);
+        }
+        generateCastlingMoves(board);
+        return !scratchMoves.isEmpty();
+
+    }
+
     /**
      * Checks if the specified side is in check.
      *
@@ -110,6 +154,109 @@ public class MoveGenerator {
         return isCheck(board, board.isWhite());
     }
 
+    // Initialises the pieces, pins and checkers of the side to move, and returns the square of its king
+    private int init(Board board, MoveFilter filter) {
+
+        white = board.isWhite();
+
+        // Initialise piece fields
+        initPieces(board, white);
+
+        final int kingSquare = Bits.next(king);
+        this.filter = filter;
+
+        // Initialize capture and push masks
+        captureMask = Square.ALL;
+        pushMask = Square.ALL;
+
+        // Calculate pins and checks
+        calculatePins(board, white);
+        checkersMask = calculateCheckers(board, kingSquare);
+        checkersCount = Bits.count(checkersMask);
+
+        return kingSquare;
+    }
+
+    private void calculateCheckEvasionMasks(Board board, int kingSquare) {
+        if (checkersCount == 1) {
+            // If only one checker, we can evade check by capturing it
+            captureMask = checkersMask;
+
+            final int checkerSquare = Bits.next(checkersMask);
+            if (board.pieceAt(checkerSquare).isSlider()) {
+                // If the piece giving check is a slider, we can evade check by blocking it
+                pushMask = Ray.between(checkerSquare, kingSquare);
+            } else {
+                // If the piece is not a slider, we can only evade check by capturing it
+                // Therefore all non-capture 'push' moves are illegal.
+                pushMask = Square.NONE;
+            }
+        }
+    }
+
+    private boolean hasLegalKingMove(Board board, int from) {
+        long kingMoves = Attacks.kingAttacks(from) & ~board.getPieces(white);
+        if (kingMoves == 0) {
+            return false;
+        }
+
+        // Temporarily remove the king from the board, so that it does not block the attacks on its destination squares
+        board.removeKing(white);
+        boolean found = false;
+        while (kingMoves != 0 && !found) {
+            found = !isAttacked(board, white, Bits.of(Bits.next(kingMoves)));
+            kingMoves = Bits.pop(kingMoves);
+        }
+        board.addKing(from, white);
+        return found;
+    }
+
+    private boolean hasLegalSlidingMove(long sliders, long friendlies, long occupied, long targetMask, boolean isDiagonal, boolean isOrthogonal) {
+        while (sliders != 0) {
+            final int from = Bits.next(sliders);
+            long attackMask = getSlidingAttacks(from, friendlies, occupied, isDiagonal, isOrthogonal) & targetMask;
+            if (isPinned(from)) {
+                attackMask &= pinRayMasks[from];
+            }
+            if (attackMask != 0) {
+                return true;
+            }
+            sliders = Bits.pop(sliders);
+        }
+        return false;
+    }
+
+    private boolean hasLegalPawnMove(Board board, long occupied) {
+        if (pawns == 0) return false;
+        final long opponents = board.getPieces(!white);
+
+        // The unpinned pawns are checked all at once
+        if (hasPawnMove(pawns & ~pinMask, opponents, occupied)) {
+            return true;
+        }
+
+        // A pinned pawn can only move along its pin ray: the squares outside the ray are seen as blocked
+        long pinnedPawns = pawns & pinMask;
+        while (pinnedPawns != 0) {
+            final int from = Bits.next(pinnedPawns);
+            final long pinRay = pinRayMasks[from];
+            if (hasPawnMove(Bits.of(from), opponents & pinRay, occupied | ~pinRay)) {
+                return true;
+            }
+            pinnedPawns = Bits.pop(pinnedPawns);
+        }
+        return false;
+    }
+
+    private boolean hasPawnMove(long pawns, long opponents, long occupied) {
+        if (pawns == 0) return false;
+        final long pushes = Attacks.pawnSingleMoves(pawns, occupied, white)
+                | Attacks.pawnPushPromotions(pawns, occupied, white)
+                | Attacks.pawnDoubleMoves(pawns, occupied, white);
+        final long captures = Attacks.pawnAttacks(pawns, white) & opponents;
+        return (pushes & pushMask) != 0 || (captures & captureMask) != 0;
+    }
+
     private void generatePawnMoves(Board board) {
         if (pawns == 0) return;
 
@@ -748,6 +895,10 @@ public class MoveGenerator {
                 if (!Bits.contains(board.getPawns(!white), epSquare))
                     return false;
 
+                // Must capture on the en passant square
+                if (to != Square.of(white ? 5 : 2, board.getState().getEnPassantFile()))
+                    return false;
+
             }
 
             int fromRank = Rank.of(from);
@@ -757,6 +908,10 @@ public class MoveGenerator {
             if ((white && fromRank >= toRank) || (!white && fromRank <= toRank))
                 return false;
 
+            // Must move one rank forward, or two for a double push
+            if (Math.abs(toRank - fromRank) != (move.isPawnDoubleMove() ? 2 : 1))
+                return false;
+
             // Must promote on the promo rank, and can't promote on any other rank
             long promoRank = white ? Rank.EIGHTH : Rank.FIRST;
             if (move.isPromotion() != Bits.contains(promoRank, to))
@@ -768,8 +923,8 @@ public class MoveGenerator {
             // Pawn captures
             if (fromFile != toFile) {
 
-                // Must capture on an adjacent file
-                if (toFile != fromFile + 1 && toFile != fromFile - 1)
+                // Must capture on an adjacent file, and can't double push diagonally
+                if ((toFile != fromFile + 1 && toFile != fromFile - 1) || move.isPawnDoubleMove())
                     return false;
 
                 // Must be capturing a piece
@@ -867,6 +1022,17 @@ public class MoveGenerator {
         return pinMask;
     }
 
+    /**
+     * Gets the squares a piece can move to without exposing its king, as computed by the last call to
+     * {@link #calculatePins(Board, boolean)}.
+     *
+     * @param square the square of the piece.
+     * @return the squares between the king and the pinner (pinner included) if the piece is pinned, all the squares otherwise.
+     */
+    public long getPinRayMask(int square) {
+        return isPinned(square) ? pinRayMasks[square] : -1L;
+    }
+
     /**
      * Estimate the number of legal moves in the current position, based on the piece count and
      * the average number of legal moves per piece. Used to initialise the legal moves ArrayList
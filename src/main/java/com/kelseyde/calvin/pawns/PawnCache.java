@@ -0,0 +1,81 @@
+package com.kelseyde.calvin.pawns;
+
+import com.kelseyde.calvin.board.Board;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of {@link PawnStructure}, indexed by the pawn key maintained by the board (see {@link Board#pawnKey()}).
+ * <br>The cache is direct mapped: each pawn key has a single slot, and a new structure always replaces the previous content
+ * of its slot. As the pawns of the cached structure are compared to the ones of the board, a key collision can't return a wrong
+ * structure.
+ * <br>Slots hold references to immutable structures, so the cache can be shared by several threads without locking.
+ */
+public class PawnCache {
+
+    private final PawnStructure[] structures;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Creates a cache.
+     * @param size the number of slots, rounded up to a power of 2
+     * @throws IllegalArgumentException if size is not strictly positive or greater than 2<sup>30</sup>
+     */
+    public PawnCache(int size) {
+        if (size <= 0 || size > 1 << 30) {
+            throw new IllegalArgumentException("Invalid cache size: " + size);
+        }
+        final int capacity = size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.structures = new PawnStructure[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** Gets the pawn structure of a board, analysing it if it is not in the cache.
+     * @param board the board
+     * @return a pawn structure
+     */
+    public PawnStructure get(Board board) {
+        final long whitePawns = board.getPawns(true);
+        final long blackPawns = board.getPawns(false);
+        final int index = (int) board.pawnKey() & mask;
+        PawnStructure structure = structures[index];
+        if (structure != null && structure.matches(whitePawns, blackPawns)) {
+            hits.increment();
+            return structure;
+        }
+        misses.increment();
+        structure = PawnStructure.of(whitePawns, blackPawns);
+        structures[index] = structure;
+        return structure;
+    }
+
+    /** Gets the number of slots of the cache.
+     * @return an int
+     */
+    public int capacity() {
+        return structures.length;
+    }
+
+    /** Gets the number of lookups that found the structure in the cache.
+     * @return a long
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Gets the number of lookups that had to analyse the structure.
+     * @return a long
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Removes all the structures from the cache and resets its counters. */
+    public void clear() {
+        Arrays.fill(structures, null);
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -0,0 +1,169 @@
+package com.kelseyde.calvin.pawns;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Colour;
+
+/**
+ * The analysis of the pawn structure of a position.
+ * <br>All the features are computed with bitboard fills when the instance is created, and are returned as bitboards.
+ * Instances are immutable, so they can be shared by several threads, typically through a {@link PawnCache}.
+ *
+ * @see <a href="https://www.chessprogramming.org/Pawn_Structure">Chess Programming Wiki</a>
+ */
+public final class PawnStructure {
+
+    private final long[] pawns = new long[2];
+    private final long[] attacks = new long[2];
+    private final long[] attackSpans = new long[2];
+    private final long[] passed = new long[2];
+    private final long[] isolated = new long[2];
+    private final long[] doubled = new long[2];
+    private final long[] backward = new long[2];
+    private final long[] halfOpenFiles = new long[2];
+    private final long openFiles;
+
+    private PawnStructure(long whitePawns, long blackPawns) {
+        pawns[Colour.WHITE] = whitePawns;
+        pawns[Colour.BLACK] = blackPawns;
+        attacks[Colour.WHITE] = Bits.northEast(whitePawns) | Bits.northWest(whitePawns);
+        attacks[Colour.BLACK] = Bits.southEast(blackPawns) | Bits.southWest(blackPawns);
+        attackSpans[Colour.WHITE] = northFill(attacks[Colour.WHITE]);
+        attackSpans[Colour.BLACK] = southFill(attacks[Colour.BLACK]);
+
+        final long whiteFiles = fileFill(whitePawns);
+        final long blackFiles = fileFill(blackPawns);
+        openFiles = ~(whiteFiles | blackFiles);
+        halfOpenFiles[Colour.WHITE] = ~whiteFiles & blackFiles;
+        halfOpenFiles[Colour.BLACK] = ~blackFiles & whiteFiles;
+
+        final long whiteFrontSpans = northFill(Bits.north(whitePawns));
+        final long blackFrontSpans = southFill(Bits.south(blackPawns));
+        passed[Colour.WHITE] = whitePawns & ~(blackFrontSpans | attackSpans[Colour.BLACK]);
+        passed[Colour.BLACK] = blackPawns & ~(whiteFrontSpans | attackSpans[Colour.WHITE]);
+
+        isolated[Colour.WHITE] = whitePawns & ~(Bits.east(whiteFiles) | Bits.west(whiteFiles));
+        isolated[Colour.BLACK] = blackPawns & ~(Bits.east(blackFiles) | Bits.west(blackFiles));
+
+        doubled[Colour.WHITE] = whitePawns & whiteFrontSpans;
+        doubled[Colour.BLACK] = blackPawns & blackFrontSpans;
+
+        // The stop square is attacked by an opponent pawn, and can't be defended by an own pawn
+        backward[Colour.WHITE] = Bits.south(Bits.north(whitePawns) & attacks[Colour.BLACK] & ~attackSpans[Colour.WHITE]);
+        backward[Colour.BLACK] = Bits.north(Bits.south(blackPawns) & attacks[Colour.WHITE] & ~attackSpans[Colour.BLACK]);
+    }
+
+    /** Analyses the pawn structure of a board.
+     * @param board the board
+     * @return a new pawn structure
+     */
+    public static PawnStructure of(Board board) {
+        return of(board.getPawns(true), board.getPawns(false));
+    }
+
+    /** Analyses a pawn structure.
+     * @param whitePawns the white pawns bitboard
+     * @param blackPawns the black pawns bitboard
+     * @return a new pawn structure
+     */
+    public static PawnStructure of(long whitePawns, long blackPawns) {
+        return new PawnStructure(whitePawns, blackPawns);
+    }
+
+    /** Gets the pawns of a side.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long pawns(boolean white) {
+        return pawns[Colour.index(white)];
+    }
+
+    /** Gets the squares attacked by the pawns of a side.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long attacks(boolean white) {
+        return attacks[Colour.index(white)];
+    }
+
+    /** Gets the squares the pawns of a side attack or may attack as they advance.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long attackSpans(boolean white) {
+        return attackSpans[Colour.index(white)];
+    }
+
+    /** Gets the passed pawns of a side, that is the pawns with no opponent pawn in front of them on their file or the adjacent files.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long passed(boolean white) {
+        return passed[Colour.index(white)];
+    }
+
+    /** Gets the isolated pawns of a side, that is the pawns with no own pawn on the adjacent files.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long isolated(boolean white) {
+        return isolated[Colour.index(white)];
+    }
+
+    /** Gets the doubled pawns of a side, that is the pawns with an own pawn behind them on their file.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long doubled(boolean white) {
+        return doubled[Colour.index(white)];
+    }
+
+    /** Gets the backward pawns of a side, that is the pawns whose stop square is attacked by an opponent pawn and can't be defended
+     * by an own pawn.
+     * @param white the side
+     * @return a bitboard
+     */
+    public long backward(boolean white) {
+        return backward[Colour.index(white)];
+    }
+
+    /** Gets the files with no pawn.
+     * @return a bitboard containing all the squares of the open files
+     */
+    public long openFiles() {
+        return openFiles;
+    }
+
+    /** Gets the files with no pawn of a side but at least one opponent pawn.
+     * @param white the side
+     * @return a bitboard containing all the squares of the half open files
+     */
+    public long halfOpenFiles(boolean white) {
+        return halfOpenFiles[Colour.index(white)];
+    }
+
+    /** Checks whether this structure was computed for some pawns.
+     * @param whitePawns the white pawns bitboard
+     * @param blackPawns the black pawns bitboard
+     * @return true if the pawns are the ones of this structure
+     */
+    public boolean matches(long whitePawns, long blackPawns) {
+        return pawns[Colour.WHITE] == whitePawns && pawns[Colour.BLACK] == blackPawns;
+    }
+
+    private static long northFill(long board) {
+        board |= board << 8;
+        board |= board << 16;
+        return board | board << 32;
+    }
+
+    private static long southFill(long board) {
+        board |= board >>> 8;
+        board |= board >>> 16;
+        return board | board >>> 32;
+    }
+
+    private static long fileFill(long board) {
+        return northFill(board) | southFill(board);
+    }
+}
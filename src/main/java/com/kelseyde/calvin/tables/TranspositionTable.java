@@ -0,0 +1,319 @@
+package com.kelseyde.calvin.tables;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A <a href="https://www.chessprogramming.org/Transposition_Table">transposition table</a> that can be shared by several search threads.
+ * <br>The table is a flat <code>long</code> array divided into buckets of {@value #BUCKET_SIZE} entries (64 bytes, a typical cache line).
+ * Each entry is made of two longs: the position key XORed with the entry data, then the data itself. A reader only accepts an entry
+ * if its key XORed with its data gives back the probed key, so an entry torn by concurrent writes is seen as a miss instead of
+ * corrupted data (see <a href="https://www.chessprogramming.org/Shared_Hash_Table#Lockless">lockless hashing</a>). No lock is ever taken.
+ * <br>The data of an entry is a long returned by the probe methods, 0 meaning no entry was found. Its fields are read with the static
+ * methods {@link #move(long)}, {@link #score(long)}, {@link #staticEval(long)}, {@link #depth(long)}, {@link #bound(long)}.
+ * <br>When a bucket is full, the replaced entry is the one with the lowest depth, entries stored during previous searches
+ * (see {@link #newSearch()}) being replaced first.
+ * <br>{@link #clear()} erases the entries in place and {@link #resize(int)} replaces the underlying array; threads that are probing
+ * the table are never stopped, after a resize they simply finish their current access on the previous array.
+ */
+public class TranspositionTable {
+
+    /** The bound of a stored score. */
+    public enum Bound {
+        /** The score is exact. */
+        EXACT,
+        /** The score is a lower bound (the search failed high). */
+        LOWER,
+        /** The score is an upper bound (the search failed low). */
+        UPPER;
+
+        private static final Bound[] VALUES = values();
+    }
+
+    /** The number of entries per bucket. */
+    public static final int BUCKET_SIZE = 4;
+
+    private static final int LONGS_PER_ENTRY = 2;
+    private static final int LONGS_PER_BUCKET = BUCKET_SIZE * LONGS_PER_ENTRY;
+    private static final int BUCKET_BYTES = LONGS_PER_BUCKET * Long.BYTES;
+    private static final int MAX_SIZE_MB = (int) ((long) (Integer.MAX_VALUE - 8) / LONGS_PER_BUCKET * BUCKET_BYTES >> 20);
+
+    // Entry data layout: move (16 bits) | score (16 bits) | static eval (16 bits) | depth (8 bits) | bound (2 bits) | age (6 bits)
+    private static final int SCORE_SHIFT = 16;
+    private static final int EVAL_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 48;
+    private static final int BOUND_SHIFT = 56;
+    private static final int AGE_SHIFT = 58;
+    private static final int AGE_MASK = 0x3F;
+    private static final int MAX_DEPTH = 0xFF;
+    // The weight of an age difference compared to a depth difference when choosing the entry to replace
+    private static final int AGE_WEIGHT = 8;
+    private static final int HASHFULL_SAMPLE = 1000 / BUCKET_SIZE;
+
+    private volatile long[] table;
+    private volatile int age;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /** Creates a table.
+     * @param sizeMb the size of the table in megabytes
+     * @throws IllegalArgumentException if sizeMb is not strictly positive or too big to fit in a java array
+     */
+    public TranspositionTable(int sizeMb) {
+        this.table = new long[length(sizeMb)];
+    }
+
+    /** Gets the index of the bucket where a position is stored.
+     * <br>The index is computed from the high bits of the key, a search can compute it as soon as the key of a child
+     * position is known (see {@link Board#key()}).
+     * @param key a position key
+     * @return the index of the first long of the bucket in the table
+     */
+    public int index(long key) {
+        return index(key, table.length);
+    }
+
+    /** Looks for the entry of a board.
+     * @param board the board
+     * @return the entry data, 0 if the table has no entry for the board position
+     */
+    public long probe(Board board) {
+        return probe(board.key());
+    }
+
+    /** Looks for the entry of a position.
+     * @param key the position key
+     * @return the entry data, 0 if the table has no entry for the position
+     */
+    public long probe(long key) {
+        final long[] entries = table;
+        final int bucket = index(key, entries.length);
+        for (int i = bucket; i < bucket + LONGS_PER_BUCKET; i += LONGS_PER_ENTRY) {
+            final long data = entries[i + 1];
+            if (data != 0 && (entries[i] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        misses.increment();
+        return 0;
+    }
+
+    /** Stores the result of a search of a board.
+     * @param board the board
+     * @param move the best move, or null if unknown
+     * @param score the score
+     * @param staticEval the static evaluation of the position
+     * @param depth the search depth, clamped between 0 and 255
+     * @param bound the bound of the score
+     * @see #store(long, Move, int, int, int, Bound)
+     */
+    public void store(Board board, Move move, int score, int staticEval, int depth, Bound bound) {
+        store(board.key(), move, score, staticEval, depth, bound);
+    }
+
+    /** Stores the result of a search of a position.
+     * <br>If the position already has an entry, it is replaced. If the new entry has no move, the previous move is kept.
+     * @param key the position key
+     * @param move the best move, or null if unknown
+     * @param score the score, should fit in a short
+     * @param staticEval the static evaluation of the position, should fit in a short
+     * @param depth the search depth, clamped between 0 and 255
+     * @param bound the bound of the score
+     */
+    public void store(long key, Move move, int score, int staticEval, int depth, Bound bound) {
+        final long[] entries = table;
+        final int currentAge = age;
+        final int bucket = index(key, entries.length);
+        int replaced = bucket;
+        int lowestWorth = Integer.MAX_VALUE;
+        int moveValue = move == null ? 0 : move.value() & 0xFFFF;
+        for (int i = bucket; i < bucket + LONGS_PER_BUCKET; i += LONGS_PER_ENTRY) {
+            final long data = entries[i + 1];
+            if (data == 0) {
+                if (lowestWorth != Integer.MIN_VALUE) {
+                    replaced = i;
+                    lowestWorth = Integer.MIN_VALUE;
+                }
+            } else if ((entries[i] ^ data) == key) {
+                // Same position, always replaced
+                if (moveValue == 0) {
+                    moveValue = (int) data & 0xFFFF;
+                }
+                replaced = i;
+                lowestWorth = Integer.MIN_VALUE;
+                break;
+            } else if (lowestWorth != Integer.MIN_VALUE) {
+                final int worth = depth(data) - AGE_WEIGHT * ((currentAge - age(data)) & AGE_MASK);
+                if (worth < lowestWorth) {
+                    replaced = i;
+                    lowestWorth = worth;
+                }
+            }
+        }
+        final long previous = entries[replaced + 1];
+        if (previous != 0 && (entries[replaced] ^ previous) != key) {
+            collisions.increment();
+        }
+        final long data = moveValue
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((staticEval & 0xFFFFL) << EVAL_SHIFT)
+                | ((long) Math.max(0, Math.min(depth, MAX_DEPTH)) << DEPTH_SHIFT)
+                | ((long) (bound.ordinal() + 1) << BOUND_SHIFT)
+                | ((long) currentAge << AGE_SHIFT);
+        entries[replaced] = key ^ data;
+        entries[replaced + 1] = data;
+    }
+
+    /** Signals the start of a new search.
+     * <br>Entries stored during previous searches are replaced in priority.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /** Removes all the entries of the table.
+     * <br>The entries are erased in place, no memory is allocated. Concurrent probes and stores are not blocked: a store that
+     * is running during the call may survive it, and an entry torn by the erasure is seen as a miss.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        age = 0;
+    }
+
+    /** Changes the size of the table.
+     * <br>All the entries are dropped without blocking concurrent probes and stores. If the size changes, the current array
+     * is released before the new one is allocated, but it can only be garbage collected once the threads that are accessing
+     * it are done: resizing during a search can temporarily use the memory of both tables. A store that is running during
+     * the call can also write into the released array, it is then lost.
+     * @param sizeMb the new size of the table in megabytes
+     * @throws IllegalArgumentException if sizeMb is not strictly positive or too big to fit in a java array
+     */
+    public void resize(int sizeMb) {
+        final int length = length(sizeMb);
+        if (length == table.length) {
+            clear();
+            return;
+        }
+        // Accesses that start before the new array is allocated use this single bucket
+        table = new long[LONGS_PER_BUCKET];
+        table = new long[length];
+        age = 0;
+    }
+
+    /** Gets the number of entries of the table.
+     * @return an int
+     */
+    public int capacity() {
+        return table.length / LONGS_PER_ENTRY;
+    }
+
+    /** Gets an estimate of the filling of the table by the current search, as expected by the UCI protocol.
+     * @return the number of entries of the current search per thousand entries
+     */
+    public int hashfull() {
+        final long[] entries = table;
+        final int currentAge = age;
+        final int buckets = Math.min(HASHFULL_SAMPLE, entries.length / LONGS_PER_BUCKET);
+        int count = 0;
+        for (int i = 1; i < buckets * LONGS_PER_BUCKET; i += LONGS_PER_ENTRY) {
+            if (entries[i] != 0 && age(entries[i]) == currentAge) {
+                count++;
+            }
+        }
+        return count * 1000 / (buckets * BUCKET_SIZE);
+    }
+
+    /** Gets the number of probes that found an entry.
+     * @return a long
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Gets the number of probes that found no entry.
+     * @return a long
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Gets the number of stores that replaced the entry of another position.
+     * @return a long
+     */
+    public long collisions() {
+        return collisions.sum();
+    }
+
+    /** Resets the hits, misses and collisions counters. */
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    /** Gets the move of an entry.
+     * @param data the entry data returned by a probe
+     * @return a move or null if the entry has no move
+     */
+    public static Move move(long data) {
+        final short value = (short) data;
+        return value == 0 ? null : new Move(value);
+    }
+
+    /** Gets the score of an entry.
+     * @param data the entry data returned by a probe
+     * @return an int
+     */
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    /** Gets the static evaluation of an entry.
+     * @param data the entry data returned by a probe
+     * @return an int
+     */
+    public static int staticEval(long data) {
+        return (short) (data >>> EVAL_SHIFT);
+    }
+
+    /** Gets the depth of an entry.
+     * @param data the entry data returned by a probe
+     * @return an int between 0 and 255
+     */
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /** Gets the bound of an entry.
+     * @param data the entry data returned by a probe
+     * @return a bound, null if data is 0
+     */
+    public static Bound bound(long data) {
+        final int bound = (int) (data >>> BOUND_SHIFT) & 0x3;
+        return bound == 0 ? null : Bound.VALUES[bound - 1];
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    private static int index(long key, int length) {
+        // Maps the high 32 bits of the key to [0, buckets count[ with a multiplication instead of a modulo
+        final long buckets = length / LONGS_PER_BUCKET;
+        return (int) (((key >>> 32) * buckets) >>> 32) * LONGS_PER_BUCKET;
+    }
+
+    private static int length(int sizeMb) {
+        if (sizeMb <= 0 || sizeMb > MAX_SIZE_MB) {
+            throw new IllegalArgumentException("Table size must be between 1 and " + MAX_SIZE_MB + " MB, got " + sizeMb);
+        }
+        final long buckets = ((long) sizeMb << 20) / BUCKET_BYTES;
+        return (int) (buckets * LONGS_PER_BUCKET);
+    }
+}
@@ -0,0 +1,164 @@
+package com.kelseyde.calvin.utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs, typically Zobrist keys, that avoids the boxing overhead of a {@code HashSet<Long>}.
+ * <br>Values are stored in a single array using open addressing with linear probing. As the set does not support removal,
+ * no tombstones are needed. Zero, which marks the empty slots, is tracked separately.
+ * <br>This class is not thread safe.
+ */
+public class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+    // The set grows when its size exceeds 3/4 of its capacity
+    private static final int LOAD_FACTOR_SHIFT = 2;
+    // Doubling a bigger capacity would overflow the maximum length of an array
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /** The maximum number of values a set can hold. */
+    public static final int MAX_SIZE = MAX_CAPACITY - (MAX_CAPACITY >> LOAD_FACTOR_SHIFT);
+
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    /** Creates an empty set. */
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /** Creates an empty set.
+     * @param expectedSize the number of values the set should be able to hold without growing
+     * @throws IllegalArgumentException if expectedSize is negative or greater than {@link #MAX_SIZE}
+     */
+    public LongHashSet(int expectedSize) {
+        if (expectedSize < 0 || expectedSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid expected size: " + expectedSize);
+        }
+        final int highestBit = Integer.highestOneBit(expectedSize + (expectedSize >> 1));
+        final int capacity = highestBit >= MAX_CAPACITY ? MAX_CAPACITY : Math.max(MIN_CAPACITY, highestBit << 1);
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** Adds a value to this set.
+     * @param value the value to add
+     * @return true if the value was not already in the set
+     * @throws IllegalStateException if the value is not in the set and the set already contains {@link #MAX_SIZE} values
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            checkNotFull();
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int index = index(value);
+        long current;
+        while ((current = values[index]) != 0) {
+            if (current == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        checkNotFull();
+        values[index] = value;
+        if (++size > values.length - (values.length >> LOAD_FACTOR_SHIFT)) {
+            grow();
+        }
+        return true;
+    }
+
+    /** Checks whether a value is in this set.
+     * @param value the value to look for
+     * @return true if the value is in the set
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int index = index(value);
+        long current;
+        while ((current = values[index]) != 0) {
+            if (current == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /** Gets the number of values in this set.
+     * @return an int
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Checks whether this set is empty.
+     * @return true if the set contains no value
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Removes all the values of this set.
+     * <br>The memory allocated by the set is kept.
+     */
+    public void clear() {
+        Arrays.fill(values, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    /** Gets the values of this set in ascending (signed) order.
+     * @return a new array
+     */
+    public long[] toSortedArray() {
+        final long[] result = new long[size];
+        int count = 0;
+        if (containsZero) {
+            result[count++] = 0;
+        }
+        for (long value : values) {
+            if (value != 0) {
+                result[count++] = value;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void checkNotFull() {
+        // The set grows before reaching this size, except when it already has the maximum capacity
+        if (size == MAX_SIZE) {
+            throw new IllegalStateException("A set can't contain more than " + MAX_SIZE + " values");
+        }
+    }
+
+    private int index(long value) {
+        // Zobrist keys are already well distributed, but other values may not be: mix the bits before masking
+        final long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        final long[] old = values;
+        values = new long[old.length << 1];
+        mask = values.length - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int index = index(value);
+                while (values[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                values[index] = value;
+            }
+        }
+    }
+}
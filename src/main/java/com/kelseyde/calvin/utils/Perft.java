@@ -2,16 +2,23 @@ package com.kelseyde.calvin.utils;
 
 import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.Move;
-import com.kelseyde.calvin.movegen.MoveGenerator;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 /**
  * <a href="https://www.chessprogramming.org/Perft">Perft, ('Performance Test')</a> is a Performance Test is a debugging function
  * that walks the move generation tree of strictly legal moves to count all the leaf nodes of a certain depth,
  * which can be compared to predetermined values and used to isolate bugs.
+ * <br>Long calculations can be observed with a {@link Listener} and stopped with a cancellation token
+ * (see {@link #withListener(Listener)} and {@link #withCancellation(BooleanSupplier)}).
+ * <br>{@link #uniquePositions(Board, int)} additionally counts the distinct positions reached at the last depth.
+ * <br>Each calculation uses its own move generator, so an instance can run concurrent calculations on distinct boards
+ * once it is configured.
  */
 public class Perft {
     /** The type of Perft calculation.
@@ -24,24 +31,56 @@ public class Perft {
         BULK
     }
 
+    /**
+     * A listener notified of the progress of a Perft calculation.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /** Called each time the tree below a root move has been entirely walked.
+         * <br>This method is called in the thread that runs the calculation, it should return quickly.
+         * @param move the root move
+         * @param leafNodesCount the number of leaf nodes below this move
+         * @param progress the result of the calculation so far. Its {@link Result#divide()} map contains all the completed root moves.
+         */
+        void rootMoveDone(Move move, long leafNodesCount, Result progress);
+    }
+
     /**
      * The results of a Perft (Performance Test) calculation.
      */
     public static class Result {
+        private final long startTime;
+        private long endTime;
         private long searchedNodesCount;
         private long leafNodesCount;
+        private long uniquePositionsCount;
+        private boolean cancelled;
         private final Map<Move, Long> nodesPerMove;
 
         private Result() {
              this.nodesPerMove = new HashMap<>();
+             this.startTime = System.nanoTime();
+             this.endTime = -1;
+             this.uniquePositionsCount = -1;
         }
         /** Gets the number of leaf nodes
+         * <br>If the calculation was cancelled, only the leaf nodes below the completed root moves are counted.
          * @return a long
          */
         public long leafNodesCount() {
             return leafNodesCount;
         }
 
+        /** Gets the number of distinct positions at the last depth.
+         * <br>Two positions are distinct if their {@link Board#key() keys} differ, so positions that only differ by the
+         * en passant file set by a pawn double move are distinct.
+         * <br>If the calculation was cancelled, only the positions reached before cancellation are counted.
+         * @return a long, -1 if the calculation was not run with {@link Perft#uniquePositions(Board, int)}
+         */
+        public long uniquePositionsCount() {
+            return uniquePositionsCount;
+        }
+
         /** Gets the number of nodes for which the move generation has been searched
          * @return a long
          */
@@ -50,13 +89,84 @@ public class Perft {
         }
 
         /** Gets the number of nodes per move at first depth
+         * <br>If the calculation was cancelled, this map only contains the root moves that were completed.
          * @return a map of moves to the number of nodes
          */
         public Map<Move, Long> divide() {
             return nodesPerMove;
         }
+
+        /** Checks whether the calculation was cancelled before its end.
+         * @return true if the calculation was cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Gets the time spent in the calculation.
+         * <br>While the calculation is running, this is the time elapsed since its start.
+         * @return a number of nanoseconds
+         */
+        public long elapsedNanos() {
+            return (endTime < 0 ? System.nanoTime() : endTime) - startTime;
+        }
+
+        /** Gets an estimate of the number of searched nodes per second.
+         * @return a long
+         * @see #searchedNodesCount()
+         */
+        public long nodesPerSecond() {
+            final long elapsed = elapsedNanos();
+            return elapsed == 0 ? 0 : searchedNodesCount * 1_000_000_000L / elapsed;
+        }
+    }
+
+    // The cancellation token is checked each time this number of nodes has been searched
+    private static final int CANCELLATION_CHECK_INTERVAL = 1 << 14;
+
+    private Listener listener;
+    private BooleanSupplier cancellation;
+    private int maxKeysInMemory = Integer.MAX_VALUE;
+    private Path spillDirectory;
+
+    /** Sets the listener notified of the calculation progress.
+     * @param listener a listener or null to remove the current one
+     * @return this instance
+     */
+    public Perft withListener(Listener listener) {
+        this.listener = listener;
+        return this;
     }
-    
+
+    /** Sets the cancellation token of the calculation.
+     * <br>The token is checked when the calculation starts, then periodically (every few thousands nodes). Once it returns true,
+     * the calculation stops as soon as possible and the returned result is marked as cancelled.
+     * <br>Example: <code>perft.withCancellation(Thread.currentThread()::isInterrupted)</code>
+     * @param cancellation a supplier that returns true when the calculation should be cancelled, or null to never cancel
+     * @return this instance
+     */
+    public Perft withCancellation(BooleanSupplier cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /** Sets the memory limit of {@link #uniquePositions(Board, int)}.
+     * <br>When more than <i>maxKeysInMemory</i> distinct keys are collected, they are written to a temporary file as a sorted run.
+     * All runs are merged at the end of the calculation and deleted. A key costs between 10 and 20 bytes in memory.
+     * @param maxKeysInMemory the maximum number of keys kept in memory
+     * @param directory the directory where temporary files are written, null to use the default temporary directory
+     * @return this instance
+     * @throws IllegalArgumentException if maxKeysInMemory is not strictly positive
+     */
+    public Perft withSpill(int maxKeysInMemory, Path directory) {
+        if (maxKeysInMemory <= 0) {
+            throw new IllegalArgumentException("Maximum number of keys in memory must be greater than 0");
+        }
+        this.maxKeysInMemory = maxKeysInMemory;
+        this.spillDirectory = directory;
+        return this;
+    }
+
     /** Performs a non bulk Perft (Performance Test) calculation.
      * @param board The board to run the performance test on.
      * @param depth The depth to run the performance test to
@@ -76,30 +186,115 @@ public class Perft {
     	if (depth<=0) {
     		throw new IllegalArgumentException("Depth must be greater than 0");
     	}
-        final MoveGenerator movegen = new MoveGenerator();
         final Result result = new Result();
-        result.leafNodesCount = perft(board, movegen, result, depth, depth, type);
+        walk(board, depth, new PerftVisitor(result, null, depth, type));
         return result;
     }
 
-    private long perft(Board board, MoveGenerator movegen, Result result, int depth, int originalDepth, Type type) {
-        result.searchedNodesCount++;
-        final List<Move> moves = movegen.generateMoves(board);
-        if (depth == 1 && type == Type.NON_BULK) {
-            return moves.size();
-        } else if (depth == 0) {
-            return 1;
-        }
-        long leafNodesCount = 0;
-        for (Move move : moves) {
-            board.makeMove(move);
-            long moveCount = perft(board, movegen, result, depth - 1, originalDepth, type);
-            if (depth == originalDepth) {
-                result.nodesPerMove.put(move, moveCount);
+    /** Performs a Perft (Performance Test) calculation that also counts the distinct positions at the last depth.
+     * <br>Leaf keys are stored in a primitive hash set, which is spilled to disk if a memory limit was set with {@link #withSpill(int, Path)}.
+     * @param board The board to run the performance test on.
+     * @param depth The depth to run the performance test to
+     * @return a non null result whose {@link Result#uniquePositionsCount()} is set
+     * @throws UncheckedIOException if an error occurs while spilling keys to disk
+     */
+    public Result uniquePositions(Board board, int depth) {
+        if (depth<=0) {
+            throw new IllegalArgumentException("Depth must be greater than 0");
+        }
+        final Result result = new Result();
+        try (UniqueKeyCounter positions = new UniqueKeyCounter(maxKeysInMemory, spillDirectory)) {
+            walk(board, depth, new PerftVisitor(result, positions, depth, Type.BULK));
+            result.uniquePositionsCount = positions.count();
+        }
+        result.endTime = System.nanoTime();
+        return result;
+    }
+
+    private void walk(Board board, int depth, PerftVisitor visitor) {
+        final Result result = visitor.result;
+        result.cancelled = isCancelled();
+        if (!result.cancelled) {
+            visitor.walker.walk(board, depth, visitor);
+            if (!result.cancelled) {
+                result.leafNodesCount = visitor.leafNodesCount;
             }
-            leafNodesCount += moveCount;
-            board.unmakeMove();
         }
-        return leafNodesCount;
+        result.endTime = System.nanoTime();
+    }
+
+    /** The visitor that counts the nodes of the tree, with the walker of its calculation. */
+    private class PerftVisitor implements TreeVisitor {
+        private final TreeWalker walker = new TreeWalker();
+        private final Result result;
+        private final UniqueKeyCounter positions;
+        private final int depth;
+        private final boolean countLastMoves;
+        private long leafNodesCount;
+        private long rootMoveStart;
+        // Leaves are counted in searched nodes but never check the cancellation, so the check is not a simple modulo
+        private long nextCancellationCheck = CANCELLATION_CHECK_INTERVAL;
+
+        private PerftVisitor(Result result, UniqueKeyCounter positions, int depth, Type type) {
+            this.result = result;
+            this.positions = positions;
+            this.depth = depth;
+            // With NON_BULK type, moves at last depth are not played, they are just counted
+            this.countLastMoves = type == Type.NON_BULK;
+        }
+
+        @Override
+        public boolean enter(Board board, int ply, List<Move> moves) {
+            if (++result.searchedNodesCount >= nextCancellationCheck) {
+                nextCancellationCheck = result.searchedNodesCount + CANCELLATION_CHECK_INTERVAL;
+                if (isCancelled()) {
+                    result.cancelled = true;
+                    walker.stop();
+                    return false;
+                }
+            }
+            if (ply == 1) {
+                rootMoveStart = leafNodesCount;
+            }
+            if (countLastMoves && ply == depth - 1) {
+                leafNodesCount += moves.size();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void leaf(Board board, int ply) {
+            result.searchedNodesCount++;
+            leafNodesCount++;
+            if (positions != null) {
+                positions.add(board.key());
+            }
+            if (ply == 1) {
+                rootMoveStart = leafNodesCount - 1;
+                rootMoveDone(board);
+            }
+        }
+
+        @Override
+        public void leave(Board board, int ply) {
+            if (ply == 1) {
+                rootMoveDone(board);
+            }
+        }
+
+        private void rootMoveDone(Board board) {
+            final Move move = board.getMoves()[board.getPly() - 1];
+            final long moveCount = leafNodesCount - rootMoveStart;
+            result.nodesPerMove.put(move, moveCount);
+            result.leafNodesCount = leafNodesCount;
+            if (listener != null) {
+                listener.rootMoveDone(move, moveCount, result);
+            }
+        }
+    }
+
+    private boolean isCancelled() {
+        return cancellation != null && cancellation.getAsBoolean();
     }
 }
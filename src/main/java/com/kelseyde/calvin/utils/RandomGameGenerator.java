@@ -0,0 +1,379 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.BoardBuilder;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Draw;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+import com.kelseyde.calvin.utils.binary.PackedPosition;
+import com.kelseyde.calvin.utils.notation.FEN;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * A generator of positions reached by random games, designed to build opening-diversified training data sets.
+ * <br>Each game starts from the standard start position, or from a random Chess960 start position, then plays a random
+ * number of random legal moves. A game that ends before (by mate, stalemate, threefold repetition, the fifty move rule
+ * or insufficient material) is discarded, otherwise its final position is kept if it passes the {@link PositionFilter filter}.
+ * <br>Positions are generated on several threads. The work is split in fixed size batches, each batch having its own
+ * random generator derived from the seed: with a given seed, the same positions are generated whatever the number of threads
+ * (but not in the same order). Each thread reuses its board, move generator and output buffer from one game to the next.
+ * <br>This class is not thread safe.
+ */
+public class RandomGameGenerator {
+
+    /** The format of the generated positions. */
+    public enum Format {
+        /** One FEN per line. */
+        FEN,
+        /** A {@link PackedPosition} per position. */
+        BINARY
+    }
+
+    /** A predicate on the generated positions. */
+    @FunctionalInterface
+    public interface PositionFilter {
+        /** Tests a position.
+         * @param board the board, it should be left unchanged
+         * @param moveGenerator a move generator the filter can use
+         * @param moves a list the filter can fill with {@link MoveGenerator#generateMoves(Board, MoveFilter, List)} instead
+         * of allocating a new one, its content is discarded after the call
+         * @return true to keep the position
+         */
+        boolean test(Board board, MoveGenerator moveGenerator, List<Move> moves);
+
+        /** Returns a filter that keeps the positions kept by this filter and by another one.
+         * @param other the other filter
+         * @return a filter
+         */
+        default PositionFilter and(PositionFilter other) {
+            return (board, moveGenerator, moves) -> test(board, moveGenerator, moves) && other.test(board, moveGenerator, moves);
+        }
+
+        /** Returns a filter that keeps all positions.
+         * @return a filter
+         */
+        static PositionFilter all() {
+            return (board, moveGenerator, moves) -> true;
+        }
+
+        /** Returns a filter that keeps the positions where the side to move is not in check.
+         * @return a filter
+         */
+        static PositionFilter notInCheck() {
+            return (board, moveGenerator, moves) -> !moveGenerator.isCheck(board, board.isWhite());
+        }
+
+        /** Returns a filter that keeps the quiet positions: the side to move is not in check and has no
+         * {@link MoveFilter#NOISY noisy} move (capture, promotion or check).
+         * @return a filter
+         */
+        static PositionFilter quiet() {
+            return (board, moveGenerator, moves) -> !moveGenerator.isCheck(board, board.isWhite())
+                    && moveGenerator.generateMoves(board, MoveFilter.NOISY, moves).isEmpty();
+        }
+
+        /** Returns a filter that keeps the positions whose material is in a range.
+         * <br>The material is the sum of the values of the pieces of both sides, kings excluded: 1 for a pawn,
+         * 3 for a knight or a bishop, 5 for a rook and 9 for a queen. The start position has a material of 78.
+         * @param min the minimum material (inclusive)
+         * @param max the maximum material (inclusive)
+         * @return a filter
+         */
+        static PositionFilter material(int min, int max) {
+            return (board, moveGenerator, moves) -> {
+                final int material = material(board);
+                return material >= min && material <= max;
+            };
+        }
+
+        private static int material(Board board) {
+            return Bits.count(board.getPawns()) + 3 * Bits.count(board.getKnights() | board.getBishops())
+                    + 5 * Bits.count(board.getRooks()) + 9 * Bits.count(board.getQueens());
+        }
+    }
+
+    /** The weight of a move, used to choose the random moves. */
+    @FunctionalInterface
+    public interface MoveWeigher {
+        /** Gets the weight of a legal move.
+         * @param board the board, before the move is played. It should be left unchanged.
+         * @param move the move
+         * @return a positive or zero weight, a move is chosen with a probability proportional to its weight
+         */
+        int weight(Board board, Move move);
+    }
+
+    // The number of positions of a batch
+    private static final int BATCH_SIZE = 1 << 12;
+    // The size of the output buffer of a thread
+    private static final int BUFFER_SIZE = 1 << 16;
+    // The start positions, as packed positions: the standard one, then the 960 Chess960 ones
+    private static final byte[] START_POSITIONS = startPositions();
+
+    private ChessVariant variant = ChessVariant.STANDARD;
+    private int minPlies = 8;
+    private int maxPlies = 8;
+    private PositionFilter filter = PositionFilter.all();
+    private MoveWeigher weigher;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = new SplittableRandom().nextLong();
+
+    /** Sets the variant of the games.
+     * <br>Standard games start from the standard start position, Chess960 games start from a random start position.
+     * The default variant is {@link ChessVariant#STANDARD}.
+     * @param variant the variant
+     * @return this instance
+     */
+    public RandomGameGenerator withVariant(ChessVariant variant) {
+        this.variant = variant;
+        return this;
+    }
+
+    /** Sets the number of plies of the games.
+     * <br>The number of plies of each game is chosen uniformly in the range, the default is 8 plies.
+     * @param minPlies the minimum number of plies (inclusive)
+     * @param maxPlies the maximum number of plies (inclusive)
+     * @return this instance
+     * @throws IllegalArgumentException if minPlies is negative or maxPlies is lower than minPlies
+     */
+    public RandomGameGenerator withPlies(int minPlies, int maxPlies) {
+        if (minPlies < 0 || maxPlies < minPlies) {
+            throw new IllegalArgumentException("Invalid plies range [" + minPlies + ", " + maxPlies + "]");
+        }
+        this.minPlies = minPlies;
+        this.maxPlies = maxPlies;
+        return this;
+    }
+
+    /** Sets the filter of the generated positions.
+     * <br>Games are played until enough positions pass the filter: a filter that rejects almost all positions makes
+     * the generation very long.
+     * @param filter a filter, null to keep all positions. It is called concurrently by the generator threads.
+     * @return this instance
+     */
+    public RandomGameGenerator withFilter(PositionFilter filter) {
+        this.filter = filter == null ? PositionFilter.all() : filter;
+        return this;
+    }
+
+    /** Sets the weigher of the random moves.
+     * @param weigher a weigher, null to choose the moves uniformly (the default). It is called concurrently by the generator threads.
+     * @return this instance
+     */
+    public RandomGameGenerator withWeigher(MoveWeigher weigher) {
+        this.weigher = weigher;
+        return this;
+    }
+
+    /** Sets the number of threads, the default is the number of available processors.
+     * @param parallelism the number of threads
+     * @return this instance
+     * @throws IllegalArgumentException if parallelism is not strictly positive
+     */
+    public RandomGameGenerator withParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /** Sets the seed of the random generators, the default is a random seed.
+     * @param seed the seed
+     * @return this instance
+     */
+    public RandomGameGenerator withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Generates positions and writes them to a stream.
+     * <br>Each thread buffers its positions and writes them in blocks, the stream is not flushed nor closed.
+     * @param count the number of positions
+     * @param format the format of the positions
+     * @param out the stream
+     * @throws IOException if the positions can't be written
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void generate(long count, Format format, OutputStream out) throws IOException {
+        final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+        run(count, () -> buffers.get().clear(), board -> {
+            final ByteBuffer buffer = buffers.get();
+            if (buffer.remaining() < FEN.MAX_LENGTH + 1) {
+                write(buffer, out);
+            }
+            if (format == Format.BINARY) {
+                PackedPosition.write(board, buffer);
+            } else {
+                FEN.write(board, buffer);
+                buffer.put((byte) '\n');
+            }
+        }, () -> write(buffers.get(), out));
+    }
+
+    /** Generates positions and passes them to a consumer.
+     * @param count the number of positions
+     * @param consumer the consumer, it is called concurrently by the generator threads. The board is reused by the generator,
+     * it is only valid during the call.
+     * @throws IllegalArgumentException if count is negative
+     * @throws UncheckedIOException if the generation is interrupted
+     */
+    public void generate(long count, Consumer<Board> consumer) {
+        try {
+            run(count, () -> {}, consumer::accept, () -> {});
+        } catch (IOException e) {
+            // Only thrown if the generation is interrupted, the consumer can't throw IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Sink {
+        void accept(Board board) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BatchListener {
+        void run() throws IOException;
+    }
+
+    private static void write(ByteBuffer buffer, OutputStream out) throws IOException {
+        if (buffer.position() > 0) {
+            synchronized (out) {
+                out.write(buffer.array(), 0, buffer.position());
+            }
+            buffer.clear();
+        }
+    }
+
+    private void run(long count, BatchListener start, Sink sink, BatchListener end) throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        final long batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+        final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        final ExecutorService executor = Executors.newFixedThreadPool((int) Math.max(1, Math.min(parallelism, batches)));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            // The batches are split in order from the same generator, so they don't depend on the threads
+            final SplittableRandom root = new SplittableRandom(seed);
+            for (long batch = 0; batch < batches; batch++) {
+                final int size = (int) Math.min(BATCH_SIZE, count - batch * BATCH_SIZE);
+                final SplittableRandom random = root.split();
+                futures.add(executor.submit(() -> {
+                    start.run();
+                    workers.get().generate(size, random, sink);
+                    end.run();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating positions");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] startPositions() {
+        final ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.BYTES * 961);
+        PackedPosition.write(BoardBuilder.newStandard(), buffer);
+        for (int i = 0; i < 960; i++) {
+            PackedPosition.write(BoardBuilder.newFischerRandom(i), buffer);
+        }
+        return buffer.array();
+    }
+
+    // The state of a generator thread
+    private class Worker {
+        private final Board board = new Board();
+        private final MoveGenerator moveGenerator = new MoveGenerator();
+        private final List<Move> moves = new ArrayList<>();
+        private final ByteBuffer startPositions = ByteBuffer.wrap(START_POSITIONS);
+        private int[] weights = new int[256];
+
+        private void generate(int count, SplittableRandom random, Sink sink) throws IOException {
+            int generated = 0;
+            while (generated < count) {
+                if (play(random) && filter.test(board, moveGenerator, moves)) {
+                    sink.accept(board);
+                    generated++;
+                }
+            }
+        }
+
+        // Plays a random game, returns false if it ended before its last ply
+        private boolean play(SplittableRandom random) {
+            final int position = variant == ChessVariant.CHESS960 ? 1 + random.nextInt(960) : 0;
+            PackedPosition.read(startPositions, position * PackedPosition.BYTES, board);
+            final int plies = minPlies + random.nextInt(maxPlies - minPlies + 1);
+            for (int ply = 0; ply <= plies; ply++) {
+                if (moveGenerator.generateMoves(board, MoveFilter.ALL, moves).isEmpty() || isDraw()) {
+                    return false;
+                }
+                if (ply < plies) {
+                    board.makeMove(moves.get(weigher == null ? random.nextInt(moves.size()) : weightedIndex(random)));
+                }
+            }
+            return true;
+        }
+
+        // Draw.isDraw, without its stalemate check (the caller already knows the side to move has legal moves)
+        private boolean isDraw() {
+            return Draw.isFiftyMoveRule(board) || Draw.isInsufficientMaterialFIDERule(board) || Draw.isThreefoldRepetition(board);
+        }
+
+        private int weightedIndex(SplittableRandom random) {
+            if (weights.length < moves.size()) {
+                weights = new int[moves.size()];
+            }
+            long total = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                final int weight = weigher.weight(board, moves.get(i));
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Negative weight " + weight + " for move " + Move.toUCI(moves.get(i)));
+                }
+                weights[i] = weight;
+                total += weight;
+            }
+            if (total == 0) {
+                return random.nextInt(moves.size());
+            }
+            long value = random.nextLong(total);
+            int index = 0;
+            while (value >= weights[index]) {
+                value -= weights[index++];
+            }
+            return index;
+        }
+    }
+}
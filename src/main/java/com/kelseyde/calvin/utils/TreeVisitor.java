@@ -0,0 +1,38 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+
+import java.util.List;
+
+/**
+ * A visitor of the move generation tree walked by a {@link TreeWalker}.
+ * <br>The board passed to the callbacks is the walked board, it should not be modified. The move that led to the current node
+ * is the last move of the board (<code>board.getMoves()[board.getPly() - 1]</code>).
+ */
+public interface TreeVisitor {
+
+    /** Called when an inner node (a node above the depth limit) is entered.
+     * @param board the board
+     * @param ply the distance to the root of the walk
+     * @param moves the moves generated at this node. This list is reused by the walker, it should not be modified or kept.
+     * @return true to walk the children of this node, false to skip them
+     */
+    boolean enter(Board board, int ply, List<Move> moves);
+
+    /** Called when a node at the depth limit is reached.
+     * <br>No move is generated for such a node.
+     * @param board the board
+     * @param ply the distance to the root of the walk
+     */
+    void leaf(Board board, int ply);
+
+    /** Called when an inner node is left, after its children were walked or skipped.
+     * <br>This method is not called if the walk was stopped.
+     * @param board the board
+     * @param ply the distance to the root of the walk
+     */
+    default void leave(Board board, int ply) {
+        // Nothing to do by default
+    }
+}
@@ -0,0 +1,103 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks the tree of moves of a position depth first, and notifies a {@link TreeVisitor} of the visited nodes.
+ * <br>A walker reuses its {@link MoveGenerator} and one move buffer per ply, so successive walks allocate nothing but the moves
+ * themselves. The board is restored to its initial state at the end of the walk, even if it was stopped.
+ * <br>This class is not thread safe.
+ */
+public class TreeWalker {
+
+    private static final int BUFFER_CAPACITY = 64;
+
+    private final MoveGenerator movegen;
+    private final List<List<Move>> buffers;
+    private MoveFilter filter;
+    private boolean stopped;
+
+    /** Creates a walker that walks all the legal moves. */
+    public TreeWalker() {
+        this.movegen = new MoveGenerator();
+        this.buffers = new ArrayList<>();
+        this.filter = MoveFilter.ALL;
+    }
+
+    /** Sets the filter applied to the generated moves.
+     * @param filter a non null filter
+     * @return this instance
+     */
+    public TreeWalker withFilter(MoveFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter can't be null");
+        }
+        this.filter = filter;
+        return this;
+    }
+
+    /** Walks the tree.
+     * @param board the root position
+     * @param depth the depth limit. The nodes at this depth are passed to {@link TreeVisitor#leaf(Board, int)}.
+     * @param visitor the visitor
+     * @throws IllegalArgumentException if depth is negative
+     */
+    public void walk(Board board, int depth, TreeVisitor visitor) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth can't be negative");
+        }
+        stopped = false;
+        if (depth == 0) {
+            visitor.leaf(board, 0);
+            return;
+        }
+        while (buffers.size() < depth) {
+            buffers.add(new ArrayList<>(BUFFER_CAPACITY));
+        }
+        walk(board, 0, depth, visitor);
+    }
+
+    /** Stops the current walk.
+     * <br>This method is intended to be called by the visitor. The walk ends as soon as the current callback returns, without
+     * calling any other callback.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Checks whether the last walk was stopped.
+     * @return true if {@link #stop()} was called during the last walk
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private void walk(Board board, int ply, int depth, TreeVisitor visitor) {
+        final List<Move> moves = movegen.generateMoves(board, filter, buffers.get(ply));
+        if (visitor.enter(board, ply, moves) && !stopped) {
+            final int childPly = ply + 1;
+            // moves is not modified by the children, which use the buffers of the next plies
+            for (int i = 0; i < moves.size(); i++) {
+                board.makeMove(moves.get(i));
+                if (childPly == depth) {
+                    visitor.leaf(board, childPly);
+                } else {
+                    walk(board, childPly, depth, visitor);
+                }
+                board.unmakeMove();
+                if (stopped) {
+                    return;
+                }
+            }
+        }
+        if (!stopped) {
+            visitor.leave(board, ply);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.kelseyde.calvin.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts distinct long keys.
+ * <br>Keys are collected in a {@link LongHashSet}. If a memory limit is set and the set reaches it, its content is written
+ * to a temporary file as a sorted run and the set is cleared. The same happens, without limit, when the set reaches its
+ * {@link LongHashSet#MAX_SIZE maximum size}. The distinct keys of all runs are finally counted by a k-way merge.
+ * <br>This class is not thread safe.
+ */
+class UniqueKeyCounter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final LongHashSet keys;
+    private final int maxKeysInMemory;
+    private final Path directory;
+    private final List<Path> runs;
+
+    /** Creates a counter that keeps all the keys in memory. */
+    UniqueKeyCounter() {
+        this(Integer.MAX_VALUE, null);
+    }
+
+    /** Creates a counter that spills keys to disk when needed.
+     * @param maxKeysInMemory the maximum number of keys kept in memory
+     * @param directory the directory where the temporary runs are written, null to use the default temporary directory
+     */
+    UniqueKeyCounter(int maxKeysInMemory, Path directory) {
+        if (maxKeysInMemory <= 0) {
+            throw new IllegalArgumentException("Maximum number of keys in memory must be greater than 0");
+        }
+        this.keys = maxKeysInMemory == Integer.MAX_VALUE ? new LongHashSet() : new LongHashSet(Math.min(maxKeysInMemory, LongHashSet.MAX_SIZE));
+        // Even without memory limit, keys are spilled when the set can't hold more keys
+        this.maxKeysInMemory = Math.min(maxKeysInMemory, LongHashSet.MAX_SIZE);
+        this.directory = directory;
+        this.runs = new ArrayList<>();
+    }
+
+    /** Adds a key.
+     * @param key the key to add
+     * @throws UncheckedIOException if the keys can't be spilled to disk
+     */
+    void add(long key) {
+        if (keys.add(key) && keys.size() >= maxKeysInMemory) {
+            spill();
+        }
+    }
+
+    /** Gets the number of spilled runs.
+     * @return an int
+     */
+    int runsCount() {
+        return runs.size();
+    }
+
+    /** Counts the distinct keys added so far.
+     * @return a long
+     * @throws UncheckedIOException if the spilled runs can't be read
+     */
+    long count() {
+        if (runs.isEmpty()) {
+            return keys.size();
+        }
+        if (!keys.isEmpty()) {
+            spill();
+        }
+        try {
+            return merge();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Deletes the spilled runs. */
+    @Override
+    public void close() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                // Temporary file, nothing more can be done
+            }
+        }
+        runs.clear();
+    }
+
+    private void spill() {
+        try {
+            final Path run = directory == null ? Files.createTempFile("perft", ".keys") : Files.createTempFile(directory, "perft", ".keys");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+                for (long key : keys.toSortedArray()) {
+                    out.writeLong(key);
+                }
+            }
+            keys.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long merge() throws IOException {
+        final PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), (r1, r2) -> Long.compare(r1.current, r2.current));
+        try {
+            for (Path path : runs) {
+                final Run run = new Run(path);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            long count = 0;
+            boolean first = true;
+            long last = 0;
+            while (!queue.isEmpty()) {
+                final Run run = queue.poll();
+                if (first || run.current != last) {
+                    count++;
+                    last = run.current;
+                    first = false;
+                }
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            return count;
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+        }
+    }
+
+    private static class Run implements AutoCloseable {
+        private final DataInputStream in;
+        private long current;
+
+        private Run(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        }
+
+        private boolean next() throws IOException {
+            try {
+                current = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.kelseyde.calvin.utils.binary;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reader of the games written by a {@link GameChainWriter}.
+ * <br>Games are read one by one with {@link #next(Board)}, their moves are decoded by generating the legal moves of each position.
+ * <br>This class is not thread safe.
+ */
+public class GameChainReader implements Closeable {
+
+    private final InputStream in;
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final List<Move> moves = new ArrayList<>();
+    private final ByteBuffer header = ByteBuffer.allocate(GameChainWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long bits;
+    private int bitCount;
+    private String result;
+
+    /**
+     * Creates a reader.
+     * @param in the input stream games are read from. It is buffered.
+     */
+    public GameChainReader(InputStream in) {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+    }
+
+    /**
+     * Reads the next game.
+     * @param board the board to fill, its previous position and moves history are discarded. The start position of the game
+     * is set, then its moves are played: after this method, the board is in the final position of the game and its moves
+     * history contains the moves of the game.
+     * @return false if there's no more game
+     * @throws IOException if the game can't be read or is corrupted
+     */
+    public boolean next(Board board) throws IOException {
+        final int read = in.readNBytes(header.array(), 0, GameChainWriter.HEADER_BYTES);
+        if (read == 0) {
+            return false;
+        } else if (read < GameChainWriter.HEADER_BYTES) {
+            throw new EOFException("Truncated game header");
+        }
+        try {
+            PackedPosition.read(header, 0, board);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid start position", e);
+        }
+        final int plies = header.getShort(PackedPosition.BYTES) & 0xFFFF;
+        final int resultCode = header.get(PackedPosition.BYTES + 2);
+        if (resultCode < 0 || resultCode >= GameChainWriter.RESULTS.length) {
+            throw new IOException("Invalid result code " + resultCode);
+        }
+        result = GameChainWriter.RESULTS[resultCode];
+        bits = 0;
+        bitCount = 0;
+        for (int ply = 0; ply < plies; ply++) {
+            moveGenerator.generateMoves(board, MoveFilter.ALL, moves);
+            final int index = readBits(GameChainWriter.bitWidth(moves.size()));
+            if (index >= moves.size()) {
+                throw new IOException("Invalid move index " + index + " at ply " + ply);
+            }
+            board.makeMove(moves.get(index));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the result of the last game read.
+     * @return one of {@link com.kelseyde.calvin.utils.notation.PGN#WHITE_WON}, {@link com.kelseyde.calvin.utils.notation.PGN#BLACK_WON},
+     * {@link com.kelseyde.calvin.utils.notation.PGN#DRAW} or {@link com.kelseyde.calvin.utils.notation.PGN#PLAYING}, null if no game was read
+     */
+    public String result() {
+        return result;
+    }
+
+    /**
+     * Closes the underlying stream.
+     * @throws IOException if the stream can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readBits(int width) throws IOException {
+        while (bitCount < width) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated game moves");
+            }
+            bits |= (long) b << bitCount;
+            bitCount += 8;
+        }
+        final int value = (int) (bits & ((1L << width) - 1));
+        bits >>>= width;
+        bitCount -= width;
+        return value;
+    }
+}
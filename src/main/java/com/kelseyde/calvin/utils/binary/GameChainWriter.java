@@ -0,0 +1,174 @@
+package com.kelseyde.calvin.utils.binary;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+import com.kelseyde.calvin.utils.notation.PGN;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A writer of games in a compact binary format, inspired by the <i>binpack</i> format of training data sets.
+ * <br>A game is stored as:
+ * <ul>
+ * <li>its start position, as a {@link PackedPosition},</li>
+ * <li>its number of plies, as a little endian unsigned short,</li>
+ * <li>its result, as a byte (0 for {@link PGN#PLAYING}, 1 for {@link PGN#WHITE_WON}, 2 for {@link PGN#BLACK_WON}, 3 for {@link PGN#DRAW}),</li>
+ * <li>for each ply, the index of the played move in the list returned by {@link MoveGenerator#generateMoves(Board)},
+ * written with the minimum number of bits required by the number of legal moves (0 bits for a forced move). The bits are
+ * written from the least significant bit of each byte, the last byte of a game is padded with zeros.</li>
+ * </ul>
+ * <br>A typical game takes about one byte per ply. As moves are stored as indexes, the games can only be decoded with
+ * a move generator that generates the moves in the same order.
+ * <br>This class is not thread safe.
+ * @see GameChainReader
+ */
+public class GameChainWriter implements Closeable, Flushable {
+
+    /** The size of the header of a game (start position, plies count and result). */
+    static final int HEADER_BYTES = PackedPosition.BYTES + 3;
+    /** The maximum number of plies of a game. */
+    public static final int MAX_PLIES = 0xFFFF;
+    static final String[] RESULTS = {PGN.PLAYING, PGN.WHITE_WON, PGN.BLACK_WON, PGN.DRAW};
+
+    private final OutputStream out;
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final List<Move> moves = new ArrayList<>();
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    // The encoded moves of the current game, they are written once all the moves are known to be legal
+    private byte[] encodedMoves = new byte[256];
+    private int encodedLength;
+    private long bits;
+    private int bitCount;
+
+    /**
+     * Creates a writer.
+     * @param out the output stream games are written to. It is buffered.
+     */
+    public GameChainWriter(OutputStream out) {
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out);
+    }
+
+    /**
+     * Writes a game with an unknown result.
+     * @param board the board, in the final position of the game. Its moves history contains the moves of the game.
+     * @throws IOException if the game can't be written
+     * @see #write(Board, String)
+     */
+    public void write(Board board) throws IOException {
+        write(board, PGN.PLAYING);
+    }
+
+    /**
+     * Writes a game.
+     * <br>The moves of the board are unplayed to find the start position of the game, then replayed. The board is left unchanged.
+     * <br>The game is encoded before anything is written, so nothing is written if it is invalid.
+     * @param board the board, in the final position of the game. Its moves history contains the moves of the game.
+     * @param result the result of the game, one of {@link PGN#WHITE_WON}, {@link PGN#BLACK_WON}, {@link PGN#DRAW} or {@link PGN#PLAYING}
+     * @throws IOException if the game can't be written
+     * @throws IllegalArgumentException if the result is unknown, or the game has more than {@value #MAX_PLIES} plies,
+     * or its start position can't be encoded
+     */
+    public void write(Board board, String result) throws IOException {
+        final int resultCode = resultCode(result);
+        final Move[] playedMoves = board.getMoves();
+        final int plies = board.getPly();
+        if (plies > MAX_PLIES) {
+            throw new IllegalArgumentException("Can't write games longer than " + MAX_PLIES + " plies");
+        }
+        for (int i = 0; i < plies; i++) {
+            board.unmakeMove();
+        }
+        int played = 0;
+        try {
+            PackedPosition.write(board, header, 0);
+            header.putShort(PackedPosition.BYTES, (short) plies);
+            header.put(PackedPosition.BYTES + 2, (byte) resultCode);
+            for (; played < plies; played++) {
+                final Move move = playedMoves[played];
+                moveGenerator.generateMoves(board, MoveFilter.ALL, moves);
+                final int index = moves.indexOf(move);
+                if (index < 0) {
+                    throw new IllegalArgumentException("Illegal move " + Move.toUCI(move) + " at ply " + played);
+                }
+                writeBits(index, bitWidth(moves.size()));
+                board.makeMove(move);
+            }
+            if (bitCount > 0) {
+                appendByte((int) bits);
+            }
+            out.write(header.array(), 0, HEADER_BYTES);
+            out.write(encodedMoves, 0, encodedLength);
+        } finally {
+            encodedLength = 0;
+            bits = 0;
+            bitCount = 0;
+            // Restores the final position if the game could not be written
+            for (; played < plies; played++) {
+                board.makeMove(playedMoves[played]);
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffered games to the underlying stream.
+     * @throws IOException if the games can't be written
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffered games and closes the underlying stream.
+     * @throws IOException if the games can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /** Gets the number of bits used to store the index of a move.
+     * @param moveCount the number of legal moves
+     * @return an int between 0 and 8
+     */
+    static int bitWidth(int moveCount) {
+        return moveCount <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(moveCount - 1);
+    }
+
+    private static int resultCode(String result) {
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown result " + result);
+    }
+
+    private void writeBits(int value, int width) {
+        bits |= (long) value << bitCount;
+        bitCount += width;
+        while (bitCount >= 8) {
+            appendByte((int) bits);
+            bits >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private void appendByte(int value) {
+        if (encodedLength == encodedMoves.length) {
+            encodedMoves = Arrays.copyOf(encodedMoves, 2 * encodedLength);
+        }
+        encodedMoves[encodedLength++] = (byte) value;
+    }
+}
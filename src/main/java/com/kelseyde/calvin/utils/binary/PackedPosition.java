@@ -0,0 +1,236 @@
+package com.kelseyde.calvin.utils.binary;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.BoardState;
+import com.kelseyde.calvin.board.Castling;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Colour;
+import com.kelseyde.calvin.board.File;
+import com.kelseyde.calvin.board.Key;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.board.Rank;
+import com.kelseyde.calvin.board.Square;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fixed size binary encoding of positions, designed to store large sets of positions.
+ * <br>A position is encoded in {@value #BYTES} bytes, as four little endian longs:
+ * <ul>
+ * <li>the occupancy bitboard,</li>
+ * <li>two longs containing a 4-bit code for each occupied square, in the order of the squares (a1 first, up to 32 pieces).
+ * The code is the {@link Piece#index() piece index}, plus 8 for black pieces. Code 6 is a rook that can castle, code 7 is
+ * a pawn that has just made a double move and can be captured en passant. This encodes the castling rights
+ * (Chess960 rook files included) and the en passant file without extra bits.</li>
+ * <li>the side to move (bit 0), the variant (bit 1 is set for Chess960) and the half move clock (bits 8 to 23),
+ * other bits are reserved.</li>
+ * </ul>
+ * <br>Positions are read from and written to {@link ByteBuffer}s without intermediate copies, and are decoded directly into
+ * the bitboards of an existing {@link Board}. Like {@link Board}, the encoding does not keep the full move number.
+ */
+public class PackedPosition {
+
+    /** The number of bytes of an encoded position. */
+    public static final int BYTES = 32;
+
+    private static final int MAX_PIECES = 32;
+    private static final int BLACK = 8;
+    private static final int CASTLING_ROOK = 6;
+    private static final int EN_PASSANT_PAWN = 7;
+    private static final int TYPE_MASK = 7;
+    private static final long BLACK_TO_MOVE = 1;
+    private static final long CHESS960 = 2;
+    private static final int HALF_MOVE_CLOCK_SHIFT = 8;
+    private static final int MAX_HALF_MOVE_CLOCK = 0xFFFF;
+    private static final Piece[] PIECES = Piece.values();
+
+    private PackedPosition() {
+        super();
+    }
+
+    /**
+     * Writes a position at the current position of a buffer, then increments the buffer position by {@value #BYTES}.
+     * @param board the board to encode
+     * @param buffer the buffer
+     * @throws IllegalArgumentException if the board has more than 32 pieces
+     * @throws BufferOverflowException if there are fewer than {@value #BYTES} bytes remaining in the buffer
+     */
+    public static void write(Board board, ByteBuffer buffer) {
+        final int index = buffer.position();
+        if (buffer.limit() - index < BYTES) {
+            throw new BufferOverflowException();
+        }
+        write(board, buffer, index);
+        buffer.position(index + BYTES);
+    }
+
+    /**
+     * Writes a position at an index of a buffer, the buffer position is not changed.
+     * @param board the board to encode
+     * @param buffer the buffer
+     * @param index the index of the first byte of the position
+     * @throws IllegalArgumentException if the board has more than 32 pieces
+     * @throws IndexOutOfBoundsException if there are fewer than {@value #BYTES} bytes after index in the buffer
+     */
+    public static void write(Board board, ByteBuffer buffer, int index) {
+        final long occupied = board.getOccupied();
+        if (Bits.count(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Can't encode more than " + MAX_PIECES + " pieces");
+        }
+        final BoardState state = board.getState();
+        final long white = board.getWhitePieces();
+        final long castlingRooks = castlingRooks(state.rights);
+        final int enPassantPawn = state.enPassantFile < 0 ? -1 : Square.of(board.isWhite() ? 4 : 3, state.enPassantFile);
+        long low = 0;
+        long high = 0;
+        long pieces = occupied;
+        for (int i = 0; pieces != 0; i++) {
+            final int square = Bits.next(pieces);
+            int code;
+            if (square == enPassantPawn) {
+                code = EN_PASSANT_PAWN;
+            } else if (Bits.contains(castlingRooks, square)) {
+                code = CASTLING_ROOK;
+            } else {
+                code = board.pieceAt(square).index();
+            }
+            if (!Bits.contains(white, square)) {
+                code |= BLACK;
+            }
+            if (i < 16) {
+                low |= (long) code << (4 * i);
+            } else {
+                high |= (long) code << (4 * (i - 16));
+            }
+            pieces = Bits.pop(pieces);
+        }
+        long flags = board.isWhite() ? 0 : BLACK_TO_MOVE;
+        if (board.variant() == ChessVariant.CHESS960) {
+            flags |= CHESS960;
+        }
+        flags |= (long) Math.min(state.halfMoveClock, MAX_HALF_MOVE_CLOCK) << HALF_MOVE_CLOCK_SHIFT;
+        final boolean swap = buffer.order() != ByteOrder.LITTLE_ENDIAN;
+        buffer.putLong(index, swap ? Long.reverseBytes(occupied) : occupied);
+        buffer.putLong(index + 8, swap ? Long.reverseBytes(low) : low);
+        buffer.putLong(index + 16, swap ? Long.reverseBytes(high) : high);
+        buffer.putLong(index + 24, swap ? Long.reverseBytes(flags) : flags);
+    }
+
+    /**
+     * Reads a position at the current position of a buffer, then increments the buffer position by {@value #BYTES}.
+     * @param buffer the buffer
+     * @param board the board to fill, its previous position and moves history are discarded. Its variant is set to the encoded one.
+     * @throws IllegalArgumentException if the data is not a valid encoded position
+     * @throws BufferUnderflowException if there are fewer than {@value #BYTES} bytes remaining in the buffer
+     */
+    public static void read(ByteBuffer buffer, Board board) {
+        final int index = buffer.position();
+        if (buffer.limit() - index < BYTES) {
+            throw new BufferUnderflowException();
+        }
+        read(buffer, index, board);
+        buffer.position(index + BYTES);
+    }
+
+    /**
+     * Reads a position at an index of a buffer, the buffer position is not changed.
+     * @param buffer the buffer
+     * @param index the index of the first byte of the position
+     * @param board the board to fill, its previous position and moves history are discarded. Its variant is set to the encoded one.
+     * @throws IllegalArgumentException if the data is not a valid encoded position, for instance if a side has no king or
+     * several kings, or if a pawn stands on the first or last rank
+     * @throws IndexOutOfBoundsException if there are fewer than {@value #BYTES} bytes after index in the buffer
+     */
+    public static void read(ByteBuffer buffer, int index, Board board) {
+        final boolean swap = buffer.order() != ByteOrder.LITTLE_ENDIAN;
+        final long occupied = swap ? Long.reverseBytes(buffer.getLong(index)) : buffer.getLong(index);
+        final long low = swap ? Long.reverseBytes(buffer.getLong(index + 8)) : buffer.getLong(index + 8);
+        final long high = swap ? Long.reverseBytes(buffer.getLong(index + 16)) : buffer.getLong(index + 16);
+        final long flags = swap ? Long.reverseBytes(buffer.getLong(index + 24)) : buffer.getLong(index + 24);
+        if (Bits.count(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Too many pieces");
+        }
+        board.clear();
+        final boolean whiteToMove = (flags & BLACK_TO_MOVE) == 0;
+        board.setWhite(whiteToMove);
+        board.setVariant((flags & CHESS960) == 0 ? ChessVariant.STANDARD : ChessVariant.CHESS960);
+        final BoardState state = board.getState();
+        long castlingRooks = 0;
+        long pieces = occupied;
+        for (int i = 0; pieces != 0; i++) {
+            final int square = Bits.next(pieces);
+            final int code = (int) ((i < 16 ? low >>> (4 * i) : high >>> (4 * (i - 16))) & 0xF);
+            final boolean white = (code & BLACK) == 0;
+            final int type = code & TYPE_MASK;
+            final Piece piece;
+            if (type == CASTLING_ROOK) {
+                if (Rank.of(square) != (white ? 0 : 7)) {
+                    throw new IllegalArgumentException("Invalid castling rook square " + Square.toNotation(square));
+                }
+                castlingRooks |= Bits.of(square);
+                piece = Piece.ROOK;
+            } else if (type == EN_PASSANT_PAWN) {
+                if (white == whiteToMove || Rank.of(square) != (white ? 3 : 4) || state.enPassantFile >= 0) {
+                    throw new IllegalArgumentException("Invalid en passant pawn square " + Square.toNotation(square));
+                }
+                state.enPassantFile = File.of(square);
+                piece = Piece.PAWN;
+            } else {
+                piece = PIECES[type];
+            }
+            board.addPiece(square, piece, white);
+            pieces = Bits.pop(pieces);
+        }
+        checkOneKing(board, true);
+        checkOneKing(board, false);
+        if ((board.getPawns() & (Rank.FIRST | Rank.EIGHTH)) != 0) {
+            throw new IllegalArgumentException("Pawn on the first or last rank");
+        }
+        state.rights = rights(board, castlingRooks);
+        state.halfMoveClock = (int) (flags >>> HALF_MOVE_CLOCK_SHIFT) & MAX_HALF_MOVE_CLOCK;
+        Key.generateKeys(board);
+    }
+
+    // Move generation requires exactly one king per side
+    private static void checkOneKing(Board board, boolean white) {
+        final int kingCount = Bits.count(board.getKing(white));
+        if (kingCount != 1) {
+            throw new IllegalArgumentException(String.format("Expected one %s king, found %d", Colour.label(white), kingCount));
+        }
+    }
+
+    private static long castlingRooks(int rights) {
+        long rooks = 0;
+        for (int i = 0; i < 4; i++) {
+            final int rook = Castling.getRook(rights, (i & 1) == 0, i < 2);
+            if (rook != Castling.NO_ROOK) {
+                rooks |= Bits.of(rook);
+            }
+        }
+        return rooks;
+    }
+
+    // Rebuilds the castling rights, a rook castles kingside if it is on the right of its king
+    private static int rights(Board board, long castlingRooks) {
+        int rights = Castling.empty();
+        while (castlingRooks != 0) {
+            final int rook = Bits.next(castlingRooks);
+            final boolean white = Rank.of(rook) == 0;
+            final long king = board.getKing(white);
+            if (king == 0) {
+                throw new IllegalArgumentException("No king for castling rook " + Square.toNotation(rook));
+            }
+            final boolean kingside = File.of(rook) > File.of(Bits.next(king));
+            if (Castling.getRook(rights, kingside, white) != Castling.NO_ROOK) {
+                throw new IllegalArgumentException("Too many castling rooks");
+            }
+            rights = Castling.setRook(rights, kingside, white, rook);
+            castlingRooks = Bits.pop(castlingRooks);
+        }
+        return rights;
+    }
+}
@@ -0,0 +1,234 @@
+package com.kelseyde.calvin.utils.book;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Castling;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.board.Piece;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A reader of <a href="http://hgm.nubati.net/book_format.html">Polyglot opening books</a>.
+ * <br>A Polyglot book is a sequence of 16 bytes big endian entries (key, move, weight and learn fields) sorted by key.
+ * The file is memory mapped and searched by dichotomy, so opening a book is cheap whatever its size and the book is never
+ * loaded in the java heap.
+ * <br>The index based methods ({@link #firstIndex(long)}, {@link #key(int)}, {@link #weight(int)}, etc...) do not allocate
+ * any object. The entries of a position are contiguous: they start at {@link #firstIndex(long)} and continue while
+ * {@link #key(int)} returns the same key.
+ * <br>Instances are thread safe. Files larger than 2GB are not supported.
+ */
+public class PolyglotBook implements AutoCloseable {
+
+    /** The size in bytes of a book entry. */
+    public static final int ENTRY_SIZE = 16;
+
+    private static final int MOVE_OFFSET = 8;
+    private static final int WEIGHT_OFFSET = 10;
+    private static final int LEARN_OFFSET = 12;
+    // Polyglot promotion piece codes (1 to 4) to move flags
+    private static final short[] PROMOTION_FLAGS = {Move.NO_FLAG, Move.PROMOTE_TO_KNIGHT_FLAG, Move.PROMOTE_TO_BISHOP_FLAG,
+            Move.PROMOTE_TO_ROOK_FLAG, Move.PROMOTE_TO_QUEEN_FLAG};
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final PolyglotKeys keys;
+    private final int size;
+
+    private PolyglotBook(FileChannel channel, PolyglotKeys keys) throws IOException {
+        final long length = channel.size();
+        if (length % ENTRY_SIZE != 0) {
+            throw new IllegalArgumentException("File size (" + length + ") is not a multiple of " + ENTRY_SIZE);
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Files larger than 2GB are not supported");
+        }
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        this.buffer.order(ByteOrder.BIG_ENDIAN);
+        this.keys = keys;
+        this.size = (int) (length / ENTRY_SIZE);
+    }
+
+    /** Opens a book that uses the standard Polyglot keys.
+     * @param path the path of the book file
+     * @return a new book, it should be closed once no more used
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if the file size is not a multiple of {@value #ENTRY_SIZE}
+     * @throws IllegalStateException if the standard keys are not available (see {@link PolyglotKeys#standard()})
+     */
+    public static PolyglotBook open(Path path) throws IOException {
+        return open(path, PolyglotKeys.standard());
+    }
+
+    /** Opens a book.
+     * @param path the path of the book file
+     * @param keys the keys used to build the book
+     * @return a new book, it should be closed once no more used
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if the file size is not a multiple of {@value #ENTRY_SIZE}
+     */
+    public static PolyglotBook open(Path path, PolyglotKeys keys) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new PolyglotBook(channel, keys);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Gets the keys used by this book.
+     * @return the keys passed to {@link #open(Path, PolyglotKeys)}
+     */
+    public PolyglotKeys keys() {
+        return keys;
+    }
+
+    /** Gets the number of entries of this book.
+     * @return an int
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Gets the index of the first entry of a position.
+     * @param key the Polyglot key of the position (see {@link PolyglotKeys#key(Board)})
+     * @return the index of the first entry whose key is <i>key</i>, -1 if the book does not contain the position
+     */
+    public int firstIndex(long key) {
+        // Keys are sorted as unsigned numbers
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < size && key(low) == key ? low : -1;
+    }
+
+    /** Gets the index of the entry of a position that has the highest weight.
+     * @param key the Polyglot key of the position
+     * @return an entry index, -1 if the book does not contain the position
+     */
+    public int bestIndex(long key) {
+        int best = firstIndex(key);
+        if (best >= 0) {
+            for (int i = best + 1; i < size && key(i) == key; i++) {
+                if (weight(i) > weight(best)) {
+                    best = i;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Gets the key of an entry.
+     * @param index the entry index
+     * @return a long
+     * @throws IndexOutOfBoundsException if index is not in [0, size()[
+     */
+    public long key(int index) {
+        return buffer.getLong(offset(index));
+    }
+
+    /** Gets the move of an entry, as encoded in the book.
+     * @param index the entry index
+     * @return the raw Polyglot move (see {@link #move(int, Board)} to convert it)
+     * @throws IndexOutOfBoundsException if index is not in [0, size()[
+     */
+    public int rawMove(int index) {
+        return buffer.getShort(offset(index) + MOVE_OFFSET) & 0xFFFF;
+    }
+
+    /** Gets the weight of an entry.
+     * @param index the entry index
+     * @return an int between 0 and 65535
+     * @throws IndexOutOfBoundsException if index is not in [0, size()[
+     */
+    public int weight(int index) {
+        return buffer.getShort(offset(index) + WEIGHT_OFFSET) & 0xFFFF;
+    }
+
+    /** Gets the learn field of an entry.
+     * @param index the entry index
+     * @return an int
+     * @throws IndexOutOfBoundsException if index is not in [0, size()[
+     */
+    public int learn(int index) {
+        return buffer.getInt(offset(index) + LEARN_OFFSET);
+    }
+
+    /** Gets the move of an entry.
+     * @param index the entry index
+     * @param board the position of the entry, it is used to set the move flags that Polyglot does not encode
+     * @return a move
+     * @throws IndexOutOfBoundsException if index is not in [0, size()[
+     */
+    public Move move(int index, Board board) {
+        return toMove(rawMove(index), board);
+    }
+
+    /** Gets the move with the highest weight for a board.
+     * @param board the board
+     * @return a move or null if the book does not contain the position
+     */
+    public Move bestMove(Board board) {
+        final int index = bestIndex(keys.key(board));
+        return index < 0 ? null : move(index, board);
+    }
+
+    /** Converts a Polyglot move.
+     * @param polyglotMove the Polyglot move
+     * @param board the position where the move is played
+     * @return a move
+     */
+    static Move toMove(int polyglotMove, Board board) {
+        final int to = polyglotMove & 0x3F;
+        final int from = (polyglotMove >>> 6) & 0x3F;
+        final int promotion = (polyglotMove >>> 12) & 0x7;
+        if (promotion != 0) {
+            return new Move(from, to, PROMOTION_FLAGS[promotion]);
+        }
+        final Piece piece = board.pieceAt(from);
+        if (piece == Piece.KING && board.pieceAt(to) == Piece.ROOK && board.isWhite() == isWhite(board, to)) {
+            // Polyglot encodes castling as 'king takes rook', which is also the Chess960 encoding of this library
+            if (board.variant() == ChessVariant.CHESS960) {
+                return new Move(from, to, Move.CASTLE_FLAG);
+            }
+            return new Move(from, Castling.kingTo(to > from, board.isWhite()), Move.CASTLE_FLAG);
+        }
+        if (piece == Piece.PAWN) {
+            final int distance = Math.abs(to - from);
+            if (distance == 16) {
+                return new Move(from, to, Move.PAWN_DOUBLE_MOVE_FLAG);
+            }
+            if (distance != 8 && board.pieceAt(to) == null) {
+                return new Move(from, to, Move.EN_PASSANT_FLAG);
+            }
+        }
+        return new Move(from, to);
+    }
+
+    private static boolean isWhite(Board board, int square) {
+        return (board.getWhitePieces() & (1L << square)) != 0;
+    }
+
+    private static int offset(int index) {
+        return index * ENTRY_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,152 @@
+package com.kelseyde.calvin.utils.book;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Castling;
+import com.kelseyde.calvin.board.Piece;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the keys used by <a href="http://hgm.nubati.net/book_format.html">Polyglot opening books</a>.
+ * <br>Polyglot keys are Zobrist keys built from a table of 781 random numbers (the <i>Random64</i> array of the format
+ * specification): 768 piece/square numbers, 4 castling numbers, 8 en passant file numbers and the side to move number.
+ * They differ from the keys maintained by {@link Board}, which use their own random numbers. As books are probed far less
+ * often than the board keys are updated, Polyglot keys are computed from scratch, by iterating over the piece bitboards.
+ * <br>Instances are immutable and thread safe.
+ */
+public final class PolyglotKeys {
+
+    /** The number of random numbers of a Polyglot table. */
+    public static final int RANDOM_COUNT = 781;
+    /** The name of the class path resource that contains the standard Polyglot random numbers.
+     * <br>The resource is a text file that contains the 781 numbers of the Random64 array, in hexadecimal with a 0x prefix,
+     * for instance a copy of the array in the format specification.
+     */
+    public static final String STANDARD_RESOURCE = "polyglot-random64.txt";
+
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final Pattern HEX_NUMBER = Pattern.compile("0[xX]([0-9a-fA-F]{1,16})");
+    private static final Piece[] PIECES = Piece.values();
+
+    private static PolyglotKeys standard;
+
+    private final long[] random;
+
+    /** Creates an instance.
+     * @param random the random numbers, in the order of the Polyglot specification
+     * @throws IllegalArgumentException if the array does not contain {@value #RANDOM_COUNT} numbers
+     */
+    public PolyglotKeys(long[] random) {
+        if (random.length != RANDOM_COUNT) {
+            throw new IllegalArgumentException("Expected " + RANDOM_COUNT + " random numbers, got " + random.length);
+        }
+        this.random = random.clone();
+    }
+
+    /** Reads the random numbers of a table.
+     * <br>The stream should contain the random numbers in hexadecimal with a 0x prefix. All other characters are ignored,
+     * so the array can be copied from a C or Python source.
+     * @param in the stream to read, it is not closed by this method
+     * @return a new instance
+     * @throws IOException if the stream can't be read
+     * @throws IllegalArgumentException if the stream does not contain {@value #RANDOM_COUNT} numbers
+     */
+    public static PolyglotKeys load(InputStream in) throws IOException {
+        final Matcher matcher = HEX_NUMBER.matcher(new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        final long[] random = new long[RANDOM_COUNT];
+        int count = 0;
+        while (matcher.find()) {
+            if (count == RANDOM_COUNT) {
+                throw new IllegalArgumentException("More than " + RANDOM_COUNT + " random numbers");
+            }
+            random[count++] = Long.parseUnsignedLong(matcher.group(1), 16);
+        }
+        if (count != RANDOM_COUNT) {
+            throw new IllegalArgumentException("Expected " + RANDOM_COUNT + " random numbers, got " + count);
+        }
+        return new PolyglotKeys(random);
+    }
+
+    /** Gets the instance that uses the standard Polyglot random numbers.
+     * <br>The numbers are read from the {@value #STANDARD_RESOURCE} class path resource.
+     * @return an instance
+     * @throws IllegalStateException if the resource is not available or is invalid
+     */
+    public static synchronized PolyglotKeys standard() {
+        if (standard == null) {
+            try (InputStream in = PolyglotKeys.class.getResourceAsStream(STANDARD_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Resource " + STANDARD_RESOURCE + " is missing");
+                }
+                standard = load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Resource " + STANDARD_RESOURCE + " is invalid", e);
+            }
+        }
+        return standard;
+    }
+
+    /** Computes the Polyglot key of a board.
+     * @param board the board
+     * @return a key
+     */
+    public long key(Board board) {
+        long key = 0L;
+        for (Piece piece : PIECES) {
+            // Polyglot piece order is black pawn, white pawn, black knight, white knight, etc...
+            key ^= squaresKey(board.getPieces(piece, false), 128 * piece.index());
+            key ^= squaresKey(board.getPieces(piece, true), 128 * piece.index() + 64);
+        }
+
+        final int rights = board.getState().getRights();
+        if (Castling.kingsideAllowed(rights, true)) {
+            key ^= random[CASTLING_OFFSET];
+        }
+        if (Castling.queensideAllowed(rights, true)) {
+            key ^= random[CASTLING_OFFSET + 1];
+        }
+        if (Castling.kingsideAllowed(rights, false)) {
+            key ^= random[CASTLING_OFFSET + 2];
+        }
+        if (Castling.queensideAllowed(rights, false)) {
+            key ^= random[CASTLING_OFFSET + 3];
+        }
+
+        final int enPassantFile = board.getState().getEnPassantFile();
+        if (enPassantFile >= 0 && canCaptureEnPassant(board, enPassantFile)) {
+            key ^= random[EN_PASSANT_OFFSET + enPassantFile];
+        }
+
+        if (board.isWhite()) {
+            key ^= random[TURN_OFFSET];
+        }
+        return key;
+    }
+
+    private long squaresKey(long bitboard, int offset) {
+        long key = 0L;
+        while (bitboard != 0) {
+            key ^= random[offset + Bits.next(bitboard)];
+            bitboard = Bits.pop(bitboard);
+        }
+        return key;
+    }
+
+    // Polyglot only hashes the en passant file if a pawn of the side to move stands next to the pawn that was just pushed
+    private static boolean canCaptureEnPassant(Board board, int file) {
+        final boolean white = board.isWhite();
+        final int pushedPawn = (white ? 32 : 24) + file;
+        final long pawns = board.getPawns(white);
+        return (file > 0 && Bits.contains(pawns, pushedPawn - 1)) || (file < 7 && Bits.contains(pawns, pushedPawn + 1));
+    }
+}
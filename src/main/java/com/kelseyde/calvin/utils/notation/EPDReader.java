@@ -0,0 +1,396 @@
+package com.kelseyde.calvin.utils.notation;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A streaming <a href="https://www.chessprogramming.org/Extended_Position_Description">Extended Position Description</a> reader
+ * designed to load large test suites.
+ * <br>Lines are read one by one with {@link #next(Board)}. The four position fields are parsed by a {@link FENParser},
+ * directly in the read buffer. The operations that follow them are only indexed: the operands are converted to strings
+ * or moves when they are requested. A position may also be followed by the half move clock and the full move number,
+ * as in a FEN, before its operations.
+ * <br>The input should be ASCII compatible, as UTF-8 or ISO-8859-1. Blank lines are skipped.
+ * <br>This class is not thread safe, each thread should use its own reader.
+ */
+public class EPDReader implements Closeable {
+
+    /** The half move clock opcode, its operand is applied to the board. */
+    public static final String HALF_MOVE_CLOCK = "hmvc";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final FENParser fenParser = new FENParser();
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+    private long lineNumber;
+    private Board board;
+
+    // The current line, and the index of its operations: opcode start, opcode end, operands start, operands end
+    private int lineStart;
+    private int lineEnd;
+    private int[] operations = new int[4 * 8];
+    private int operationCount;
+
+    /**
+     * Creates a reader.
+     * @param in the input stream the positions are read from. It is buffered by the reader.
+     */
+    public EPDReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next position.
+     * @param board the board to fill, its previous position and moves history are discarded. The board keeps its
+     * {@link Board#variant() variant}.
+     * @return false if there's no more position
+     * @throws IOException if the positions can't be read
+     * @throws IllegalArgumentException if the line is not a valid EPD. The reader can still be used to read the next lines.
+     */
+    public boolean next(Board board) throws IOException {
+        this.board = null;
+        operationCount = 0;
+        do {
+            if (!nextLine()) {
+                return false;
+            }
+        } while (isBlank());
+        final int fenEnd = fenEnd();
+        final int code = fenParser.parse(buffer, lineStart, fenEnd, board);
+        if (code != FENParser.OK) {
+            throw new IllegalArgumentException("Invalid EPD at line " + lineNumber + ": " + FENParser.message(code));
+        }
+        indexOperations(fenEnd);
+        final int halfMoveClock = indexOf(HALF_MOVE_CLOCK);
+        if (halfMoveClock >= 0) {
+            board.getState().halfMoveClock = parseNumber(halfMoveClock);
+        }
+        this.board = board;
+        return true;
+    }
+
+    /**
+     * Gets the number of the last read line.
+     * @return a line number, starting at 1
+     */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets the number of operations of the current position.
+     * @return an int
+     */
+    public int operationCount() {
+        return operationCount;
+    }
+
+    /**
+     * Gets the opcode of an operation of the current position.
+     * @param index the index of the operation
+     * @return the opcode
+     * @throws IndexOutOfBoundsException if index is not between 0 and {@link #operationCount()} - 1
+     */
+    public String opcode(int index) {
+        if (index < 0 || index >= operationCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return string(operations[4 * index], operations[4 * index + 1]);
+    }
+
+    /**
+     * Checks if the current position has an operation.
+     * @param opcode the opcode of the operation (for instance "bm")
+     * @return true if the position has the operation
+     */
+    public boolean hasOperation(String opcode) {
+        return indexOf(opcode) >= 0;
+    }
+
+    /**
+     * Gets the operands of an operation of the current position, as a single string.
+     * <br>A single string operand is returned without its quotes, so <code>id "WAC.001";</code> returns "WAC.001".
+     * @param opcode the opcode of the operation (for instance "id")
+     * @return the operands, or null if the position has no such operation
+     */
+    public String operand(String opcode) {
+        final int index = indexOf(opcode);
+        if (index < 0) {
+            return null;
+        }
+        int start = operations[4 * index + 2];
+        int end = operations[4 * index + 3];
+        if (end - start >= 2 && buffer[start] == '"' && buffer[end - 1] == '"' && indexOfQuote(start + 1, end - 1) < 0) {
+            start++;
+            end--;
+        }
+        return string(start, end);
+    }
+
+    /**
+     * Gets the operands of an operation of the current position.
+     * <br>The operands are separated by spaces, string operands are returned without their quotes.
+     * @param opcode the opcode of the operation (for instance "bm")
+     * @return the operands, an empty list if the position has no such operation
+     */
+    public List<String> operands(String opcode) {
+        final int index = indexOf(opcode);
+        if (index < 0) {
+            return List.of();
+        }
+        final List<String> operands = new ArrayList<>();
+        final int end = operations[4 * index + 3];
+        int i = operations[4 * index + 2];
+        while (i < end) {
+            if (isSpace(buffer[i])) {
+                i++;
+            } else if (buffer[i] == '"') {
+                final int quote = indexOfQuote(i + 1, end);
+                final int stringEnd = quote < 0 ? end : quote;
+                operands.add(string(i + 1, stringEnd));
+                i = stringEnd + 1;
+            } else {
+                final int start = i;
+                while (i < end && !isSpace(buffer[i])) {
+                    i++;
+                }
+                operands.add(string(start, i));
+            }
+        }
+        return operands;
+    }
+
+    /**
+     * Gets the moves of an operation of the current position (for instance the best moves of "bm").
+     * <br>The moves should be in SAN, UCI notation is also accepted.
+     * @param opcode the opcode of the operation
+     * @return the moves, an empty list if the position has no such operation
+     * @throws IllegalArgumentException if an operand is not a legal move
+     */
+    public List<Move> moves(String opcode) {
+        final List<String> operands = operands(opcode);
+        final List<Move> moves = new ArrayList<>(operands.size());
+        for (String operand : operands) {
+            Move move = SAN.toMove(board, operand, moveGenerator);
+            if (move == null) {
+                try {
+                    move = board.parseUciMove(operand, 0, moveGenerator);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid move " + operand + " at line " + lineNumber, e);
+                }
+            }
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    /**
+     * Closes the underlying stream.
+     * @throws IOException if the stream can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Finds the next line in the buffer, reading the stream if needed
+    private boolean nextLine() throws IOException {
+        int newLine = indexOfNewLine(position);
+        while (newLine < 0 && !eof) {
+            fill();
+            newLine = indexOfNewLine(position);
+        }
+        if (newLine < 0) {
+            if (position == limit) {
+                return false;
+            }
+            // The last line has no line terminator
+            newLine = limit;
+        }
+        lineStart = position;
+        lineEnd = newLine > lineStart && buffer[newLine - 1] == '\r' ? newLine - 1 : newLine;
+        position = Math.min(newLine + 1, limit);
+        lineNumber++;
+        return true;
+    }
+
+    private int indexOfNewLine(int from) {
+        for (int i = from; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Moves the unread bytes to the start of the buffer (growing it if they fill it), then reads the stream
+    private void fill() throws IOException {
+        final int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        position = 0;
+        limit = remaining;
+        final int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (!isSpace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the end of the position: the four FEN fields, followed by the move counters if present
+    private int fenEnd() {
+        int i = lineStart;
+        for (int field = 0; field < 4; field++) {
+            i = skipSpaces(i);
+            while (i < lineEnd && !isSpace(buffer[i]) && buffer[i] != ';') {
+                i++;
+            }
+        }
+        for (int counter = 0; counter < 2; counter++) {
+            final int start = skipSpaces(i);
+            int end = start;
+            while (end < lineEnd && buffer[end] >= '0' && buffer[end] <= '9') {
+                end++;
+            }
+            // Opcodes start with a letter, a number is a move counter
+            if (end == start || (end < lineEnd && !isSpace(buffer[end]) && buffer[end] != ';')) {
+                break;
+            }
+            i = end;
+        }
+        return i;
+    }
+
+    private void indexOperations(int from) {
+        int i = from;
+        while (true) {
+            i = skipSpaces(i);
+            if (i >= lineEnd) {
+                return;
+            }
+            if (buffer[i] == ';') {
+                // Empty operation
+                i++;
+                continue;
+            }
+            final int opcodeStart = i;
+            while (i < lineEnd && !isSpace(buffer[i]) && buffer[i] != ';') {
+                i++;
+            }
+            final int opcodeEnd = i;
+            i = skipSpaces(i);
+            final int operandsStart = i;
+            boolean quoted = false;
+            while (i < lineEnd && (quoted || buffer[i] != ';')) {
+                if (buffer[i] == '"') {
+                    quoted = !quoted;
+                }
+                i++;
+            }
+            int operandsEnd = i;
+            while (operandsEnd > operandsStart && isSpace(buffer[operandsEnd - 1])) {
+                operandsEnd--;
+            }
+            if (4 * operationCount == operations.length) {
+                operations = Arrays.copyOf(operations, operations.length * 2);
+            }
+            final int index = 4 * operationCount++;
+            operations[index] = opcodeStart;
+            operations[index + 1] = opcodeEnd;
+            operations[index + 2] = operandsStart;
+            operations[index + 3] = operandsEnd;
+            // Skips the semicolon
+            i++;
+        }
+    }
+
+    // Returns the index of an operation, or -1 if the current position has no such operation
+    private int indexOf(String opcode) {
+        for (int index = 0; index < operationCount; index++) {
+            final int start = operations[4 * index];
+            final int end = operations[4 * index + 1];
+            if (end - start == opcode.length() && equals(start, opcode)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean equals(int start, String opcode) {
+        for (int i = 0; i < opcode.length(); i++) {
+            if ((buffer[start + i] & 0xFF) != opcode.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOfQuote(int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer[i] == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseNumber(int index) {
+        final int start = operations[4 * index + 2];
+        final int end = operations[4 * index + 3];
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int c = buffer[i];
+            if (c < '0' || c > '9' || i - start >= 9) {
+                throw new IllegalArgumentException("Invalid " + HALF_MOVE_CLOCK + " operand at line " + lineNumber);
+            }
+            value = value * 10 + c - '0';
+        }
+        if (start == end) {
+            throw new IllegalArgumentException("Missing " + HALF_MOVE_CLOCK + " operand at line " + lineNumber);
+        }
+        return value;
+    }
+
+    private int skipSpaces(int from) {
+        int i = from;
+        while (i < lineEnd && isSpace(buffer[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private String string(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+}
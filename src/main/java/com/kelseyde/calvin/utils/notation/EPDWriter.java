@@ -0,0 +1,145 @@
+package com.kelseyde.calvin.utils.notation;
+
+import com.kelseyde.calvin.board.Board;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An <a href="https://www.chessprogramming.org/Extended_Position_Description">Extended Position Description</a> writer.
+ * <br>Each position is written on its own line: the four position fields of its FEN, followed by its operations.
+ * The half move clock of the board is written as an {@value EPDReader#HALF_MOVE_CLOCK} operation when it is not zero,
+ * so that {@link EPDReader} restores it.
+ * <br>This class is not thread safe.
+ */
+public class EPDWriter implements Closeable, Flushable {
+
+    private static final int POSITION_FIELDS = 4;
+
+    private final Writer out;
+    private final StringBuilder fen = new StringBuilder(FEN.MAX_LENGTH);
+    private char[] chars = new char[FEN.MAX_LENGTH];
+
+    /**
+     * Creates a writer.
+     * @param out the writer positions are written to. It is buffered if it is not a {@link BufferedWriter}.
+     */
+    public EPDWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+    }
+
+    /**
+     * Creates a writer that writes UTF-8 encoded positions.
+     * @param out the output stream positions are written to. It is buffered.
+     */
+    public EPDWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a position without operations, except its half move clock.
+     * @param board the board
+     * @throws IOException if the position can't be written
+     */
+    public void write(Board board) throws IOException {
+        write(board, Collections.emptyMap());
+    }
+
+    /**
+     * Writes a position and its operations.
+     * <br>The operands are written as is (for instance "Nf3 Nc3" for a "bm" operation), except for the "id" and the
+     * comment ("c0" to "c9") operations, and the operands that contain a semicolon, that are written as a quoted string.
+     * An empty operand writes an operation without operand.
+     * @param board the board
+     * @param operations the operands of the operations by opcode, in the order they are written
+     * @throws IOException if the position can't be written
+     * @throws IllegalArgumentException if an opcode is empty or contains a space or a semicolon, or an operand contains a quote
+     */
+    public void write(Board board, Map<String, String> operations) throws IOException {
+        // Nothing is written if an operation is invalid
+        for (Map.Entry<String, String> operation : operations.entrySet()) {
+            checkOperation(operation.getKey(), operation.getValue());
+        }
+        fen.setLength(0);
+        FEN.write(board, fen);
+        int fields = 0;
+        int length = 0;
+        while (length < fen.length() && (fen.charAt(length) != ' ' || ++fields < POSITION_FIELDS)) {
+            length++;
+        }
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        fen.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+
+        final int halfMoveClock = board.getState().getHalfMoveClock();
+        if (halfMoveClock != 0 && !operations.containsKey(EPDReader.HALF_MOVE_CLOCK)) {
+            out.write(' ');
+            out.write(EPDReader.HALF_MOVE_CLOCK);
+            out.write(' ');
+            out.write(Integer.toString(halfMoveClock));
+            out.write(';');
+        }
+        for (Map.Entry<String, String> operation : operations.entrySet()) {
+            writeOperation(operation.getKey(), operation.getValue());
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Flushes the buffered positions to the underlying writer.
+     * @throws IOException if the positions can't be written
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffered positions and closes the underlying writer.
+     * @throws IOException if the positions can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static void checkOperation(String opcode, String operand) {
+        if (opcode.isEmpty() || opcode.indexOf(' ') >= 0 || opcode.indexOf(';') >= 0) {
+            throw new IllegalArgumentException("Invalid opcode " + opcode);
+        }
+        if (operand.indexOf('"') >= 0) {
+            throw new IllegalArgumentException("Invalid operand " + operand + " for opcode " + opcode);
+        }
+    }
+
+    private void writeOperation(String opcode, String operand) throws IOException {
+        out.write(' ');
+        out.write(opcode);
+        if (!operand.isEmpty()) {
+            out.write(' ');
+            final boolean quoted = isStringOpcode(opcode) || operand.indexOf(';') >= 0;
+            if (quoted) {
+                out.write('"');
+            }
+            out.write(operand);
+            if (quoted) {
+                out.write('"');
+            }
+        }
+        out.write(';');
+    }
+
+    private static boolean isStringOpcode(String opcode) {
+        return "id".equals(opcode) || (opcode.length() == 2 && opcode.charAt(0) == 'c' && Character.isDigit(opcode.charAt(1)));
+    }
+}
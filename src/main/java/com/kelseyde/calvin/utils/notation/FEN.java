@@ -4,6 +4,9 @@ import static com.kelseyde.calvin.board.Piece.*;
 
 import com.kelseyde.calvin.board.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
@@ -25,6 +28,15 @@ public class FEN {
      */
     public static final String STARTPOS = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 
+    /**
+     * The maximum length of a FEN written by this class.
+     * <br>64 pieces or empty squares, 7 rank separators, 5 field separators, side to move, 4 castling rights, en passant square
+     * and two move counters of 10 digits at most.
+     */
+    public static final int MAX_LENGTH = 64 + 7 + 5 + 1 + 4 + 2 + 10 + 10;
+
+    private static final String PIECE_CODES = "pnbrqk";
+
     private static final class PiecesParser {
         private static final String EMPTY_CELL = "x";
 
@@ -200,55 +212,82 @@ public class FEN {
      * @return the Forsyth-Edwards Notation string (if the board is a <a href="https://en.wikipedia.org/wiki/Chess960">chess960</a> board, the castling rights are encoded according to the <a href="https://www.chessprogramming.org/Forsyth-Edwards_Notation#Shredder-FEN">Shredder FEN</a> format)
      */
     public static String toFEN(Board board) {
+        final StringBuilder sb = new StringBuilder(MAX_LENGTH);
+        write(board, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the Forsyth-Edwards Notation of a board.
+     * <br>The written FEN is the same as {@link #toFEN(Board)}'s one, but it is appended directly to the destination,
+     * without building intermediate strings.
+     * @param board the Board
+     * @param out the destination
+     * @throws UncheckedIOException if the destination throws an IOException
+     */
+    public static void write(Board board, Appendable out) {
         try {
-            StringBuilder sb = new StringBuilder();
-
-            for (int rank = 7; rank >= 0; rank--) {
-                int emptySquares = 0;
-                for (int file = 0; file < 8; file++) {
-                    int square = Square.of(rank, file);
-                    Piece piece = board.pieceAt(square);
-                    if (piece != null) {
-                        if (emptySquares != 0) {
-                            sb.append(emptySquares);
-                            emptySquares = 0;
-                        }
-                        long squareBB = Bits.of(square);
-                        boolean white = (board.getWhitePieces() & squareBB) != 0;
-                        String pieceCode = piece.code();
-                        if (white) pieceCode = pieceCode.toUpperCase();
-                        sb.append(pieceCode);
-                    } else {
-                        emptySquares++;
+            writeFEN(board, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the ASCII encoded Forsyth-Edwards Notation of a board at the current position of a buffer.
+     * <br>The written FEN is the same as {@link #toFEN(Board)}'s one. At most {@value #MAX_LENGTH} bytes are written.
+     * @param board the Board
+     * @param buffer the destination, its position is advanced by the number of written bytes
+     * @throws java.nio.BufferOverflowException if the buffer has not enough remaining bytes (its position is then unspecified)
+     * @throws java.nio.ReadOnlyBufferException if the buffer is read only
+     */
+    public static void write(Board board, ByteBuffer buffer) {
+        write(board, new ByteBufferAppendable(buffer));
+    }
+
+    private static void writeFEN(Board board, Appendable out) throws IOException {
+        final long whitePieces = board.getWhitePieces();
+        for (int rank = 7; rank >= 0; rank--) {
+            int emptySquares = 0;
+            for (int file = 0; file < 8; file++) {
+                final int square = Square.of(rank, file);
+                final Piece piece = board.pieceAt(square);
+                if (piece == null) {
+                    emptySquares++;
+                } else {
+                    if (emptySquares != 0) {
+                        out.append((char) ('0' + emptySquares));
+                        emptySquares = 0;
                     }
-                }
-                if (emptySquares != 0) {
-                    sb.append(emptySquares);
-                }
-                if (rank > 0) {
-                    sb.append('/');
+                    final char code = PIECE_CODES.charAt(piece.index());
+                    out.append(Bits.contains(whitePieces, square) ? Character.toUpperCase(code) : code);
                 }
             }
+            if (emptySquares != 0) {
+                out.append((char) ('0' + emptySquares));
+            }
+            if (rank > 0) {
+                out.append('/');
+            }
+        }
 
-            String whiteToMove = toSideToMove(board.isWhite());
-            sb.append(" ").append(whiteToMove);
-
-            String castlingRights = toCastlingRights(board, board.getState().getRights());
-            sb.append(" ").append(castlingRights);
-
-            String enPassantSquare = toEnPassantSquare(board.getState().getEnPassantFile(), board.isWhite());
-            sb.append(" ").append(enPassantSquare);
-
-            String fiftyMoveCounter = toFiftyMoveCounter(board.getState().getHalfMoveClock());
-            sb.append(" ").append(fiftyMoveCounter);
+        out.append(' ').append(board.isWhite() ? 'w' : 'b');
 
-            String fullMoveNumber = toFullMoveCounter(board.getPly());
-            sb.append(" ").append(fullMoveNumber);
+        out.append(' ');
+        writeCastlingRights(board, board.getState().getRights(), out);
 
-            return sb.toString();
-        } catch (Exception e) {
-            throw new IllegalArgumentException(board.toString(), e);
+        out.append(' ');
+        final int enPassantFile = board.getState().getEnPassantFile();
+        if (enPassantFile == -1) {
+            out.append('-');
+        } else {
+            out.append((char) ('a' + enPassantFile)).append(board.isWhite() ? '6' : '3');
         }
+
+        out.append(' ');
+        writeNumber(board.getState().getHalfMoveClock(), out);
+        out.append(' ');
+        writeNumber(1 + (board.getPly() / 2), out);
     }
 
     private static boolean parseSideToMove(String sideToMove) {
@@ -259,44 +298,30 @@ public class FEN {
         };
     }
 
-    private static String toSideToMove(boolean sideToMove) {
-        return sideToMove ? "w" : "b";
-    }
-
-    private static String toCastlingRights(Board board, int rights) {
+    private static void writeCastlingRights(Board board, int rights, Appendable out) throws IOException {
         if (rights == Castling.empty()) {
-            return "-";
-        }
-        String rightsString = "";
-        int wk = Castling.getRook(rights, true, true);
-        if (wk != Castling.NO_ROOK) {
-            rightsString += switch (board.variant()) {
-                case STANDARD -> "K";
-                case CHESS960 -> File.toNotation(wk).toUpperCase();
-            };
-        }
-        int wq = Castling.getRook(rights, false, true);
-        if (wq != Castling.NO_ROOK) {
-            rightsString += switch (board.variant()) {
-                case STANDARD -> "Q";
-                case CHESS960 -> File.toNotation(wq).toUpperCase();
-            };
+            out.append('-');
+            return;
         }
-        int bk = Castling.getRook(rights, true, false);
-        if (bk != Castling.NO_ROOK) {
-            rightsString += switch (board.variant()) {
-                case STANDARD -> "k";
-                case CHESS960 -> File.toNotation(bk);
-            };
+        final boolean chess960 = board.variant() == ChessVariant.CHESS960;
+        writeCastlingRight(Castling.getRook(rights, true, true), chess960 ? 'A' : 'K', chess960, out);
+        writeCastlingRight(Castling.getRook(rights, false, true), chess960 ? 'A' : 'Q', chess960, out);
+        writeCastlingRight(Castling.getRook(rights, true, false), chess960 ? 'a' : 'k', chess960, out);
+        writeCastlingRight(Castling.getRook(rights, false, false), chess960 ? 'a' : 'q', chess960, out);
+    }
+
+    private static void writeCastlingRight(int rook, char code, boolean chess960, Appendable out) throws IOException {
+        // In chess960, the right is the file of the rook, code is then the letter of the first file
+        if (rook != Castling.NO_ROOK) {
+            out.append(chess960 ? (char) (code + File.of(rook)) : code);
         }
-        int bq = Castling.getRook(rights, false, false);
-        if (bq != Castling.NO_ROOK) {
-            rightsString += switch (board.variant()) {
-                case STANDARD -> "q";
-                case CHESS960 -> File.toNotation(bq);
-            };
+    }
+
+    private static void writeNumber(int value, Appendable out) throws IOException {
+        if (value >= 10) {
+            writeNumber(value / 10, out);
         }
-        return rightsString;
+        out.append((char) ('0' + value % 10));
     }
 
     private static int parseEnPassantFile(String enPassantSquare, boolean white) {
@@ -311,23 +336,36 @@ public class FEN {
         return File.of(square);
     }
 
-    private static String toEnPassantSquare(int enPassantFile, boolean white) {
-        int rank = white ? 2 : 5;
-        if (enPassantFile == -1) {
-            return "-";
-        }
-        return Square.toNotation(Square.of(rank, enPassantFile));
-    }
-
     private static int parseFiftyMoveCounter(String fiftyMoveCounter) {
         return Character.isDigit(fiftyMoveCounter.charAt(0)) ? Integer.parseInt(fiftyMoveCounter) : 0;
     }
 
-    private static String toFiftyMoveCounter(int fiftyMoveCounter) {
-        return Integer.toString(fiftyMoveCounter);
-    }
 
-    private static String toFullMoveCounter(int ply) {
-        return Integer.toString(1 + (ply / 2));
+    /** An Appendable that writes ASCII characters to a byte buffer. */
+    private static final class ByteBufferAppendable implements Appendable {
+        private final ByteBuffer buffer;
+
+        private ByteBufferAppendable(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            buffer.put((byte) c);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; i++) {
+                buffer.put((byte) csq.charAt(i));
+            }
+            return this;
+        }
     }
 }
@@ -0,0 +1,337 @@
+package com.kelseyde.calvin.utils.notation;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.BoardState;
+import com.kelseyde.calvin.board.Castling;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.File;
+import com.kelseyde.calvin.board.Key;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.board.Square;
+
+/**
+ * A <a href="https://www.chessprogramming.org/Forsyth-Edwards_Notation">Forsyth-Edwards Notation</a> parser designed
+ * to load large amounts of positions.
+ * <br>Unlike {@link FEN#toBoard(String)}, this parser reads the FEN directly from a {@link CharSequence} or a slice of
+ * a byte array (for instance a line of a memory mapped file), fills an existing {@link Board} instead of building a new
+ * one, and reports invalid FENs with an error code instead of an exception. Parsing a valid FEN does not allocate any object.
+ * <br>The board keeps its {@link Board#variant() variant}, castling rights are accepted in the standard (KQkq) and
+ * <a href="https://www.chessprogramming.org/Forsyth-Edwards_Notation#Shredder-FEN">Shredder FEN</a> formats.
+ * The half move clock and the full move number are optional, the full move number is ignored.
+ * The positions are validated as {@link FEN#toBoard(String, ChessVariant)} does.
+ * <br>This class is not thread safe, each thread should use its own parser.
+ */
+public class FENParser {
+
+    /** The FEN was parsed successfully. */
+    public static final int OK = 0;
+    /** The piece placement field is invalid (wrong number of ranks or files, unknown piece). */
+    public static final int INVALID_PIECES = 1;
+    /** A side has no king or more than one king. */
+    public static final int INVALID_KINGS = 2;
+    /** The side to move field is missing or is neither 'w' nor 'b'. */
+    public static final int INVALID_SIDE_TO_MOVE = 3;
+    /** The castling rights field is missing, or is not consistent with the positions of the kings and rooks. */
+    public static final int INVALID_CASTLING_RIGHTS = 4;
+    /** The en passant field is missing, is not a square of the right rank, or there's no pawn to capture. */
+    public static final int INVALID_EN_PASSANT = 5;
+    /** The half move clock or the full move number is not a number. */
+    public static final int INVALID_MOVE_COUNTERS = 6;
+    /** The FEN contains unexpected characters after its last field. */
+    public static final int TRAILING_CHARACTERS = 7;
+
+    private static final String[] MESSAGES = {"OK", "Invalid pieces", "Invalid kings", "Invalid side to move",
+            "Invalid castling rights", "Invalid en passant square", "Invalid move counters", "Trailing characters"};
+    private static final int END = -1;
+
+    // The FEN being parsed: one of chars or bytes is set during a parse call
+    private CharSequence chars;
+    private byte[] bytes;
+    private int end;
+    private int index;
+
+    /**
+     * Gets a description of an error code.
+     * @param code a code returned by a parse method
+     * @return a short description of the error
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static String message(int code) {
+        if (code < 0 || code >= MESSAGES.length) {
+            throw new IllegalArgumentException("Unknown error code " + code);
+        }
+        return MESSAGES[code];
+    }
+
+    /**
+     * Parses a FEN.
+     * @param fen the FEN
+     * @param board the board to fill, its previous position and moves history are discarded
+     * @return {@link #OK} if the FEN is valid, an error code otherwise (the content of the board is then unspecified)
+     */
+    public int parse(CharSequence fen, Board board) {
+        return parse(fen, null, 0, fen.length(), board);
+    }
+
+    /**
+     * Parses a FEN contained in a slice of a char sequence.
+     * @param fen the char sequence
+     * @param start the index of the first character of the FEN
+     * @param end the index after the last character of the FEN
+     * @param board the board to fill, its previous position and moves history are discarded
+     * @return {@link #OK} if the FEN is valid, an error code otherwise (the content of the board is then unspecified)
+     * @throws IndexOutOfBoundsException if start or end are out of the sequence
+     */
+    public int parse(CharSequence fen, int start, int end, Board board) {
+        checkBounds(start, end, fen.length());
+        return parse(fen, null, start, end, board);
+    }
+
+    /**
+     * Parses a FEN contained in a slice of an ASCII encoded byte array.
+     * @param fen the byte array
+     * @param start the index of the first byte of the FEN
+     * @param end the index after the last byte of the FEN
+     * @param board the board to fill, its previous position and moves history are discarded
+     * @return {@link #OK} if the FEN is valid, an error code otherwise (the content of the board is then unspecified)
+     * @throws IndexOutOfBoundsException if start or end are out of the array
+     */
+    public int parse(byte[] fen, int start, int end, Board board) {
+        checkBounds(start, end, fen.length);
+        return parse(null, fen, start, end, board);
+    }
+
+    private static void checkBounds(int start, int end, int length) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + "[ for length " + length);
+        }
+    }
+
+    private int parse(CharSequence chars, byte[] bytes, int start, int end, Board board) {
+        this.chars = chars;
+        this.bytes = bytes;
+        this.index = start;
+        this.end = end;
+        try {
+            return parse(board);
+        } finally {
+            // Do not retain the parsed text
+            this.chars = null;
+            this.bytes = null;
+        }
+    }
+
+    private int peek() {
+        if (index >= end) {
+            return END;
+        }
+        return bytes != null ? bytes[index] & 0xFF : chars.charAt(index);
+    }
+
+    private int next() {
+        final int c = peek();
+        if (c != END) {
+            index++;
+        }
+        return c;
+    }
+
+    // Skips the spaces before a field, returns false if there's no space or no field after them
+    private boolean nextField() {
+        final int start = index;
+        while (peek() == ' ' || peek() == '\t') {
+            index++;
+        }
+        return index > start && index < end;
+    }
+
+    private int parse(Board board) {
+        board.clear();
+        while (peek() == ' ' || peek() == '\t') {
+            index++;
+        }
+        if (!parsePieces(board)) {
+            return INVALID_PIECES;
+        }
+        final long kings = board.getKings();
+        if (Bits.count(kings & board.getWhitePieces()) != 1 || Bits.count(kings & board.getBlackPieces()) != 1) {
+            return INVALID_KINGS;
+        }
+        if (!nextField()) {
+            return INVALID_SIDE_TO_MOVE;
+        }
+        final int side = next();
+        if ((side != 'w' && side != 'b') || !isFieldEnd()) {
+            return INVALID_SIDE_TO_MOVE;
+        }
+        final boolean white = side == 'w';
+        board.setWhite(white);
+        final BoardState state = board.getState();
+        if (!nextField() || !parseCastlingRights(board, state)) {
+            return INVALID_CASTLING_RIGHTS;
+        }
+        if (!nextField() || !parseEnPassant(board, state, white)) {
+            return INVALID_EN_PASSANT;
+        }
+        if (nextField()) {
+            final int halfMoveClock = parseNumber();
+            if (halfMoveClock < 0) {
+                return INVALID_MOVE_COUNTERS;
+            }
+            state.halfMoveClock = halfMoveClock;
+            if (nextField() && parseNumber() < 0) {
+                return INVALID_MOVE_COUNTERS;
+            }
+        }
+        while (peek() == ' ' || peek() == '\t') {
+            index++;
+        }
+        if (index != end) {
+            return TRAILING_CHARACTERS;
+        }
+        Key.generateKeys(board);
+        return OK;
+    }
+
+    private boolean isFieldEnd() {
+        final int c = peek();
+        return c == END || c == ' ' || c == '\t';
+    }
+
+    private boolean parsePieces(Board board) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int file = 0;
+            boolean lastWasDigit = false;
+            while (file < 8) {
+                final int c = next();
+                if (c >= '1' && c <= '8' && !lastWasDigit) {
+                    file += c - '0';
+                    lastWasDigit = true;
+                } else {
+                    final Piece piece = piece(c);
+                    if (piece == null) {
+                        return false;
+                    }
+                    board.addPiece(Square.of(rank, file++), piece, c < 'a');
+                    lastWasDigit = false;
+                }
+            }
+            if (file != 8 || (rank > 0 && next() != '/')) {
+                return false;
+            }
+        }
+        return isFieldEnd();
+    }
+
+    private static Piece piece(int c) {
+        return switch (c) {
+            case 'P', 'p' -> Piece.PAWN;
+            case 'N', 'n' -> Piece.KNIGHT;
+            case 'B', 'b' -> Piece.BISHOP;
+            case 'R', 'r' -> Piece.ROOK;
+            case 'Q', 'q' -> Piece.QUEEN;
+            case 'K', 'k' -> Piece.KING;
+            default -> null;
+        };
+    }
+
+    private boolean parseCastlingRights(Board board, BoardState state) {
+        if (peek() == '-') {
+            index++;
+            return isFieldEnd();
+        }
+        int rights = Castling.empty();
+        int count = 0;
+        while (!isFieldEnd()) {
+            if (++count > 4) {
+                return false;
+            }
+            final int c = next();
+            final boolean white = c < 'a';
+            final int lower = white ? c + ('a' - 'A') : c;
+            final long rooks = board.getRooks(white) & (white ? 0xFFL : 0xFFL << 56);
+            final int kingSquare = board.kingSquare(white);
+            final int rook;
+            final boolean kingside;
+            if (lower == 'k' || lower == 'q') {
+                kingside = lower == 'k';
+                if (rooks == 0) {
+                    return false;
+                }
+                // The outermost rook, as FEN.toBoard does
+                rook = kingside ? 63 - Long.numberOfLeadingZeros(rooks) : Bits.next(rooks);
+            } else if (lower >= 'a' && lower <= 'h') {
+                rook = Square.of(white ? 0 : 7, lower - 'a');
+                kingside = File.of(rook) > File.of(kingSquare);
+            } else {
+                return false;
+            }
+            if (!Bits.contains(rooks, rook) || Castling.kingsideAllowed(rights, white) && kingside
+                    || Castling.queensideAllowed(rights, white) && !kingside || !isCastlingKing(board, kingSquare, rook, kingside, white)) {
+                return false;
+            }
+            rights = Castling.setRook(rights, kingside, white, rook);
+        }
+        if (board.variant() == ChessVariant.CHESS960 && !isConsistent(board, rights)) {
+            return false;
+        }
+        state.rights = rights;
+        return true;
+    }
+
+    private static boolean isCastlingKing(Board board, int kingSquare, int rook, boolean kingside, boolean white) {
+        if (board.variant() == ChessVariant.STANDARD) {
+            return kingSquare == (white ? 4 : 60) && rook == Castling.rookFrom(kingside, white);
+        }
+        final int kingFile = File.of(kingSquare);
+        return Square.of(white ? 0 : 7, kingFile) == kingSquare && kingFile != 0 && kingFile != 7 && (kingSquare < rook) == kingside;
+    }
+
+    // In Chess960, the kings and the castling rooks of both sides start on the same files
+    private static boolean isConsistent(Board board, int rights) {
+        final boolean whiteCastles = Castling.kingsideAllowed(rights, true) || Castling.queensideAllowed(rights, true);
+        final boolean blackCastles = Castling.kingsideAllowed(rights, false) || Castling.queensideAllowed(rights, false);
+        if (whiteCastles && blackCastles && File.of(board.kingSquare(true)) != File.of(board.kingSquare(false))) {
+            return false;
+        }
+        return isConsistent(rights, true) && isConsistent(rights, false);
+    }
+
+    private static boolean isConsistent(int rights, boolean kingside) {
+        final int white = Castling.getRook(rights, kingside, true);
+        final int black = Castling.getRook(rights, kingside, false);
+        return white == Castling.NO_ROOK || black == Castling.NO_ROOK || File.of(white) == File.of(black);
+    }
+
+    private boolean parseEnPassant(Board board, BoardState state, boolean white) {
+        final int file = next();
+        if (file == '-') {
+            return isFieldEnd();
+        }
+        if (file < 'a' || file > 'h' || next() != (white ? '6' : '3') || !isFieldEnd()) {
+            return false;
+        }
+        // The pawn that has just been pushed should be there
+        final int pawnSquare = Square.of(white ? 4 : 3, file - 'a');
+        if (!Bits.contains(board.getPawns(!white), pawnSquare)) {
+            return false;
+        }
+        state.enPassantFile = file - 'a';
+        return true;
+    }
+
+    // Returns the parsed number, or -1 if the field is not a number
+    private int parseNumber() {
+        int value = 0;
+        int digits = 0;
+        while (!isFieldEnd()) {
+            final int c = next();
+            if (c < '0' || c > '9' || ++digits > 9) {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+}
@@ -1,14 +1,13 @@
 package com.kelseyde.calvin.utils.notation;
 
 import com.kelseyde.calvin.board.Board;
-import com.kelseyde.calvin.board.ChessVariant;
 import com.kelseyde.calvin.board.Draw;
-import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,7 +44,7 @@ public class PGN {
     public static final String DRAW = "1/2-1/2";
     /** The result playing tag value */
     public static final String PLAYING = "*";
-    
+
     private final Map<String, String> tagPairs;
     private final Board board;
 
@@ -66,7 +65,6 @@ public class PGN {
         tagPairs.put(ROUND_TAG, UNKNOWN);
         tagPairs.put(WHITE_TAG, UNKNOWN);
         tagPairs.put(BLACK_TAG, UNKNOWN);
-        tagPairs.put(RESULT_TAG, getResult(board));
     }
 
     /** Sets a tag pair.
@@ -83,38 +81,17 @@ public class PGN {
     
     /** 
      * Returns the pgn representation of the board
+     * <br>The movetext is not ended by the game termination marker nor by a new line, use a {@link PGNWriter} to get standard PGN games.
      */
     @Override
     public String toString() {
-        final StringBuilder pgn = new StringBuilder();
-        tagPairs.forEach((key, value) -> tagPair(pgn, key, value));
-
-        final List<Move> moves = Arrays.asList(board.getMoves());
-        final int moveCount = board.getPly();
-        for (int i = 0; i < moveCount; i++) {
-            board.unmakeMove();
-        }
-        final String fen = FEN.toFEN(board);
-        if (board.variant()==ChessVariant.CHESS960) {
-            tagPair(pgn, VARIANT_TAG, "Chess960");
-        }
-        if (!FEN.STARTPOS.equals(fen)) {
-            // If not a standard start position, the FEN tag is required
-            tagPair(pgn,FEN_TAG, fen);
-        }
-
-        pgn.append('\n');
-
-        final StringBuilder movesBuilder = new StringBuilder();
-        for (int plyCount = 0; plyCount < moveCount; plyCount++) {
-            final Move move = moves.get(plyCount);
-            if (plyCount % 2 == 0) {
-                addToken(pgn, movesBuilder, Integer.toString(plyCount / 2 + 1)+'.');
-            }
-            addToken(pgn, movesBuilder, SAN.fromMove(move, board));
-            board.makeMove(move);
+        final StringWriter pgn = new StringWriter();
+        try (PGNWriter writer = new PGNWriter(pgn).withTerminationMarker(false).withGameSeparator(false)) {
+            writer.write(board, tagPairs);
+        } catch (IOException e) {
+            // Can't happen with a StringWriter
+            throw new UncheckedIOException(e);
         }
-        pgn.append(movesBuilder);
         return pgn.toString();
     }
 
@@ -127,30 +104,13 @@ public class PGN {
         return new PGN(board).toString();
     }
     
-    private static String getResult(Board board) {
-        final MoveGenerator moveGenerator = new MoveGenerator();
+    static String getResult(Board board, MoveGenerator moveGenerator) {
         if (Draw.isDraw(board, moveGenerator)) {
             return DRAW;
         }
-        if (moveGenerator.isCheck(board, board.isWhite()) && moveGenerator.generateMoves(board).isEmpty()) {
+        if (moveGenerator.isCheck(board, board.isWhite()) && !moveGenerator.hasLegalMove(board)) {
             return board.isWhite() ? BLACK_WON : WHITE_WON;
         }
         return PLAYING;
     }
-
-    private static void tagPair(StringBuilder builder, String tagName, String value) {
-        builder.append('[').append(tagName).append(" \"").append(value).append("\"]").append('\n');
-    }
-
-    private static void addToken(StringBuilder pgn, StringBuilder builder, String token) {
-        if (builder.length() + token.length() >= 80) {
-            pgn.append(builder);
-            pgn.append('\n');
-            builder.setLength(0);
-        }
-        if (builder.length() > 0) {
-            builder.append(' ');
-        }
-        builder.append(token);
-    }
 }
@@ -0,0 +1,544 @@
+package com.kelseyde.calvin.utils.notation;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A streaming <a href="https://en.wikipedia.org/wiki/Portable_Game_Notation">Portable Game Notation</a> reader designed
+ * to process large PGN files.
+ * <br>Files are memory mapped and read byte by byte (the encoding should be ASCII compatible, as UTF-8 or ISO-8859-1).
+ * Tags and moves are reported to a {@link Handler} without creating a String per token: tag names and values are
+ * passed as reused {@link CharSequence}s and the moves are replayed on a reused {@link Board}.
+ * <br>Comments, variations, numeric annotation glyphs and move numbers are skipped. A game starts from its FEN tag if
+ * it has one, from the standard start position otherwise. A "Chess960" Variant tag selects the {@link ChessVariant#CHESS960} variant.
+ * <br>Large files are split into chunks at game boundaries (a tag line preceded by an empty line, or an Event tag line).
+ * {@link #read(Path, int, Supplier)} reads the chunks in parallel.
+ * <br>This class is not thread safe, each thread should use its own reader.
+ */
+public class PGNReader {
+
+    /**
+     * A handler notified of the content of a PGN file.
+     * <br>All the methods of a game are called in the thread that reads the game.
+     */
+    public interface Handler {
+        /** Called when a game starts, before its tags.
+         * @param offset the offset of the game in the file
+         */
+        default void startGame(long offset) {
+        }
+
+        /** Called for each tag pair of a game.
+         * <br>The name and value sequences are only valid during the call, they should be copied
+         * (for instance with <code>toString()</code>) to be kept.
+         * @param name the tag name
+         * @param value the unescaped tag value
+         */
+        default void tag(CharSequence name, CharSequence value) {
+        }
+
+        /** Called once the tags of a game are read.
+         * @param board the board, set to the start position of the game
+         * @return true to replay the moves of the game, false to skip them ({@link #endGame(Board, String)} is called
+         * with the start position)
+         */
+        default boolean startMoves(Board board) {
+            return true;
+        }
+
+        /** Called each time a move of a game is played.
+         * @param board the board, after the move has been played
+         * @param move the move
+         */
+        default void move(Board board, Move move) {
+        }
+
+        /** Called at the end of a game.
+         * <br>This method is not called if an {@link #error(long, String)} occurred in the game.
+         * @param board the board, in the final position of the game. Its move history contains the moves of the game.
+         * @param result the game termination marker, one of {@link PGN#WHITE_WON}, {@link PGN#BLACK_WON}, {@link PGN#DRAW}
+         * or {@link PGN#PLAYING} (which is also used for games that have no termination marker)
+         */
+        void endGame(Board board, String result);
+
+        /** Called when a game can't be read.
+         * <br>The rest of the game is skipped.
+         * @param offset the offset of the invalid data in the file
+         * @param message a description of the error
+         */
+        default void error(long offset, String message) {
+        }
+    }
+
+    // The maximum size of a memory mapped chunk (a MappedByteBuffer can't exceed 2GB)
+    static final long MAX_CHUNK_SIZE = 1L << 30;
+    // The parallel reader creates more chunks than threads in order to balance the load between threads
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+    private static final int END = -1;
+    private static final String CHESS960_VARIANT = "chess960";
+    private static final byte[] EVENT_TAG = ("[" + PGN.EVENT_TAG + " ").getBytes();
+
+    private final Board board = new Board();
+    private final FENParser fenParser = new FENParser();
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder fen = new StringBuilder();
+    private final StringBuilder token = new StringBuilder();
+    private boolean chess960;
+
+    // The buffer being read and the file offset of its first byte
+    private ByteBuffer buffer;
+    private long base;
+    private int index;
+    private int limit;
+
+    /**
+     * Reads all the games of a file.
+     * @param path the file path
+     * @param handler the handler notified of the games
+     * @throws IOException if the file can't be read
+     */
+    public void read(Path path, Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long[] chunks = split(channel, 1);
+            for (int i = 0; i < chunks.length - 1; i++) {
+                read(channel, chunks[i], chunks[i + 1], handler);
+            }
+        }
+    }
+
+    /**
+     * Reads all the games of a file in parallel.
+     * <br>The file is split in chunks at game boundaries, each chunk is read by one of <i>parallelism</i> threads
+     * with its own handler. Games of a chunk are notified in the file order, but chunks are read in any order.
+     * @param path the file path
+     * @param parallelism the number of threads
+     * @param handlers a supplier of handlers, called once per chunk, in the thread that reads the chunk
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if parallelism is not strictly positive
+     */
+    public static void read(Path path, int parallelism, Supplier<? extends Handler> handlers) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long[] chunks = split(channel, parallelism * CHUNKS_PER_THREAD);
+            final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+            try {
+                final ThreadLocal<PGNReader> readers = ThreadLocal.withInitial(PGNReader::new);
+                final List<Future<?>> futures = new ArrayList<>(chunks.length - 1);
+                for (int i = 0; i < chunks.length - 1; i++) {
+                    final long start = chunks[i];
+                    final long end = chunks[i + 1];
+                    futures.add(executor.submit(() -> {
+                        readers.get().read(channel, start, end, handlers.get());
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + path);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                } else if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                } else if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IOException(cause);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Reads all the games contained between the position and the limit of a buffer.
+     * <br>The position of the buffer is not changed. The offsets passed to the handler are the buffer indexes.
+     * @param buffer the buffer
+     * @param handler the handler notified of the games
+     */
+    public void read(ByteBuffer buffer, Handler handler) {
+        read(buffer, 0, handler);
+    }
+
+    private void read(FileChannel channel, long start, long end, Handler handler) throws IOException {
+        read(channel.map(MapMode.READ_ONLY, start, end - start), start, handler);
+    }
+
+    private void read(ByteBuffer buffer, long base, Handler handler) {
+        this.buffer = buffer;
+        this.base = base;
+        this.index = buffer.position();
+        this.limit = buffer.limit();
+        try {
+            // Skips the UTF-8 byte order mark
+            if (base == 0 && peek() == 0xEF && peek(1) == 0xBB && peek(2) == 0xBF) {
+                index += 3;
+            }
+            while (skipWhitespaces() != END) {
+                readGame(handler);
+            }
+        } finally {
+            // Do not retain the mapped buffer
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Splits a file in chunks that start at game boundaries.
+     * @param channel the file channel
+     * @param count the expected number of chunks, the file may be split in more chunks if it is very large
+     * or in less chunks if it contains few games
+     * @return the offsets of the chunks followed by the file size
+     * @throws IOException if the file can't be read, or no game boundary is found in a part of the file
+     * that exceeds the maximum chunk size
+     */
+    static long[] split(FileChannel channel, int count) throws IOException {
+        final long size = channel.size();
+        count = (int) Math.max(count, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        final List<Long> offsets = new ArrayList<>(count + 1);
+        offsets.add(0L);
+        final ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (int i = 1; i < count; i++) {
+            final long previous = offsets.get(offsets.size() - 1);
+            final long target = Math.max(size * i / count, previous + 1);
+            final long boundary = nextGame(channel, target, scanBuffer);
+            if (boundary < size && boundary > previous) {
+                offsets.add(boundary);
+            }
+        }
+        offsets.add(size);
+        final long[] result = new long[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+            if (i > 0 && result[i] - result[i - 1] > Integer.MAX_VALUE) {
+                throw new IOException("No game boundary found after offset " + result[i - 1]);
+            }
+        }
+        return result;
+    }
+
+    // Returns the offset of the first game that starts at or after position, or the channel size if there's none
+    private static long nextGame(FileChannel channel, long position, ByteBuffer scanBuffer) throws IOException {
+        // The boundary detection needs the two bytes that precede the position
+        long offset = Math.max(0, position - 2);
+        final int lookBehind = (int) (position - offset);
+        int previous = '\n';
+        int beforePrevious = 'x';
+        boolean first = true;
+        while (true) {
+            scanBuffer.clear();
+            final int read = channel.read(scanBuffer, offset);
+            if (read <= 0) {
+                return channel.size();
+            }
+            // Keeps some bytes at the end of the buffer, to check the Event tag name without reading again
+            final int scanned = read < SCAN_BUFFER_SIZE ? read : read - EVENT_TAG.length;
+            for (int i = 0; i < scanned; i++) {
+                final int c = scanBuffer.get(i);
+                if (c == '[' && previous == '\n' && (!first || i >= lookBehind)
+                        && (beforePrevious == '\n' || startsWith(scanBuffer, i, read, EVENT_TAG))) {
+                    return offset + i;
+                }
+                if (c != '\r') {
+                    beforePrevious = previous;
+                    previous = c;
+                }
+            }
+            first = false;
+            offset += scanned;
+        }
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int index, int limit, byte[] prefix) {
+        if (limit - index < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(index + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Compares without converting the sequence to a String
+    private static boolean equalsIgnoreCase(String expected, CharSequence value) {
+        if (value.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            final char c = value.charAt(i);
+            final char e = expected.charAt(i);
+            if (c != e && Character.toLowerCase(c) != Character.toLowerCase(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int peek() {
+        return index < limit ? buffer.get(index) & 0xFF : END;
+    }
+
+    private int peek(int delta) {
+        return index + delta < limit ? buffer.get(index + delta) & 0xFF : END;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    // Skips whitespaces and escaped lines, returns the next byte
+    private int skipWhitespaces() {
+        while (true) {
+            final int c = peek();
+            if (c == '%' && (index == 0 || buffer.get(index - 1) == '\n')) {
+                skipLine();
+            } else if (isWhitespace(c)) {
+                index++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private void skipLine() {
+        while (index < limit && buffer.get(index) != '\n') {
+            index++;
+        }
+    }
+
+    private void readGame(Handler handler) {
+        final long offset = base + index;
+        handler.startGame(offset);
+        fen.setLength(0);
+        chess960 = false;
+        boolean hasFen = false;
+        while (skipWhitespaces() == '[') {
+            final long tagOffset = base + index;
+            if (!readTag()) {
+                handler.error(tagOffset, "Invalid tag pair");
+                skipGame();
+                return;
+            }
+            if (PGN.FEN_TAG.contentEquals(name)) {
+                fen.setLength(0);
+                fen.append(value);
+                hasFen = true;
+            } else if (PGN.VARIANT_TAG.contentEquals(name)) {
+                chess960 = equalsIgnoreCase(CHESS960_VARIANT, value);
+            }
+            handler.tag(name, value);
+        }
+        board.setVariant(chess960 ? ChessVariant.CHESS960 : ChessVariant.STANDARD);
+        final int status = fenParser.parse(hasFen ? fen : FEN.STARTPOS, board);
+        if (status != FENParser.OK) {
+            handler.error(offset, "Invalid FEN tag: " + FENParser.message(status));
+            skipGame();
+            return;
+        }
+        final String result = readMovetext(handler, handler.startMoves(board));
+        if (result != null) {
+            handler.endGame(board, result);
+        }
+    }
+
+    // Reads a tag pair in name and value, returns false if the tag pair is invalid
+    private boolean readTag() {
+        name.setLength(0);
+        value.setLength(0);
+        // Skips '['
+        index++;
+        int c = skipSpaces();
+        while (c != END && c != '"' && c != ']' && !isWhitespace(c)) {
+            name.append((char) c);
+            index++;
+            c = peek();
+        }
+        c = skipSpaces();
+        if (name.length() == 0 || c != '"') {
+            skipLine();
+            return false;
+        }
+        index++;
+        while ((c = peek()) != '"') {
+            if (c == END || c == '\n') {
+                return false;
+            }
+            if (c == '\\' && (peek(1) == '"' || peek(1) == '\\')) {
+                index++;
+                c = peek();
+            }
+            value.append((char) c);
+            index++;
+        }
+        index++;
+        c = skipSpaces();
+        if (c != ']') {
+            skipLine();
+            return false;
+        }
+        index++;
+        return true;
+    }
+
+    private int skipSpaces() {
+        int c;
+        while ((c = peek()) == ' ' || c == '\t') {
+            index++;
+        }
+        return c;
+    }
+
+    private void skipGame() {
+        while (skipWhitespaces() == '[') {
+            skipLine();
+        }
+        readMovetext(null, false);
+    }
+
+    // Reads the movetext of a game. Moves are played if the handler is not null and play is true.
+    // Returns the game result, or null if handler is null or an error occurred.
+    private String readMovetext(Handler handler, boolean play) {
+        boolean failed = handler == null;
+        while (true) {
+            final int c = skipWhitespaces();
+            switch (c) {
+                case END, '[':
+                    // Game without termination marker
+                    return failed ? null : PGN.PLAYING;
+                case '{':
+                    skipUntil('}');
+                    break;
+                case ';':
+                    skipLine();
+                    break;
+                case '(':
+                    skipVariation();
+                    break;
+                case '$':
+                    index++;
+                    readToken();
+                    break;
+                case '*':
+                    index++;
+                    return failed ? null : PGN.PLAYING;
+                default:
+                    final long offset = base + index;
+                    readToken();
+                    if (token.isEmpty()) {
+                        // An unexpected character that can't start a token, as ')' or '}'
+                        index++;
+                        break;
+                    }
+                    final String result = result();
+                    if (result != null) {
+                        return failed ? null : result;
+                    }
+                    skipMoveNumber();
+                    if (!failed && play && token.length() > 0) {
+                        final Move move = SAN.toMove(board, token, moveGenerator);
+                        if (move == null) {
+                            handler.error(offset, "Invalid or illegal move " + token);
+                            failed = true;
+                        } else {
+                            board.makeMove(move);
+                            handler.move(board, move);
+                        }
+                    }
+            }
+        }
+    }
+
+    // Reads a token in the token builder
+    private void readToken() {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) != END && !isWhitespace(c) && c != '{' && c != '}' && c != '(' && c != ')' && c != ';' && c != '[' && c != '$') {
+            token.append((char) c);
+            index++;
+        }
+    }
+
+    private String result() {
+        if (PGN.WHITE_WON.contentEquals(token)) {
+            return PGN.WHITE_WON;
+        } else if (PGN.BLACK_WON.contentEquals(token)) {
+            return PGN.BLACK_WON;
+        } else if (PGN.DRAW.contentEquals(token)) {
+            return PGN.DRAW;
+        } else if (PGN.PLAYING.contentEquals(token)) {
+            return PGN.PLAYING;
+        }
+        return null;
+    }
+
+    // Removes a move number (as "12." or "12...") at the start of the token
+    private void skipMoveNumber() {
+        int i = 0;
+        while (i < token.length() && token.charAt(i) >= '0' && token.charAt(i) <= '9') {
+            i++;
+        }
+        if (i < token.length() && token.charAt(i) != '.') {
+            // Not a move number (castling written with zeros)
+            return;
+        }
+        while (i < token.length() && token.charAt(i) == '.') {
+            i++;
+        }
+        token.delete(0, i);
+    }
+
+    private void skipUntil(char end) {
+        while (index < limit && buffer.get(index) != end) {
+            index++;
+        }
+        index++;
+    }
+
+    private void skipVariation() {
+        int depth = 0;
+        while (true) {
+            final int c = peek();
+            if (c == END) {
+                return;
+            }
+            index++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';') {
+                skipLine();
+            }
+        }
+    }
+}
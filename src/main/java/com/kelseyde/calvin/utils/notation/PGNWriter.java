@@ -0,0 +1,227 @@
+package com.kelseyde.calvin.utils.notation;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A <a href="https://en.wikipedia.org/wiki/Portable_Game_Notation">Portable Game Notation</a> writer designed to export
+ * large batches of games.
+ * <br>Games are written directly to a buffered {@link Writer}, the SAN conversion state and the text buffers are reused from
+ * one game to the next. Each game is written with the Seven Tag Roster, followed by the other tags, the Variant and FEN tags
+ * if required, and the movetext wrapped at 80 columns and ended by the game termination marker.
+ * <br>The result is only computed from the final position if no Result tag is provided.
+ * <br>This class is not thread safe.
+ */
+public class PGNWriter implements Closeable, Flushable {
+
+    private static final int MAX_LINE_LENGTH = 80;
+    private static final String UNKNOWN_DATE = "????.??.??";
+    private static final String[] SEVEN_TAG_ROSTER = {PGN.EVENT_TAG, PGN.SITE_TAG, PGN.DATE_TAG, PGN.ROUND_TAG,
+            PGN.WHITE_TAG, PGN.BLACK_TAG, PGN.RESULT_TAG};
+
+    private final Writer out;
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final SANConverter converter = new SANConverter();
+    private final StringBuilder token = new StringBuilder();
+    private char[] chars = new char[MAX_LINE_LENGTH];
+    private int column;
+    private boolean terminationMarker = true;
+    private boolean gameSeparator = true;
+
+    /**
+     * Creates a writer.
+     * @param out the writer games are written to. It is buffered if it is not a {@link BufferedWriter}.
+     */
+    public PGNWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+    }
+
+    /**
+     * Creates a writer that writes UTF-8 encoded games.
+     * @param out the output stream games are written to. It is buffered.
+     */
+    public PGNWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sets whether the movetext of games ends with the game termination marker.
+     * <br>The marker is required by the PGN standard, it is written by default.
+     * @param terminationMarker true to write the marker
+     * @return this instance
+     */
+    public PGNWriter withTerminationMarker(boolean terminationMarker) {
+        this.terminationMarker = terminationMarker;
+        return this;
+    }
+
+    /**
+     * Sets whether games end with the line break of their movetext and the empty line that separates them from the next game.
+     * <br>The separator is written by default. Without it, a single game can be written without trailing line breaks.
+     * @param gameSeparator true to write the separator
+     * @return this instance
+     */
+    public PGNWriter withGameSeparator(boolean gameSeparator) {
+        this.gameSeparator = gameSeparator;
+        return this;
+    }
+
+    /**
+     * Writes a game with the default tags.
+     * @param board the board, in the final position of the game. Its moves history contains the moves of the game.
+     * @throws IOException if the game can't be written
+     * @see #write(Board, Map)
+     */
+    public void write(Board board) throws IOException {
+        write(board, Collections.emptyMap());
+    }
+
+    /**
+     * Writes a game.
+     * <br>The moves of the board are unplayed to find the start position of the game, then replayed. The board is left unchanged.
+     * @param board the board, in the final position of the game. Its moves history contains the moves of the game.
+     * @param tags the tag pairs of the game. The tags of the Seven Tag Roster that are missing get their default value,
+     * the result is computed from the board position if missing. The FEN and Variant tags are ignored, they are deduced from the board.
+     * @throws IOException if the game can't be written
+     */
+    public void write(Board board, Map<String, String> tags) throws IOException {
+        String result = tags.get(PGN.RESULT_TAG);
+        if (result == null) {
+            result = PGN.getResult(board, moveGenerator);
+        }
+        for (String name : SEVEN_TAG_ROSTER) {
+            final String value = tags.get(name);
+            if (value != null) {
+                writeTag(name, value);
+            } else if (PGN.RESULT_TAG.equals(name)) {
+                writeTag(name, result);
+            } else {
+                writeTag(name, PGN.DATE_TAG.equals(name) ? UNKNOWN_DATE : PGN.UNKNOWN);
+            }
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRosterTag(tag.getKey()) && !PGN.FEN_TAG.equals(tag.getKey()) && !PGN.VARIANT_TAG.equals(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+
+        final Move[] moves = board.getMoves();
+        final int moveCount = board.getPly();
+        for (int i = 0; i < moveCount; i++) {
+            board.unmakeMove();
+        }
+        int played = 0;
+        try {
+            if (board.variant() == ChessVariant.CHESS960) {
+                writeTag(PGN.VARIANT_TAG, "Chess960");
+            }
+            token.setLength(0);
+            FEN.write(board, token);
+            if (!FEN.STARTPOS.contentEquals(token)) {
+                // If not a standard start position, the FEN tag is required
+                writeTag(PGN.FEN_TAG, token);
+            }
+            out.write('\n');
+
+            column = 0;
+            final int offset = board.isWhite() ? 0 : 1;
+            for (; played < moveCount; played++) {
+                if (board.isWhite() || played == 0) {
+                    token.setLength(0);
+                    token.append(1 + (played + offset) / 2).append(board.isWhite() ? "." : "...");
+                    writeToken(token);
+                }
+                token.setLength(0);
+                // The converter plays the move
+                converter.play(board, moves[played], token);
+                writeToken(token);
+            }
+            if (terminationMarker) {
+                token.setLength(0);
+                writeToken(token.append(result));
+            }
+            if (gameSeparator) {
+                out.write("\n\n");
+            }
+        } finally {
+            // Restores the final position if the game could not be written
+            for (; played < moveCount; played++) {
+                board.makeMove(moves[played]);
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffered games to the underlying writer.
+     * @throws IOException if the games can't be written
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffered games and closes the underlying writer.
+     * @throws IOException if the games can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String rosterTag : SEVEN_TAG_ROSTER) {
+            if (rosterTag.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeTag(String name, CharSequence value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write("\"]\n");
+    }
+
+    // Writes a movetext token, starting a new line if the current one would reach 80 characters
+    private void writeToken(StringBuilder token) throws IOException {
+        final int length = token.length();
+        if (column > 0 && column + length >= MAX_LINE_LENGTH) {
+            out.write('\n');
+            column = 0;
+        }
+        if (column > 0) {
+            out.write(' ');
+            column++;
+        }
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        // Avoids the String created by Writer.append(CharSequence)
+        token.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        column += length;
+    }
+}
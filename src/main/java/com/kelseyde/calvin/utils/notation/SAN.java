@@ -1,15 +1,18 @@
 package com.kelseyde.calvin.utils.notation;
 
 import com.kelseyde.calvin.board.*;
+import com.kelseyde.calvin.movegen.Attacks;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 
 import java.util.List;
 
 /**
- * A move to <a href="https://en.wikipedia.org/wiki/Algebraic_notation_(chess)">Standard Algebraic Notation (SAN)</a> converter.
+ * A move to/from <a href="https://en.wikipedia.org/wiki/Algebraic_notation_(chess)">Standard Algebraic Notation (SAN)</a> converter.
  */
 public class SAN {
 
+    private static final long RANK_MASK = 0xFFL;
+
     private SAN() {
         super();
     }
@@ -21,76 +24,256 @@ public class SAN {
      * @return the move in SAN notation.
      * <br>The SAN standard is relatively lax, some parts of the notation are optional (e.g. the <i>'e.p.'</i> when doing an en passant capture).
      * <br>This method returns the variant used in the PGN standard (no <i>'e.p.'</i> for en passant captures).
+     * <br>To convert several moves, {@link #fromMoves(Board, List)} or a {@link SANConverter} is faster.
      */
     public static String fromMove(Move move, Board board) {
-        final Piece piece = board.pieceAt(move.from());
-        final Piece captured = board.pieceAt(move.to());
+        return new SANConverter().toSAN(board, move);
+    }
 
-        if (move.isCastling()) {
-            return move.to() > move.from() ? "O-O" : "O-O-O";
+    /**
+     * Converts a sequence of moves to Standard Algebraic Notation (SAN)
+     * @param board the board on which the first move is to be made, it is left unchanged.
+     * @param moves a sequence of legal moves, each one being played after the previous one
+     * @return the moves in SAN notation.
+     * @see #fromMove(Move, Board)
+     */
+    public static List<String> fromMoves(Board board, List<Move> moves) {
+        return new SANConverter().toSAN(board, moves);
+    }
+
+    /**
+     * Converts a move in Standard Algebraic Notation (SAN) to a move.
+     * <br>The parser is lenient: castling can be written with zeros, the '=' before the promotion piece, the 'x' of captures,
+     * the check/mate markers and the annotation suffixes (!, ?) are optional, and over-disambiguated moves are accepted.
+     * <br>The legal moves of the board are not generated: the origin of the move is found by looking up, from the destination
+     * square, the pieces of the right type that attack it, then the pinned pieces that would leave their pin ray are discarded.
+     * @param board the board on which the move is to be made.
+     * @param san the move in SAN notation
+     * @return a legal move
+     * @throws IllegalArgumentException if the notation is invalid, or is not a legal move, or is ambiguous
+     */
+    public static Move toMove(Board board, CharSequence san) {
+        final Move move = toMove(board, san, new MoveGenerator());
+        if (move == null) {
+            throw new IllegalArgumentException("Invalid or illegal move " + san);
         }
+        return move;
+    }
 
-        final MoveGenerator moveGenerator = new MoveGenerator();
-        final StringBuilder notation = new StringBuilder();
-        if (piece != Piece.PAWN) {
-            notation.append(piece.code().toUpperCase());
+    /**
+     * Converts a move in Standard Algebraic Notation (SAN) to a move, reusing a move generator.
+     * @param board the board on which the move is to be made.
+     * @param san the move in SAN notation
+     * @param moveGenerator the move generator used to compute the pins and the checks
+     * @return a legal move, or null if the notation is invalid, or is not a legal move, or is ambiguous
+     */
+    static Move toMove(Board board, CharSequence san, MoveGenerator moveGenerator) {
+        int end = san.length();
+        while (end > 0 && isSuffix(san.charAt(end - 1))) {
+            end--;
+        }
+        final int castling = castling(san, end);
+        if (castling != 0) {
+            return toCastling(board, castling > 0, moveGenerator);
+        }
+        int index = 0;
+        Piece piece = end > 0 ? piece(san.charAt(0)) : null;
+        if (piece == null) {
+            piece = Piece.PAWN;
+        } else {
+            index++;
+        }
+        Piece promotion = null;
+        if (end > 0 && piece == Piece.PAWN) {
+            promotion = piece(san.charAt(end - 1));
+            if (promotion == Piece.PAWN || promotion == Piece.KING) {
+                return null;
+            }
+            if (promotion != null) {
+                end--;
+                if (end > 0 && san.charAt(end - 1) == '=') {
+                    end--;
+                }
+            }
+        }
+        if (end - index < 2) {
+            return null;
+        }
+        final int toFile = san.charAt(end - 2) - 'a';
+        final int toRank = san.charAt(end - 1) - '1';
+        if (!isValid(toFile) || !isValid(toRank)) {
+            return null;
+        }
+        final int to = Square.of(toRank, toFile);
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = index; i < end - 2; i++) {
+            final char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return null;
+            }
+        }
+        final boolean white = board.isWhite();
+        if (Bits.contains(board.getPieces(white), to)) {
+            return null;
+        }
+        final boolean check = moveGenerator.isCheck(board, white);
+        if (!check && piece != Piece.KING) {
+            moveGenerator.calculatePins(board, white);
+        }
+        if (piece == Piece.PAWN) {
+            final Move move = toPawnMove(board, white, to, fromFile, fromRank, promotion);
+            return move != null && isLegal(board, move, check, moveGenerator) ? move : null;
         }
+        long origins = origins(board, white, piece, to);
+        if (fromFile >= 0) {
+            origins &= File.toBitboard(fromFile);
+        }
+        if (fromRank >= 0) {
+            origins &= RANK_MASK << (8 * fromRank);
+        }
+        if (origins == 0) {
+            return null;
+        }
+        Move found = null;
+        while (origins != 0) {
+            final Move move = new Move(Bits.next(origins), to);
+            if (isLegal(board, move, check || piece == Piece.KING, moveGenerator)) {
+                if (found != null) {
+                    // Ambiguous move
+                    return null;
+                }
+                found = move;
+            }
+            origins = Bits.pop(origins);
+        }
+        return found;
+    }
 
-        addDisambiguation(notation, board, move, moveGenerator);
+    // Gets the squares of the pieces of a type that attack a square
+    static long origins(Board board, boolean white, Piece piece, int to) {
+        final long occupied = board.getOccupied();
+        return switch (piece) {
+            case KNIGHT -> Attacks.knightAttacks(to) & board.getKnights(white);
+            case BISHOP -> Attacks.bishopAttacks(to, occupied) & board.getBishops(white);
+            case ROOK -> Attacks.rookAttacks(to, occupied) & board.getRooks(white);
+            case QUEEN -> (Attacks.bishopAttacks(to, occupied) | Attacks.rookAttacks(to, occupied)) & board.getQueens(white);
+            case KING -> Attacks.kingAttacks(to) & board.getKing(white);
+            default -> 0L;
+        };
+    }
 
-        if (captured != null || move.isEnPassant()) {
-            if (piece == Piece.PAWN) {
-                notation.append(File.toNotation(move.from()));
+    // Gets the pawn move to a square, or null if there's no pawn that can move there
+    private static Move toPawnMove(Board board, boolean white, int to, int fromFile, int fromRank, Piece promotion) {
+        final int toRank = Rank.of(to);
+        final int toFile = File.of(to);
+        if ((toRank == (white ? 7 : 0)) != (promotion != null)) {
+            // Promotion piece missing, or promotion on the wrong rank
+            return null;
+        }
+        final int forward = white ? 8 : -8;
+        final long pawns = board.getPawns(white);
+        final int from;
+        short flag = Piece.promoFlag(promotion);
+        if (fromFile >= 0 && fromFile != toFile) {
+            // Capture
+            if (Math.abs(fromFile - toFile) != 1) {
+                return null;
+            }
+            from = to - forward + fromFile - toFile;
+            if (Bits.contains(board.getPieces(!white), to)) {
+                if (Bits.contains(board.getKings(), to)) {
+                    return null;
+                }
+            } else if (board.getState().getEnPassantFile() == toFile && toRank == (white ? 5 : 2)) {
+                flag = Move.EN_PASSANT_FLAG;
+            } else {
+                return null;
+            }
+        } else {
+            // Push
+            if (Bits.contains(board.getOccupied(), to)) {
+                return null;
             }
-            // add 'x' to indicate capture
-            notation.append("x");
+            if (Bits.contains(pawns, to - forward)) {
+                from = to - forward;
+            } else if (toRank == (white ? 3 : 4) && !Bits.contains(board.getOccupied(), to - forward)) {
+                from = to - 2 * forward;
+                flag = Move.PAWN_DOUBLE_MOVE_FLAG;
+            } else {
+                return null;
+            }
+        }
+        if (!Bits.contains(pawns, from) || (fromRank >= 0 && Rank.of(from) != fromRank)) {
+            return null;
         }
+        return new Move(from, to, flag);
+    }
 
-        notation.append(Square.toNotation(move.to()));
+    // Checks whether a move leaves its king in check, using the pins computed by the move generator unless playMove is true
+    static boolean isLegal(Board board, Move move, boolean playMove, MoveGenerator moveGenerator) {
+        if (playMove || move.isEnPassant()) {
+            // King moves, evasions and en passant captures (that can discover an attack along the rank) are played
+            final boolean white = board.isWhite();
+            board.makeMove(move);
+            final boolean legal = !moveGenerator.isCheck(board, white);
+            board.unmakeMove();
+            return legal;
+        }
+        return Bits.contains(moveGenerator.getPinRayMask(move.from()), move.to());
+    }
 
-        // Add promotion piece type
-        if (move.promoPiece() != null) {
-            Piece promotionPieceType = move.promoPiece();
-            notation.append("=" + promotionPieceType.code().toUpperCase());
+    private static Move toCastling(Board board, boolean kingside, MoveGenerator moveGenerator) {
+        final boolean white = board.isWhite();
+        final int rook = Castling.getRook(board.getState().getRights(), kingside, white);
+        if (rook == Castling.NO_ROOK) {
+            return null;
         }
+        // In Chess960, castling moves are encoded as king-captures-rook
+        final int to = board.variant() == ChessVariant.CHESS960 ? rook : Castling.kingTo(kingside, white);
+        final Move move = new Move(board.kingSquare(white), to, Move.CASTLE_FLAG);
+        return moveGenerator.isLegal(board, move) ? move : null;
+    }
 
-        board.makeMove(move);
-        if (moveGenerator.isCheck(board, board.isWhite())) {
-            List<Move> legalMoves = moveGenerator.generateMoves(board);
-            notation.append(legalMoves.isEmpty() ? "#" : "+");
+    // Returns 1 for kingside castling, -1 for queenside castling, 0 if the notation is not a castling
+    private static int castling(CharSequence san, int end) {
+        if (end != 3 && end != 5) {
+            return 0;
+        }
+        final char o = san.charAt(0);
+        if (o != 'O' && o != '0') {
+            return 0;
+        }
+        for (int i = 1; i < end; i++) {
+            if (san.charAt(i) != (i % 2 == 0 ? o : '-')) {
+                return 0;
+            }
         }
-        board.unmakeMove();
+        return end == 3 ? 1 : -1;
+    }
 
-        return notation.toString();
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
     }
 
-    /**
-     * Checks if any ambiguity exists in notation and adds disambiguation if needed (e.g. if e2 can be reached via Nfe2 and Nbe2)
-     * @param notation the notation to add disambiguation to
-     * @param board the board on which the move is played
-     * @param move the move to add disambiguation for
-     * @param moveGenerator the move generator to use for generating moves
-     */
-    private static void addDisambiguation(StringBuilder notation, Board board, Move move,MoveGenerator moveGenerator) {
-        final Piece piece = board.pieceAt(move.from());
-        if (piece != Piece.PAWN && piece != Piece.KING) {
-            final List<Move> candidates = moveGenerator.generateMoves(board).stream().filter(m -> m.to() == move.to() && board.pieceAt(m.from()) == piece).toList();
-
-            if (candidates.size() > 1) {
-                // Disambiguation is required
-                final boolean fileIsEnough = candidates.stream().filter(m -> File.of(m.from()) == File.of(move.from())).count() == 1;
-                if (fileIsEnough) {
-                    notation.append(File.toNotation(move.from()));
-                } else {
-                    final boolean rankIsEnough = candidates.stream().filter(m -> Rank.of(m.from()) == Rank.of(move.from())).count() == 1;
-                    if (rankIsEnough) {
-                        notation.append(Rank.toRankNotation(move.from()));
-                        } else {
-                        notation.append(Square.toNotation(move.from()));
-	                }
-	            }
-	        }
-        }
+    private static boolean isValid(int coordinate) {
+        return coordinate >= 0 && coordinate < 8;
+    }
+
+    private static Piece piece(char c) {
+        return switch (c) {
+            case 'P' -> Piece.PAWN;
+            case 'N' -> Piece.KNIGHT;
+            case 'B' -> Piece.BISHOP;
+            case 'R' -> Piece.ROOK;
+            case 'Q' -> Piece.QUEEN;
+            case 'K' -> Piece.KING;
+            default -> null;
+        };
     }
 
 }
@@ -0,0 +1,135 @@
+package com.kelseyde.calvin.utils.notation;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.File;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.board.Rank;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A converter of moves to <a href="https://en.wikipedia.org/wiki/Algebraic_notation_(chess)">Standard Algebraic Notation (SAN)</a>
+ * designed to convert whole games.
+ * <br>Unlike {@link SAN#fromMove(Move, Board)}, a converter reuses its move generator from one move to the next.
+ * Disambiguation is computed from the pieces that attack the destination square, and a mate is told from a check with
+ * {@link MoveGenerator#hasLegalMove(Board)}: the legal moves are never generated.
+ * <br>The notation is the one of {@link SAN#fromMove(Move, Board)}.
+ * <br>This class is not thread safe, each thread should use its own converter.
+ */
+public class SANConverter {
+
+    private static final String PIECE_CODES = "PNBRQK";
+
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Converts a move to SAN.
+     * @param board the board on which the move is to be made, it is left unchanged.
+     * @param move a legal move
+     * @return the move in SAN notation.
+     */
+    public String toSAN(Board board, Move move) {
+        builder.setLength(0);
+        play(board, move, builder);
+        board.unmakeMove();
+        return builder.toString();
+    }
+
+    /**
+     * Converts a sequence of moves to SAN.
+     * @param board the board on which the first move is to be made, it is left unchanged.
+     * @param moves a sequence of legal moves, each one being played after the previous one
+     * @return the moves in SAN notation.
+     */
+    public List<String> toSAN(Board board, List<Move> moves) {
+        final List<String> result = new ArrayList<>(moves.size());
+        try {
+            for (Move move : moves) {
+                builder.setLength(0);
+                play(board, move, builder);
+                result.add(builder.toString());
+            }
+        } finally {
+            for (int i = 0; i < result.size(); i++) {
+                board.unmakeMove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Plays a move on a board and appends its SAN to a builder.
+     * @param board the board on which the move is to be made. The move is played on this board.
+     * @param move a legal move
+     * @param san the builder the notation is appended to
+     */
+    public void play(Board board, Move move, StringBuilder san) {
+        if (move.isCastling()) {
+            san.append(move.to() > move.from() ? "O-O" : "O-O-O");
+        } else {
+            final int from = move.from();
+            final int to = move.to();
+            final Piece piece = board.pieceAt(from);
+            final boolean capture = board.pieceAt(to) != null || move.isEnPassant();
+            if (piece == Piece.PAWN) {
+                if (capture) {
+                    san.append((char) ('a' + File.of(from)));
+                }
+            } else {
+                san.append(PIECE_CODES.charAt(piece.index()));
+                if (piece != Piece.KING) {
+                    addDisambiguation(board, piece, from, to, san);
+                }
+            }
+            if (capture) {
+                san.append('x');
+            }
+            san.append((char) ('a' + File.of(to))).append((char) ('1' + Rank.of(to)));
+            if (move.isPromotion()) {
+                san.append('=').append(PIECE_CODES.charAt(move.promoPiece().index()));
+            }
+        }
+        board.makeMove(move);
+        if (moveGenerator.isCheck(board, board.isWhite())) {
+            san.append(moveGenerator.hasLegalMove(board) ? '+' : '#');
+        }
+    }
+
+    // Adds the origin file, rank or square if other pieces of the same type can legally move to the destination square
+    private void addDisambiguation(Board board, Piece piece, int from, int to, StringBuilder san) {
+        long others = SAN.origins(board, board.isWhite(), piece, to) & ~Bits.of(from);
+        if (others == 0) {
+            return;
+        }
+        final boolean check = moveGenerator.isCheck(board, board.isWhite());
+        if (!check) {
+            moveGenerator.calculatePins(board, board.isWhite());
+        }
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        while (others != 0) {
+            final int other = Bits.next(others);
+            if (SAN.isLegal(board, new Move(other, to), check, moveGenerator)) {
+                ambiguous = true;
+                sameFile |= File.of(other) == File.of(from);
+                sameRank |= Rank.of(other) == Rank.of(from);
+            }
+            others = Bits.pop(others);
+        }
+        if (ambiguous) {
+            if (!sameFile) {
+                san.append((char) ('a' + File.of(from)));
+            } else if (!sameRank) {
+                san.append((char) ('1' + Rank.of(from)));
+            } else {
+                san.append((char) ('a' + File.of(from))).append((char) ('1' + Rank.of(from)));
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.kelseyde.calvin.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two benchmark history files (see {@link BenchmarkResult}) and reports the benchmarks whose throughput dropped.
+ * <br>When a history file contains several results with the same identifier, the most recent one is used.
+ * <br>Usage: <code>BenchmarkComparator baseline.jsonl candidate.jsonl [maxDropPercent]</code>.
+ * The process exits with status 1 if a benchmark's throughput dropped by more than <i>maxDropPercent</i> (default 5%).
+ */
+public class BenchmarkComparator {
+
+    /** The comparison of a benchmark present in both files.
+     * @param id the benchmark identifier
+     * @param baseline the throughput (nodes or operations per second) in the baseline file
+     * @param candidate the throughput in the candidate file
+     */
+    public record Comparison(String id, double baseline, double candidate) {
+        /** Gets the relative throughput change, in percent (negative if the candidate is slower). */
+        public double changePercent() {
+            return baseline == 0 ? 0 : 100 * (candidate - baseline) / baseline;
+        }
+    }
+
+    private final double maxDropPercent;
+
+    /** Creates a comparator.
+     * @param maxDropPercent the maximum accepted throughput drop, in percent
+     */
+    public BenchmarkComparator(double maxDropPercent) {
+        if (maxDropPercent < 0) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        this.maxDropPercent = maxDropPercent;
+    }
+
+    /** Compares the results having the same identifier in both lists. */
+    public List<Comparison> compare(List<BenchmarkResult> baseline, List<BenchmarkResult> candidate) {
+        final Map<String, BenchmarkResult> baselineById = latest(baseline);
+        final List<Comparison> comparisons = new ArrayList<>();
+        latest(candidate).forEach((id, result) -> {
+            final BenchmarkResult reference = baselineById.get(id);
+            if (reference != null) {
+                comparisons.add(new Comparison(id, reference.nps(), result.nps()));
+            }
+        });
+        return comparisons;
+    }
+
+    /** Checks whether a comparison shows a throughput drop greater than the threshold. */
+    public boolean isRegression(Comparison comparison) {
+        return comparison.changePercent() < -maxDropPercent;
+    }
+
+    private static Map<String, BenchmarkResult> latest(List<BenchmarkResult> results) {
+        final Map<String, BenchmarkResult> byId = new LinkedHashMap<>();
+        results.forEach(r -> byId.put(r.id(), r));
+        return byId;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BenchmarkComparator baseline.jsonl candidate.jsonl [maxDropPercent]");
+            System.exit(2);
+        }
+        final BenchmarkComparator comparator = new BenchmarkComparator(args.length == 3 ? Double.parseDouble(args[2]) : 5.0);
+        final List<Comparison> comparisons = comparator.compare(BenchmarkResult.read(Path.of(args[0])), BenchmarkResult.read(Path.of(args[1])));
+        boolean regression = false;
+        for (Comparison comparison : comparisons) {
+            final boolean isRegression = comparator.isRegression(comparison);
+            regression = regression || isRegression;
+            System.out.printf("%-10s %-80s %15.1f -> %15.1f (%+.1f%%)%n", isRegression ? "REGRESSION" : "ok",
+                    comparison.id(), comparison.baseline(), comparison.candidate(), comparison.changePercent());
+        }
+        if (comparisons.isEmpty()) {
+            System.out.println("No common benchmark found");
+        }
+        System.exit(regression ? 1 : 0);
+    }
+}
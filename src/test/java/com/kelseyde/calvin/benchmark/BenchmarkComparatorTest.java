@@ -0,0 +1,53 @@
+package com.kelseyde.calvin.benchmark;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BenchmarkComparatorTest {
+
+    @Test
+    void testJsonRoundTrip(@TempDir Path dir) throws IOException {
+        final BenchmarkResult result = new BenchmarkResult("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+                4, 97910, 12_345_678, 7.9e6, "OpenJDK \"17\"\\", "abc123", "2024-01-01T00:00:00Z");
+        assertEquals(result, BenchmarkResult.fromJson(result.toJson()));
+
+        final Path file = dir.resolve("sub").resolve("history.jsonl");
+        BenchmarkResult.append(file, List.of(result));
+        BenchmarkResult.append(file, List.of(result, result));
+        assertEquals(List.of(result, result, result), BenchmarkResult.read(file));
+
+        assertThrows(IllegalArgumentException.class, () -> BenchmarkResult.fromJson("{\"name\":\"x\"}"));
+        assertThrows(IllegalArgumentException.class, () -> BenchmarkResult.fromJson("not json"));
+        // NaN and infinite values can't be written in JSON
+        assertThrows(IllegalArgumentException.class, () -> BenchmarkResult.of("zero time", "", -1, 10, 0, Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> BenchmarkResult.of("no score", "", -1, -1, -1, Double.NaN));
+    }
+
+    @Test
+    void testCompare() {
+        final List<BenchmarkResult> baseline = List.of(
+                result("perft", 3, 1000), result("perft", 4, 1000), result("perft", 4, 2000), result("removed", 1, 5));
+        final List<BenchmarkResult> candidate = List.of(
+                result("perft", 3, 960), result("perft", 4, 1800), result("added", 1, 5));
+        final BenchmarkComparator comparator = new BenchmarkComparator(5);
+        final List<BenchmarkComparator.Comparison> comparisons = comparator.compare(baseline, candidate);
+        assertEquals(2, comparisons.size());
+        // -4% is accepted
+        assertEquals(-4.0, comparisons.get(0).changePercent(), 1e-9);
+        assertFalse(comparator.isRegression(comparisons.get(0)));
+        // Latest baseline result is used: -10% is a regression
+        assertEquals(2000, comparisons.get(1).baseline());
+        assertTrue(comparator.isRegression(comparisons.get(1)));
+        assertThrows(IllegalArgumentException.class, () -> new BenchmarkComparator(-1));
+    }
+
+    private static BenchmarkResult result(String name, int depth, double nps) {
+        return new BenchmarkResult(name, "", depth, -1, -1, nps, "jvm", "commit", "now");
+    }
+}
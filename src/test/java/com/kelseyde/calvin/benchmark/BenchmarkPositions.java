@@ -0,0 +1,50 @@
+package com.kelseyde.calvin.benchmark;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.utils.notation.FEN;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The corpus of positions the benchmarks run on.
+ * <br>It mixes opening, middlegame and endgame positions, positions with checks, pins, promotions, en passant and castling
+ * moves, most of them coming from the <a href="https://www.chessprogramming.org/Perft_Results">perft results</a> page.
+ */
+public class BenchmarkPositions {
+
+    public static final String STARTPOS = FEN.STARTPOS;
+    public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    public static final List<String> FENS = List.of(
+            STARTPOS,
+            KIWIPETE,
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbqkb1r/pp1p1ppp/4pn2/2pP4/2P5/8/PP2PPPP/RNBQKBNR w KQkq c6 0 4",
+            "r1bq1rk1/pp2nppp/2n1p3/3pP3/1b1P4/2NB1N2/PP3PPP/R1BQK2R w KQ - 3 9",
+            "2r3k1/p4p2/3Rp2p/1p2P1pK/8/1P4P1/P3Q2P/1q6 b - - 0 1",
+            "8/8/1p1k4/p1p1p3/P1P1P3/1P1K4/8/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/1r3PPP/3R2K1 w - - 0 1",
+            "4k3/1P6/8/8/8/8/6p1/4K3 w - - 0 1"
+    );
+
+    private BenchmarkPositions() {
+        super();
+    }
+
+    /** Builds a new board for every position of the corpus. */
+    public static Board[] boards() {
+        return FENS.stream().map(FEN::toBoard).toArray(Board[]::new);
+    }
+
+    /** Gets the legal moves of each board. */
+    public static Move[][] legalMoves(Board[] boards) {
+        final MoveGenerator movegen = new MoveGenerator();
+        return Arrays.stream(boards).map(b -> movegen.generateMoves(b).toArray(Move[]::new)).toArray(Move[][]::new);
+    }
+}
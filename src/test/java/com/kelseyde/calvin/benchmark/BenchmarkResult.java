@@ -0,0 +1,251 @@
+package com.kelseyde.calvin.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A benchmark result, stored as a JSON object in a <a href="https://jsonlines.org/">JSON lines</a> history file.
+ * <br>Each result is identified by its {@link #id()}: the benchmark name, the position (or the JMH parameters) and the depth.
+ * @param name the benchmark name (for instance <i>kiwipete</i> or <i>MoveGeneratorBenchmark.generateMoves</i>)
+ * @param position the FEN of the position or the benchmark parameters (may be empty)
+ * @param depth the search depth, or -1 if not relevant
+ * @param nodes the number of searched nodes, or -1 if not relevant
+ * @param timeNanos the measured time in nanoseconds, or -1 if not relevant
+ * @param nps the number of nodes (or benchmark operations) per second
+ * @param jvm the JVM that ran the benchmark
+ * @param commit the commit of the benchmarked code
+ * @param timestamp the date of the benchmark (ISO-8601)
+ * @throws IllegalArgumentException if nps is NaN or infinite, as JSON has no such numbers
+ */
+public record BenchmarkResult(String name, String position, int depth, long nodes, long timeNanos, double nps,
+                              String jvm, String commit, String timestamp) {
+
+    public BenchmarkResult {
+        if (!Double.isFinite(nps)) {
+            throw new IllegalArgumentException("Invalid nps " + nps + " for benchmark " + name);
+        }
+    }
+
+    /** The directory where the results are written, relative to the project directory. */
+    public static final Path DEFAULT_DIRECTORY = Path.of("target", "benchmark-results");
+
+    /** Creates a result for the current JVM and commit.
+     */
+    public static BenchmarkResult of(String name, String position, int depth, long nodes, long timeNanos, double nps) {
+        return new BenchmarkResult(name, position, depth, nodes, timeNanos, nps, currentJvm(), currentCommit(),
+                Instant.now().truncatedTo(ChronoUnit.SECONDS).toString());
+    }
+
+    /** Gets the identifier of this result; results with the same identifier can be compared. */
+    public String id() {
+        return depth < 0 ? name + " " + position : name + " " + position + " depth " + depth;
+    }
+
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{");
+        appendString(json, "name", name).append(',');
+        appendString(json, "position", position).append(',');
+        json.append("\"depth\":").append(depth).append(',');
+        json.append("\"nodes\":").append(nodes).append(',');
+        json.append("\"timeNanos\":").append(timeNanos).append(',');
+        json.append("\"nps\":").append(nps).append(',');
+        appendString(json, "jvm", jvm).append(',');
+        appendString(json, "commit", commit).append(',');
+        appendString(json, "timestamp", timestamp);
+        return json.append('}').toString();
+    }
+
+    /** Parses a result written by {@link #toJson()}.
+     * @throws IllegalArgumentException if the json is not a valid result
+     */
+    public static BenchmarkResult fromJson(String json) {
+        final Map<String, String> fields = new JsonParser(json).parseObject();
+        try {
+            return new BenchmarkResult(fields.get("name"), fields.getOrDefault("position", ""),
+                    Integer.parseInt(fields.getOrDefault("depth", "-1")), Long.parseLong(fields.getOrDefault("nodes", "-1")),
+                    Long.parseLong(fields.getOrDefault("timeNanos", "-1")), Double.parseDouble(fields.get("nps")),
+                    fields.get("jvm"), fields.get("commit"), fields.get("timestamp"));
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid benchmark result: " + json, e);
+        }
+    }
+
+    /** Appends results to a history file, creating it (and its parent directories) if needed. */
+    public static void append(Path file, List<BenchmarkResult> results) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        final StringBuilder lines = new StringBuilder();
+        results.forEach(r -> lines.append(r.toJson()).append('\n'));
+        Files.writeString(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Reads all the results of a history file, in the order they were written. */
+    public static List<BenchmarkResult> read(Path file) throws IOException {
+        final List<BenchmarkResult> results = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    results.add(fromJson(line));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static String currentJvm() {
+        return System.getProperty("java.vm.name") + " " + System.getProperty("java.runtime.version");
+    }
+
+    /** Gets the benchmarked commit from the <i>benchmark.commit</i> system property, the GITHUB_SHA environment variable or git. */
+    private static String currentCommit() {
+        String commit = System.getProperty("benchmark.commit", System.getenv("GITHUB_SHA"));
+        if (commit == null) {
+            try {
+                final Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+                final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+                commit = process.waitFor() == 0 ? output : null;
+            } catch (IOException e) {
+                commit = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                commit = null;
+            }
+        }
+        return commit == null || commit.isEmpty() ? "unknown" : commit;
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String key, String value) {
+        json.append('"').append(key).append("\":\"");
+        final String safeValue = value == null ? "" : value;
+        for (int i = 0; i < safeValue.length(); i++) {
+            final char c = safeValue.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+
+    /** A parser for flat JSON objects whose values are strings or numbers. */
+    private static class JsonParser {
+        private final String json;
+        private int index;
+
+        private JsonParser(String json) {
+            this.json = json;
+        }
+
+        private Map<String, String> parseObject() {
+            final Map<String, String> fields = new HashMap<>();
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                index++;
+                return fields;
+            }
+            do {
+                skipSpaces();
+                final String key = parseString();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+                fields.put(key, peek() == '"' ? parseString() : parseNumber());
+                skipSpaces();
+            } while (tryConsume(','));
+            expect('}');
+            return fields;
+        }
+
+        private String parseString() {
+            expect('"');
+            final StringBuilder value = new StringBuilder();
+            char c;
+            while ((c = next()) != '"') {
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                        case 'n' -> value.append('\n');
+                        case 'r' -> value.append('\r');
+                        case 't' -> value.append('\t');
+                        case 'u' -> {
+                            value.append((char) Integer.parseInt(json.substring(index, index + 4), 16));
+                            index += 4;
+                        }
+                        default -> value.append(c);
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+
+        private String parseNumber() {
+            final int start = index;
+            while (index < json.length() && "+-0123456789.eE".indexOf(json.charAt(index)) >= 0) {
+                index++;
+            }
+            if (start == index) {
+                throw new IllegalArgumentException("Invalid json value at " + index + ": " + json);
+            }
+            return json.substring(start, index);
+        }
+
+        private void skipSpaces() {
+            while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
+                index++;
+            }
+        }
+
+        private boolean tryConsume(char c) {
+            if (index < json.length() && json.charAt(index) == c) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!tryConsume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + index + ": " + json);
+            }
+        }
+
+        private char peek() {
+            if (index >= json.length()) {
+                throw new IllegalArgumentException("Unexpected end of json: " + json);
+            }
+            return json.charAt(index);
+        }
+
+        private char next() {
+            final char c = peek();
+            index++;
+            return c;
+        }
+    }
+}
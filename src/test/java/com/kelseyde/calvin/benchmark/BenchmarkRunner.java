@@ -0,0 +1,70 @@
+package com.kelseyde.calvin.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the JMH benchmarks of this package with the GC profiler, in order to report the allocation rate of each benchmark.
+ * <br>Usage: <code>mvn test-compile exec:exec -Pbenchmark [-Dbenchmark.include=regexp]</code>, where the optional regular expression
+ * selects the benchmarks to run (for instance <i>MoveGeneratorBenchmark.generateMoves</i>).
+ * <br>The results are appended to <i>target/benchmark-results/jmh.jsonl</i> (see {@link BenchmarkResult}), the throughput of each
+ * benchmark being expressed in operations per second, or in nodes per second for the benchmarks that count nodes
+ * (see {@link PerftBenchmark}).
+ */
+public class BenchmarkRunner {
+
+    private static final String DEPTH_PARAM = "depth";
+    private static final String NODES_COUNTER = "nodes";
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        final String include = args.length > 0 ? args[0] : ".*";
+        final Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        final Collection<RunResult> results = new Runner(options).run();
+        final Path file = BenchmarkResult.DEFAULT_DIRECTORY.resolve("jmh.jsonl");
+        BenchmarkResult.append(file, results.stream().map(BenchmarkRunner::toResult).toList());
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+
+    private static BenchmarkResult toResult(RunResult runResult) {
+        final BenchmarkParams params = runResult.getParams();
+        final String benchmark = params.getBenchmark();
+        final String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        final String parameters = params.getParamsKeys().stream()
+                .filter(key -> !DEPTH_PARAM.equals(key))
+                .map(key -> key + "=" + params.getParam(key))
+                .collect(Collectors.joining(","));
+        final String depth = params.getParam(DEPTH_PARAM);
+        final Result<?> nodes = runResult.getSecondaryResults().get(NODES_COUNTER);
+        final Result<?> throughput = nodes == null ? runResult.getPrimaryResult() : nodes;
+        return BenchmarkResult.of(name, parameters, depth == null ? -1 : Integer.parseInt(depth), -1, -1,
+                toOperationsPerSecond(throughput, params));
+    }
+
+    private static double toOperationsPerSecond(Result<?> result, BenchmarkParams params) {
+        final double unitsPerSecond = (double) TimeUnit.SECONDS.toNanos(1) / params.getTimeUnit().toNanos(1);
+        return switch (params.getMode()) {
+            case Throughput -> result.getScore() * unitsPerSecond;
+            default -> unitsPerSecond / result.getScore();
+        };
+    }
+
+    private BenchmarkRunner() {
+        super();
+    }
+}
@@ -0,0 +1,121 @@
+package com.kelseyde.calvin.benchmark;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks of the move generator and of the board's make/unmake functions. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGeneratorBenchmark {
+
+    /** The filter of {@link #generateMoves}, in its own state so that the other benchmarks are not run once per filter. */
+    @State(Scope.Thread)
+    public static class FilterState {
+        @Param({"ALL", "NOISY", "QUIET", "CAPTURES_ONLY"})
+        private MoveFilter filter;
+    }
+
+    /** The boards of {@link #makeUnmakeMoveSecondaryKey}, they maintain the secondary key used by 128-bit keys. */
+    @State(Scope.Thread)
+    public static class SecondaryKeyState {
+        private Board[] boards;
+
+        @Setup
+        public void setup() {
+            boards = BenchmarkPositions.boards();
+            for (Board board : boards) {
+                board.setSecondaryKeyEnabled(true);
+            }
+        }
+    }
+
+    private MoveGenerator movegen;
+    private Board[] boards;
+    private Move[][] legalMoves;
+    // Moves that are legal in a position of the corpus, tested against all the positions
+    private Move[] candidateMoves;
+
+    @Setup
+    public void setup() {
+        movegen = new MoveGenerator();
+        boards = BenchmarkPositions.boards();
+        legalMoves = BenchmarkPositions.legalMoves(boards);
+        candidateMoves = Arrays.stream(legalMoves).flatMap(Arrays::stream).distinct().toArray(Move[]::new);
+    }
+
+    @Benchmark
+    public void generateMoves(FilterState state, Blackhole bh) {
+        for (Board board : boards) {
+            bh.consume(movegen.generateMoves(board, state.filter));
+        }
+    }
+
+    @Benchmark
+    public void hasLegalMove(Blackhole bh) {
+        for (Board board : boards) {
+            bh.consume(movegen.hasLegalMove(board));
+        }
+    }
+
+    @Benchmark
+    public void makeUnmakeMove(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (Move move : legalMoves[i]) {
+                bh.consume(board.makeMove(move));
+                board.unmakeMove();
+            }
+        }
+    }
+
+    /** Same as {@link #makeUnmakeMove}, on boards that maintain the secondary key, to measure its cost. */
+    @Benchmark
+    public void makeUnmakeMoveSecondaryKey(SecondaryKeyState state, Blackhole bh) {
+        for (int i = 0; i < state.boards.length; i++) {
+            final Board board = state.boards[i];
+            for (Move move : legalMoves[i]) {
+                bh.consume(board.makeMove(move));
+                board.unmakeMove();
+            }
+        }
+    }
+
+    @Benchmark
+    public void keyAfter(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (Move move : legalMoves[i]) {
+                bh.consume(board.keyAfter(move));
+            }
+        }
+    }
+
+    @Benchmark
+    public void isPseudoLegal(Blackhole bh) {
+        for (Board board : boards) {
+            for (Move move : candidateMoves) {
+                bh.consume(movegen.isPseudoLegal(board, move));
+            }
+        }
+    }
+
+    @Benchmark
+    public void isLegal(Blackhole bh) {
+        for (Board board : boards) {
+            for (Move move : candidateMoves) {
+                bh.consume(movegen.isLegal(board, move));
+            }
+        }
+    }
+}
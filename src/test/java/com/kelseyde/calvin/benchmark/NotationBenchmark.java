@@ -0,0 +1,225 @@
+package com.kelseyde.calvin.benchmark;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Key;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.utils.RandomGameGenerator;
+import com.kelseyde.calvin.utils.binary.GameChainReader;
+import com.kelseyde.calvin.utils.binary.GameChainWriter;
+import com.kelseyde.calvin.utils.binary.PackedPosition;
+import com.kelseyde.calvin.utils.notation.EPDReader;
+import com.kelseyde.calvin.utils.notation.EPDWriter;
+import com.kelseyde.calvin.utils.notation.FEN;
+import com.kelseyde.calvin.utils.notation.FENParser;
+import com.kelseyde.calvin.utils.notation.PGN;
+import com.kelseyde.calvin.utils.notation.PGNWriter;
+import com.kelseyde.calvin.utils.notation.SAN;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks of the conversions between boards and their FEN/SAN/PGN notations or binary encoding, and of the key generation. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NotationBenchmark {
+
+    private String[] fens;
+    private Board[] boards;
+    private Move[][] legalMoves;
+    private String[][] sanMoves;
+    private String[][] uciMoves;
+    private final FENParser fenParser = new FENParser();
+    private final Board parsedBoard = new Board();
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final ByteBuffer fenBuffer = ByteBuffer.allocate(FEN.MAX_LENGTH);
+    private final ByteBuffer packedBuffer = ByteBuffer.allocate(PackedPosition.BYTES);
+    private ByteBuffer packedPositions;
+    private final PGNWriter pgnWriter = new PGNWriter(Writer.nullWriter());
+    private final GameChainWriter gameChainWriter = new GameChainWriter(OutputStream.nullOutputStream());
+    private Board game;
+    private byte[] gameChain;
+    private byte[] epd;
+
+    @Setup
+    public void setup() {
+        fens = BenchmarkPositions.FENS.toArray(String[]::new);
+        boards = BenchmarkPositions.boards();
+        legalMoves = BenchmarkPositions.legalMoves(boards);
+        sanMoves = new String[boards.length][];
+        uciMoves = new String[boards.length][];
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            sanMoves[i] = Arrays.stream(legalMoves[i]).map(move -> SAN.fromMove(move, board)).toArray(String[]::new);
+            uciMoves[i] = Arrays.stream(legalMoves[i]).map(Move::toUCI).toArray(String[]::new);
+        }
+        packedPositions = ByteBuffer.allocate(PackedPosition.BYTES * boards.length);
+        for (Board board : boards) {
+            PackedPosition.write(board, packedPositions);
+        }
+        // A deterministic game of up to 200 plies
+        game = Board.from(FEN.STARTPOS);
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        for (int ply = 0; ply < 200; ply++) {
+            final List<Move> moves = moveGenerator.generateMoves(game);
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.makeMove(moves.get((ply * 7) % moves.size()));
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameChainWriter writer = new GameChainWriter(bytes)) {
+            writer.write(game);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        gameChain = bytes.toByteArray();
+        // An EPD suite with a best move and an id per position
+        bytes.reset();
+        try (EPDWriter writer = new EPDWriter(bytes)) {
+            for (int i = 0; i < boards.length; i++) {
+                writer.write(boards[i], Map.of("bm", sanMoves[i][0], "id", "position " + i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        epd = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public void fenToBoard(Blackhole bh) {
+        for (String fen : fens) {
+            bh.consume(FEN.toBoard(fen));
+        }
+    }
+
+    @Benchmark
+    public void fenParser(Blackhole bh) {
+        for (String fen : fens) {
+            bh.consume(fenParser.parse(fen, parsedBoard));
+        }
+    }
+
+    @Benchmark
+    public void boardToFen(Blackhole bh) {
+        for (Board board : boards) {
+            bh.consume(FEN.toFEN(board));
+        }
+    }
+
+    @Benchmark
+    public void writeFen(Blackhole bh) {
+        for (Board board : boards) {
+            fenBuffer.clear();
+            FEN.write(board, fenBuffer);
+            bh.consume(fenBuffer.position());
+        }
+    }
+
+    @Benchmark
+    public void generateKey(Blackhole bh) {
+        for (Board board : boards) {
+            bh.consume(Key.generateKey(board));
+        }
+    }
+
+    @Benchmark
+    public void moveToSan(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (Move move : legalMoves[i]) {
+                bh.consume(SAN.fromMove(move, board));
+            }
+        }
+    }
+
+    @Benchmark
+    public void sanToMove(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (String san : sanMoves[i]) {
+                bh.consume(SAN.toMove(board, san));
+            }
+        }
+    }
+
+    @Benchmark
+    public void uciToMove(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            final Board board = boards[i];
+            for (String uci : uciMoves[i]) {
+                bh.consume(board.parseUciMove(uci, 0, moveGenerator));
+            }
+        }
+    }
+
+    @Benchmark
+    public void pgnToString(Blackhole bh) {
+        bh.consume(PGN.toPGN(game));
+    }
+
+    @Benchmark
+    public void writePgn(Blackhole bh) throws IOException {
+        pgnWriter.write(game);
+        bh.consume(game.getPly());
+    }
+
+    @Benchmark
+    public void packPosition(Blackhole bh) {
+        for (Board board : boards) {
+            PackedPosition.write(board, packedBuffer, 0);
+        }
+        bh.consume(packedBuffer.get(0));
+    }
+
+    @Benchmark
+    public void unpackPosition(Blackhole bh) {
+        for (int i = 0; i < boards.length; i++) {
+            PackedPosition.read(packedPositions, i * PackedPosition.BYTES, parsedBoard);
+            bh.consume(parsedBoard.key());
+        }
+    }
+
+    @Benchmark
+    public void writeGameChain(Blackhole bh) throws IOException {
+        gameChainWriter.write(game);
+        bh.consume(game.getPly());
+    }
+
+    @Benchmark
+    public void readGameChain(Blackhole bh) throws IOException {
+        final GameChainReader reader = new GameChainReader(new ByteArrayInputStream(gameChain));
+        reader.next(parsedBoard);
+        bh.consume(parsedBoard.key());
+    }
+
+    @Benchmark
+    public void readEpd(Blackhole bh) throws IOException {
+        final EPDReader reader = new EPDReader(new ByteArrayInputStream(epd));
+        while (reader.next(parsedBoard)) {
+            bh.consume(reader.operand("id"));
+        }
+    }
+
+    @Benchmark
+    public void generateRandomGames() throws IOException {
+        // 10,000 quiet positions, on all the cores
+        new RandomGameGenerator().withPlies(8, 16).withFilter(RandomGameGenerator.PositionFilter.quiet())
+                .generate(10_000, RandomGameGenerator.Format.BINARY, OutputStream.nullOutputStream());
+    }
+}
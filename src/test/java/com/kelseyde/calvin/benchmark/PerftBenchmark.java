@@ -0,0 +1,52 @@
+package com.kelseyde.calvin.benchmark;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.utils.Perft;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Benchmark of a bulk perft, the best overall measure of the move generator speed.
+ * <br>Besides the number of perft per second, it reports the number of searched nodes per second (the <i>nodes</i> secondary result).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PerftBenchmark {
+
+    /** The counter of searched nodes. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Param({BenchmarkPositions.STARTPOS, BenchmarkPositions.KIWIPETE})
+    private String fen;
+
+    @Param({"4"})
+    private int depth;
+
+    private Board board;
+
+    @Setup
+    public void setup() {
+        board = FEN.toBoard(fen);
+    }
+
+    @Benchmark
+    public long bulkPerft(Nodes counter) {
+        final Perft.Result result = new Perft().perft(board, depth, Perft.Type.BULK);
+        counter.nodes += result.searchedNodesCount();
+        return result.leafNodesCount();
+    }
+}
@@ -2,6 +2,9 @@ package com.kelseyde.calvin.board;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.jupiter.api.Test;
 
 import com.kelseyde.calvin.utils.notation.FEN;
@@ -14,4 +17,23 @@ class BoardBuilderTest {
         assertEquals(FEN.STARTPOS, FEN.toFEN(board));
     }
 
+    @Test
+    void testFischerRandom() {
+        // Start positions of the standard Chess960 numbering
+        assertEquals("bbqnnrkr/pppppppp/8/8/8/8/PPPPPPPP/BBQNNRKR w HFhf - 0 1", FEN.toFEN(BoardBuilder.newFischerRandom(0)));
+        assertEquals("bqnbnrkr/pppppppp/8/8/8/8/PPPPPPPP/BQNBNRKR w HFhf - 0 1", FEN.toFEN(BoardBuilder.newFischerRandom(1)));
+        assertEquals("bqnnrbkr/pppppppp/8/8/8/8/PPPPPPPP/BQNNRBKR w HEhe - 0 1", FEN.toFEN(BoardBuilder.newFischerRandom(2)));
+        assertEquals("qbbnnrkr/pppppppp/8/8/8/8/PPPPPPPP/QBBNNRKR w HFhf - 0 1", FEN.toFEN(BoardBuilder.newFischerRandom(4)));
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w HAha - 0 1", FEN.toFEN(BoardBuilder.newFischerRandom(518)));
+        assertEquals("rkrnnqbb/pppppppp/8/8/8/8/PPPPPPPP/RKRNNQBB w CAca - 0 1", FEN.toFEN(BoardBuilder.newFischerRandom(959)));
+        // All the start positions are valid and distinct
+        final Set<String> positions = new HashSet<>();
+        for (int i = 0; i < 960; i++) {
+            final String fen = FEN.toFEN(BoardBuilder.newFischerRandom(i));
+            assertEquals(fen, FEN.toFEN(FEN.toBoard(fen, ChessVariant.CHESS960)));
+            positions.add(fen);
+        }
+        assertEquals(960, positions.size());
+    }
+
 }
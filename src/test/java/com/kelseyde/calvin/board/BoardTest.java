@@ -327,4 +327,86 @@ public class BoardTest {
         // Tests that unmakeMove does not throw exception
         copy.unmakeMove();
     }
+
+    @Test
+    public void testKeyAfter() {
+
+        MoveGenerator movegen = new MoveGenerator();
+        String[] fens = {
+                FEN.STARTPOS,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"
+        };
+        for (String fen : fens) {
+            for (ChessVariant variant : ChessVariant.values()) {
+                Board board = Board.from(fen);
+                board.setVariant(variant);
+                for (Move move : movegen.generateMoves(board)) {
+                    long expected = board.keyAfter(move);
+                    board.makeMove(move);
+                    Assertions.assertEquals(board.key(), expected, fen + " " + variant + " " + move);
+                    for (Move reply : movegen.generateMoves(board)) {
+                        long expectedReply = board.keyAfter(reply);
+                        board.makeMove(reply);
+                        Assertions.assertEquals(board.key(), expectedReply, fen + " " + variant + " " + move + " " + reply);
+                        board.unmakeMove();
+                    }
+                    board.unmakeMove();
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testParseUciMove() {
+        MoveGenerator moveGenerator = new MoveGenerator();
+        Board board = Board.from(FEN.STARTPOS);
+        // The moves of a UCI position command are parsed in place
+        String command = "position startpos moves e2e4 c7c5 e4e5 d7d5 e5d6 b8c6 g1f3 e7e5 f1e2 g8f6 e1g1 f8e7 d6d7 e8f8 d7c8n";
+        int offset = command.indexOf("moves") + 6;
+        while (offset < command.length()) {
+            Move move = board.parseUciMove(command, offset, moveGenerator);
+            Assertions.assertTrue(moveGenerator.generateMoves(board).contains(move));
+            board.makeMove(move);
+            offset += move.isPromotion() ? 6 : 5;
+        }
+        Move[] moves = board.getMoves();
+        Assertions.assertTrue(moves[0].isPawnDoubleMove());
+        Assertions.assertEquals(Move.NO_FLAG, moves[2].flag());
+        Assertions.assertTrue(moves[4].isEnPassant());
+        Assertions.assertTrue(moves[10].isCastling());
+        Assertions.assertEquals(Move.PROMOTE_TO_KNIGHT_FLAG, moves[14].flag());
+        Assertions.assertEquals("r1Nq1k1r/pp2bppp/2n2n2/2p1p3/8/5N2/PPPPBPPP/RNBQ1RK1 b - - 0 8", FEN.toFEN(board));
+
+        // The king may also castle by moving to the square of its rook
+        board = Board.from("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        Assertions.assertEquals(new Move(4, 2, Move.CASTLE_FLAG), board.parseUciMove("e1a1", 0));
+        Assertions.assertEquals(new Move(4, 6, Move.CASTLE_FLAG), board.parseUciMove("e1g1", 0));
+        Assertions.assertEquals(new Move(4, 5), board.parseUciMove("e1f1", 0));
+
+        board = FEN.toBoard("nbbqrknr/pppppppp/8/8/8/8/PPPPPPPP/NBBQRK1R w HEhe - 0 1", ChessVariant.CHESS960);
+        Assertions.assertEquals(new Move(5, 7, Move.CASTLE_FLAG), board.parseUciMove("f1h1", 0));
+        Assertions.assertEquals(new Move(5, 6), board.parseUciMove("f1g1", 0));
+    }
+
+    @Test
+    public void testParseInvalidUciMove() {
+        Board board = Board.from("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e2", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e2i4", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e2e4k", 0));
+        // Illegal moves
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e3e4", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e7e6", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e5e7", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e5d6", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("e1g1", 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.parseUciMove("a2a4q", 0));
+        Assertions.assertEquals(new Move(36, 45, Move.EN_PASSANT_FLAG), board.parseUciMove("e5f6", 0));
+    }
+
 }
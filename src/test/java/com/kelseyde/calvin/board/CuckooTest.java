@@ -0,0 +1,48 @@
+package com.kelseyde.calvin.board;
+
+import com.kelseyde.calvin.movegen.Attacks;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooTest {
+
+    @Test
+    void testAllMovesStored() {
+        int count = 0;
+        for (Piece piece : Piece.values()) {
+            for (boolean white : new boolean[] {true, false}) {
+                for (int from = 0; from < Square.COUNT; from++) {
+                    for (int to = from + 1; to < Square.COUNT; to++) {
+                        if (Bits.contains(attacks(piece, from), to)) {
+                            final int index = Cuckoo.find(Key.piece(from, to, piece, white) ^ Key.sideToMove());
+                            assertTrue(index >= 0, piece + " " + from + " " + to);
+                            assertEquals(from, Cuckoo.from(index));
+                            assertEquals(to, Cuckoo.to(index));
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(Cuckoo.MOVES_COUNT, count);
+    }
+
+    @Test
+    void testIrreversibleMove() {
+        // Pawn moves are not stored, nor are the moves without the side to move key
+        assertEquals(-1, Cuckoo.find(Key.piece(Square.of(1, 4), Square.of(2, 4), Piece.PAWN, true) ^ Key.sideToMove()));
+        assertEquals(-1, Cuckoo.find(Key.piece(Square.of(0, 6), Square.of(2, 5), Piece.KNIGHT, true)));
+    }
+
+    private static long attacks(Piece piece, int square) {
+        return switch (piece) {
+            case KNIGHT -> Attacks.knightAttacks(square);
+            case BISHOP -> Attacks.bishopAttacks(square, 0L);
+            case ROOK -> Attacks.rookAttacks(square, 0L);
+            case QUEEN -> Attacks.bishopAttacks(square, 0L) | Attacks.rookAttacks(square, 0L);
+            case KING -> Attacks.kingAttacks(square);
+            case PAWN -> 0L;
+        };
+    }
+}
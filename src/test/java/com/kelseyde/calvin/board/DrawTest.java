@@ -3,6 +3,8 @@ package com.kelseyde.calvin.board;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
@@ -50,6 +52,64 @@ class DrawTest {
         assertTrue(Draw.isDraw(board, mg));
     }
     
+    @Test
+    void testUpcomingRepetition() {
+        final String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+        // Not enough moves
+        assertFalse(Draw.hasUpcomingRepetition(build(fen, "g1f3 g8f6".split(" ")), 10));
+
+        // Black can play f6g8 to repeat the start position
+        Board board = build(fen, "g1f3 g8f6 f3g1".split(" "));
+        assertTrue(Draw.hasUpcomingRepetition(board, 10));
+        // ... but not if the start position is before the search root, as it was not repeated
+        assertFalse(Draw.hasUpcomingRepetition(board, 0));
+        board = build(fen, "g1f3 g8f6 f3g1 f6g8 g1f3 g8f6 f3g1".split(" "));
+        assertTrue(Draw.hasUpcomingRepetition(board, 0));
+
+        // The pawn move resets the half move clock
+        assertFalse(Draw.hasUpcomingRepetition(build(fen, "g1f3 g8f6 f3g1 e7e6".split(" ")), 10));
+
+        // Rook can go back from b3 to b1 ...
+        final String[] moves = "e8d8 b1c1 d8d7 c1c3 d7e7 c3b3 e7e8".split(" ");
+        assertTrue(Draw.hasUpcomingRepetition(build("4k3/8/8/8/8/8/6B1/1R2K3 b - - 0 1", moves), 10));
+        // ... unless the path is blocked
+        assertFalse(Draw.hasUpcomingRepetition(build("4k3/8/8/8/8/8/1B6/1R2K3 b - - 0 1", moves), 10));
+    }
+
+    @Test
+    void testUpcomingRepetitionMatchesBruteForce() {
+        final Random random = new Random(0);
+        int repetitions = 0;
+        for (int game = 0; game < 20; game++) {
+            final Board board = Board.from("4k3/2n5/8/3r4/8/5B2/8/R3K3 w - - 0 1");
+            for (int i = 0; i < 80; i++) {
+                final List<Move> moves = mg.generateMoves(board);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                final boolean expected = canRepeat(board, moves);
+                assertEquals(expected, Draw.hasUpcomingRepetition(board, board.getPly() + 1), board.toString());
+                if (expected) {
+                    repetitions++;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        assertTrue(repetitions > 0);
+    }
+
+    private boolean canRepeat(Board board, List<Move> moves) {
+        for (Move move : moves) {
+            board.makeMove(move);
+            final boolean repetition = Draw.isDoubleRepetition(board);
+            board.unmakeMove();
+            if (repetition) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Test
     void testStaleMate() {
         // staleMate
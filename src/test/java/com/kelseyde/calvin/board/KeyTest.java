@@ -1,10 +1,13 @@
 package com.kelseyde.calvin.board;
 
+import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.utils.notation.FEN;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.stream.Stream;
 
 public class KeyTest {
@@ -324,4 +327,142 @@ public class KeyTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGenerateKeysMatchesIncrementalKeys() {
+
+        Board board = Board.from("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        board.setSecondaryKeyEnabled(true);
+        MoveGenerator movegen = new MoveGenerator();
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            List<Move> moves = movegen.generateMoves(board);
+            if (moves.isEmpty()) {
+                break;
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+
+            BoardState state = board.getState();
+            long key = state.getKey();
+            long secondaryKey = state.getSecondaryKey();
+            long pawnKey = state.getPawnKey();
+            long[] nonPawnKeys = state.nonPawnKeys.clone();
+            Key.generateKeys(board);
+            Assertions.assertEquals(key, state.getKey());
+            Assertions.assertEquals(secondaryKey, state.getSecondaryKey());
+            Assertions.assertEquals(secondaryKey, Key.generateSecondaryKey(board));
+            Assertions.assertEquals(pawnKey, state.getPawnKey());
+            Assertions.assertArrayEquals(nonPawnKeys, state.nonPawnKeys);
+            Assertions.assertEquals(key, Key.generateKey(board));
+            Assertions.assertEquals(pawnKey, Key.generatePawnKey(board));
+        }
+
+    }
+
+    @Test
+    public void testKey128() {
+
+        for (ChessVariant variant : ChessVariant.values()) {
+            Board board = Board.from("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+            board.setVariant(variant);
+            board.setSecondaryKeyEnabled(true);
+            MoveGenerator movegen = new MoveGenerator();
+            Random random = new Random(1);
+            Key128 initial = board.key128();
+            Assertions.assertEquals(board.key(), initial.key());
+            Assertions.assertNotEquals(initial.key(), initial.secondaryKey());
+
+            int played = 0;
+            for (int i = 0; i < 100; i++) {
+                List<Move> moves = movegen.generateMoves(board);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                if (i % 10 == 5) {
+                    board.makeNullMove();
+                    Assertions.assertEquals(Key.generateSecondaryKey(board), board.key128().secondaryKey());
+                    board.unmakeNullMove();
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                played++;
+                Assertions.assertEquals(Key.generateSecondaryKey(board), board.key128().secondaryKey());
+                Assertions.assertEquals(board.key(), board.key128().key());
+            }
+            for (int i = 0; i < played; i++) {
+                board.unmakeMove();
+            }
+            Assertions.assertEquals(initial, board.key128());
+        }
+
+    }
+
+    @Test
+    public void testSecondaryKeyDisabled() {
+
+        Board board = Board.from("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        Assertions.assertFalse(board.isSecondaryKeyEnabled());
+        Assertions.assertThrows(IllegalStateException.class, board::key128);
+        board.makeMove(Move.fromUCI("e1g1", Move.CASTLE_FLAG));
+        board.makeNullMove();
+        Assertions.assertEquals(0L, board.getState().getSecondaryKey());
+        Assertions.assertEquals(Key.generateKey(board), board.key());
+        Assertions.assertThrows(IllegalStateException.class, () -> board.setSecondaryKeyEnabled(true));
+        board.unmakeNullMove();
+        board.unmakeMove();
+
+        board.setSecondaryKeyEnabled(true);
+        Assertions.assertEquals(Key.generateSecondaryKey(board), board.key128().secondaryKey());
+        board.makeMove(Move.fromUCI("e1g1", Move.CASTLE_FLAG));
+        Assertions.assertEquals(Key.generateSecondaryKey(board), board.key128().secondaryKey());
+
+    }
+
+    @Test
+    public void testKey128Order() {
+
+        Key128 key = new Key128(1L, -1L);
+        Assertions.assertTrue(key.compareTo(new Key128(-1L, 0L)) < 0);
+        Assertions.assertTrue(key.compareTo(new Key128(1L, 0L)) > 0);
+        Assertions.assertEquals(0, key.compareTo(new Key128(1L, -1L)));
+        Assertions.assertEquals("0000000000000001ffffffffffffffff", key.toString());
+
+    }
+
+    @Test
+    public void testChess960CastlingRookFile() {
+
+        // Same pieces and same castling sides, but the queenside castling rook is not the same
+        Board outerRook = FEN.toBoard("4k3/8/8/8/8/8/8/RR2K2R w AH - 0 1", ChessVariant.CHESS960);
+        Board innerRook = FEN.toBoard("4k3/8/8/8/8/8/8/RR2K2R w BH - 0 1", ChessVariant.CHESS960);
+        outerRook.setSecondaryKeyEnabled(true);
+        innerRook.setSecondaryKeyEnabled(true);
+        Assertions.assertNotEquals(outerRook.key(), innerRook.key());
+        Assertions.assertNotEquals(outerRook.key128().secondaryKey(), innerRook.key128().secondaryKey());
+
+        // Moving the castling rook keeps the other rook but removes its castling right
+        outerRook.makeMove(Move.fromUCI("a1a2"));
+        innerRook.makeMove(Move.fromUCI("b1b2"));
+        Assertions.assertEquals(Key.generateKey(outerRook), outerRook.key());
+        Assertions.assertEquals(Key.generateSecondaryKey(outerRook), outerRook.key128().secondaryKey());
+        Assertions.assertEquals(Key.generateKey(innerRook), innerRook.key());
+        Assertions.assertEquals(Castling.NO_ROOK, Castling.getRook(innerRook.getState().getRights(), false, true));
+
+    }
+
+    @Test
+    public void testStandardCastlingRights() {
+
+        // Standard chess only hashes the castling sides
+        Board outerRook = FEN.toBoard("4k3/8/8/8/8/8/8/RR2K2R w AH - 0 1");
+        Board innerRook = FEN.toBoard("4k3/8/8/8/8/8/8/RR2K2R w BH - 0 1");
+        Assertions.assertEquals(outerRook.key(), innerRook.key());
+
+        // Changing the variant recomputes the keys
+        outerRook.setVariant(ChessVariant.CHESS960);
+        Assertions.assertEquals(Key.generateKey(outerRook), outerRook.key());
+        Assertions.assertNotEquals(innerRook.key(), outerRook.key());
+        outerRook.setVariant(ChessVariant.STANDARD);
+        Assertions.assertEquals(innerRook.key(), outerRook.key());
+
+    }
+
+}
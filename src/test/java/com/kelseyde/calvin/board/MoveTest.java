@@ -86,4 +86,12 @@ public class MoveTest {
         Assertions.assertFalse(move.isPromotion());
     }
 
+    @Test
+    public void testFromUCIPromotion() {
+        Assertions.assertEquals(new Move(52, 60, Move.PROMOTE_TO_QUEEN_FLAG), Move.fromUCI("e7e8q"));
+        Assertions.assertEquals(new Move(52, 60, Move.PROMOTE_TO_KNIGHT_FLAG), Move.fromUCI("e7e8N"));
+        Assertions.assertEquals(new Move(12, 28), Move.fromUCI("e2e4"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Move.fromUCI("e7e8k"));
+    }
+
 }
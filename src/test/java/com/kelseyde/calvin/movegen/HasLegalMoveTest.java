@@ -0,0 +1,78 @@
+package com.kelseyde.calvin.movegen;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.BoardBuilder;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class HasLegalMoveTest {
+
+    private final MoveGenerator movegen = new MoveGenerator();
+
+    @Test
+    public void testCheckmate() {
+        Board board = FEN.toBoard("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        Assertions.assertFalse(movegen.hasLegalMove(board));
+    }
+
+    @Test
+    public void testStalemate() {
+        Board board = FEN.toBoard("7k/5Q2/8/8/8/8/8/K7 b - - 0 1");
+        Assertions.assertFalse(movegen.hasLegalMove(board));
+    }
+
+    @Test
+    public void testOnlyBlockingMove() {
+        // The rook must block the check of the queen
+        Board board = FEN.toBoard("k6Q/pp6/8/8/8/8/2r5/K7 b - - 0 1");
+        Assertions.assertEquals(List.of("c2c8"), toUCI(movegen.generateMoves(board)));
+        Assertions.assertTrue(movegen.hasLegalMove(board));
+    }
+
+    @Test
+    public void testOnlyEnPassant() {
+        Board board = FEN.toBoard("7k/5Q2/8/8/3Pp3/4P3/8/K7 b - d3 0 1");
+        Assertions.assertEquals(List.of("e4d3"), toUCI(movegen.generateMoves(board)));
+        Assertions.assertTrue(movegen.hasLegalMove(board));
+    }
+
+    @Test
+    public void testOnlyPinnedPawnPush() {
+        // The pawn is pinned by the rook, it can only move along the file
+        Board board = FEN.toBoard("3RkR2/4p3/3N1N2/8/8/8/8/K3R3 b - - 0 1");
+        Assertions.assertEquals(List.of("e7e6", "e7e5"), toUCI(movegen.generateMoves(board)));
+        Assertions.assertTrue(movegen.hasLegalMove(board));
+    }
+
+    @Test
+    public void testRandomGames() {
+        // Random games reach many checkmates and stalemates
+        final Random random = new Random(0);
+        final List<Move> moves = new ArrayList<>();
+        int terminal = 0;
+        for (int game = 0; game < 500; game++) {
+            Board board = game % 2 == 0 ? BoardBuilder.newStandard() : BoardBuilder.newFischerRandom(random.nextInt(960));
+            for (int ply = 0; ply < 400; ply++) {
+                movegen.generateMoves(board, MoveGenerator.MoveFilter.ALL, moves);
+                Assertions.assertEquals(!moves.isEmpty(), movegen.hasLegalMove(board), FEN.toFEN(board));
+                if (moves.isEmpty()) {
+                    terminal++;
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        Assertions.assertTrue(terminal > 0);
+    }
+
+    private static List<String> toUCI(List<Move> moves) {
+        return moves.stream().map(Move::toUCI).toList();
+    }
+
+}
@@ -27,6 +27,22 @@ public class PseudoLegalTest {
     }
 
 
+    @Test
+    public void testPawnMoveDistance() {
+        Board board = Board.from("rnbqkbnr/ppp1p1pp/8/3pPp2/8/2p5/PPPP1PPP/RNBQKBNR w KQkq f6 0 3");
+        Assertions.assertTrue(movegen.isPseudoLegal(board, Move.fromUCI("e5e6")));
+        Assertions.assertTrue(movegen.isPseudoLegal(board, Move.fromUCI("b2c3")));
+        Assertions.assertTrue(movegen.isPseudoLegal(board, Move.fromUCI("e5f6", Move.EN_PASSANT_FLAG)));
+        // Pushes and captures are one rank long
+        Assertions.assertFalse(movegen.isPseudoLegal(board, Move.fromUCI("e5e7")));
+        Assertions.assertFalse(movegen.isPseudoLegal(board, Move.fromUCI("a2a4")));
+        Assertions.assertFalse(movegen.isPseudoLegal(board, Move.fromUCI("b2d4")));
+        Assertions.assertFalse(movegen.isPseudoLegal(board, Move.fromUCI("b2c4", Move.PAWN_DOUBLE_MOVE_FLAG)));
+        // En passant is only possible on the en passant square
+        Assertions.assertFalse(movegen.isPseudoLegal(board, Move.fromUCI("e5d6", Move.EN_PASSANT_FLAG)));
+        Assertions.assertFalse(movegen.isPseudoLegal(board, Move.fromUCI("b2b3", Move.EN_PASSANT_FLAG)));
+    }
+
     public long pseudoLegalPerft(Board board, int depth) {
         List<Move> moves = movegen.generateMoves(board);
         if (depth == 1) {
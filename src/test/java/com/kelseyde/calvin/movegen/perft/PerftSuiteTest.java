@@ -1,14 +1,34 @@
 package com.kelseyde.calvin.movegen.perft;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.utils.Perft;
 import com.kelseyde.calvin.utils.Perft.Result;
 import com.kelseyde.calvin.utils.Perft.Type;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PerftSuiteTest {
 
@@ -27,4 +47,123 @@ class PerftSuiteTest {
     	final Perft p = new Perft();
     	assertThrows(IllegalArgumentException.class, () -> p.perft(board, -1));
     }
+
+    @Test
+    void listenerTest() {
+    	final Board board = Board.from("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    	final Map<Move, Long> notified = new HashMap<>();
+    	final Result perft = new Perft().withListener((move, count, progress) -> {
+    		notified.put(move, count);
+    		assertEquals(notified, progress.divide());
+    		assertEquals(notified.values().stream().mapToLong(Long::longValue).sum(), progress.leafNodesCount());
+    	}).perft(board, 3);
+    	assertFalse(perft.isCancelled());
+    	assertEquals(97862, perft.leafNodesCount());
+    	assertEquals(48, notified.size());
+    	assertEquals(perft.divide(), notified);
+    }
+
+    @Test
+    void reentrantTest() throws Exception {
+    	final String startPosition = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    	final String kiwipete = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    	// A calculation started by the listener of another calculation of the same instance
+    	final Perft perft = new Perft();
+    	final AtomicBoolean nested = new AtomicBoolean();
+    	perft.withListener((move, count, progress) -> {
+    		if (nested.compareAndSet(false, true)) {
+    			assertEquals(48, perft.perft(Board.from(kiwipete), 1).leafNodesCount());
+    			nested.set(false);
+    		}
+    	});
+    	assertEquals(8902, perft.perft(Board.from(startPosition), 3).leafNodesCount());
+
+    	// Concurrent calculations on the same instance
+    	final Perft shared = new Perft();
+    	final ExecutorService executor = Executors.newFixedThreadPool(4);
+    	try {
+    		final List<Future<Long>> results = new ArrayList<>();
+    		for (int i = 0; i < 8; i++) {
+    			final String fen = i % 2 == 0 ? startPosition : kiwipete;
+    			results.add(executor.submit(() -> shared.perft(Board.from(fen), 3).leafNodesCount()));
+    		}
+    		for (int i = 0; i < results.size(); i++) {
+    			assertEquals(i % 2 == 0 ? 8902L : 97862L, results.get(i).get());
+    		}
+    	} finally {
+    		executor.shutdownNow();
+    	}
+    }
+
+    @Test
+    void cancellationTest() {
+    	final Board board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+    	final String fen = board.toString();
+    	// Cancelled before start
+    	Result perft = new Perft().withCancellation(() -> true).perft(board, 4);
+    	assertTrue(perft.isCancelled());
+    	assertEquals(0, perft.leafNodesCount());
+    	assertTrue(perft.divide().isEmpty());
+
+    	// Cancelled when the first root moves are done
+    	final AtomicInteger doneMoves = new AtomicInteger();
+    	perft = new Perft().withListener((move, count, progress) -> doneMoves.incrementAndGet())
+    			.withCancellation(() -> doneMoves.get() >= 3).perft(board, 5);
+    	assertTrue(perft.isCancelled());
+    	assertEquals(3, perft.divide().size());
+    	assertEquals(perft.divide().values().stream().mapToLong(Long::longValue).sum(), perft.leafNodesCount());
+    	// Board is restored to its initial state
+    	assertEquals(fen, board.toString());
+    	assertEquals(0, board.getPly());
+    	assertEquals(20, new Perft().perft(board, 1).leafNodesCount());
+    }
+
+    @Test
+    void bulkCancellationTest() {
+    	final Board board = Board.from("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    	// The token is checked at start, then it cancels the calculation the first time it is checked during the walk
+    	final AtomicInteger checks = new AtomicInteger();
+    	final Result perft = new Perft().withCancellation(() -> checks.incrementAndGet() > 1).perft(board, 5, Type.BULK);
+    	assertTrue(perft.isCancelled());
+    	assertEquals(2, checks.get());
+    	// Leaves are searched nodes too, they should not delay the check
+    	assertTrue(perft.searchedNodesCount() < 20_000, "Cancelled after " + perft.searchedNodesCount() + " nodes");
+    }
+
+    @Test
+    void uniquePositionsTest(@TempDir Path tmp) throws IOException {
+    	final Board board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+    	assertEquals(-1, new Perft().perft(board, 2).uniquePositionsCount());
+    	Result perft = new Perft().uniquePositions(board, 2);
+    	assertEquals(400, perft.leafNodesCount());
+    	assertEquals(400, perft.uniquePositionsCount());
+
+    	final Board kiwipete = Board.from("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    	final Set<Long> expected = new HashSet<>();
+    	collectKeys(kiwipete, new MoveGenerator(), 3, expected);
+    	perft = new Perft().uniquePositions(kiwipete, 3);
+    	assertEquals(97862, perft.leafNodesCount());
+    	assertEquals(expected.size(), perft.uniquePositionsCount());
+    	assertTrue(perft.uniquePositionsCount() < perft.leafNodesCount());
+
+    	// Same count when keys are spilled to disk, and temporary files are deleted
+    	perft = new Perft().withSpill(1000, tmp).uniquePositions(kiwipete, 3);
+    	assertEquals(expected.size(), perft.uniquePositionsCount());
+    	try (var files = Files.list(tmp)) {
+    		assertEquals(0, files.count());
+    	}
+    	assertThrows(IllegalArgumentException.class, () -> new Perft().withSpill(0, tmp));
+    }
+
+    private static void collectKeys(Board board, MoveGenerator movegen, int depth, Set<Long> keys) {
+    	if (depth == 0) {
+    		keys.add(board.key());
+    		return;
+    	}
+    	for (Move move : movegen.generateMoves(board)) {
+    		board.makeMove(move);
+    		collectKeys(board, movegen, depth - 1, keys);
+    		board.unmakeMove();
+    	}
+    }
 }
@@ -1,5 +1,6 @@
 package com.kelseyde.calvin.movegen.perft;
 
+import com.kelseyde.calvin.benchmark.BenchmarkResult;
 import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.ChessVariant;
 import com.kelseyde.calvin.utils.Perft;
@@ -7,13 +8,10 @@ import com.kelseyde.calvin.utils.notation.FEN;
 import org.junit.jupiter.api.Assertions;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.List;
 
 public abstract class PerftTest {
     private ChessVariant variant;
@@ -37,21 +35,21 @@ public abstract class PerftTest {
         float nps = (float) result.searchedNodesCount() / ((float) performance.toNanos() / 1000000);
         System.out.println("nps: " + nps);
         if (expectedTotalMoves == result.leafNodesCount() && getSubFolder() != null) {
-            writeResults(depth, performance);
+            writeResults(depth, result.searchedNodesCount(), performance);
         }
         Assertions.assertEquals(expectedTotalMoves, result.leafNodesCount(),
                 String.format("Fen: %s, Depth: %s, Expected: %s, Actual: %s", getFen(), depth, expectedTotalMoves, result.leafNodesCount()));
     }
 
-    private void writeResults(int depth, Duration performance) {
-        Instant timestamp = Instant.now().truncatedTo(ChronoUnit.SECONDS);
-        String line = String.format("%s,%s%n", timestamp, performance);
-        String fileName = String.format("src/test/resources/perft/%s/perft_depth_%s.csv", getSubFolder(), depth);
-        Path path = Paths.get(fileName);
+    private void writeResults(int depth, long nodes, Duration performance) {
+        final long nanos = Math.max(1, performance.toNanos());
+        final double nps = (double) nodes * Duration.ofSeconds(1).toNanos() / nanos;
+        final BenchmarkResult benchmarkResult = BenchmarkResult.of(getSubFolder(), getFen().trim(), depth, nodes, nanos, nps);
+        final Path path = BenchmarkResult.DEFAULT_DIRECTORY.resolve("perft.jsonl");
         try {
-            Files.writeString(path, line, StandardOpenOption.APPEND);
+            BenchmarkResult.append(path, List.of(benchmarkResult));
         } catch (IOException e) {
-            System.out.printf("Error writing to %s! %s", fileName, e);
+            System.out.printf("Error writing to %s! %s", path, e);
         }
     }
 
@@ -0,0 +1,73 @@
+package com.kelseyde.calvin.pawns;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.File;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.board.Square;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PawnStructureTest {
+
+    @Test
+    void testFeatures() {
+        final PawnStructure structure = PawnStructure.of(Board.from("4k3/p5p1/3p4/8/1P2P3/1P6/8/4K3 w - - 0 1"));
+
+        assertEquals(squares("b3", "b4", "e4"), structure.pawns(true));
+        assertEquals(squares("b3", "b4", "e4"), structure.isolated(true));
+        assertEquals(squares("a7", "d6", "g7"), structure.isolated(false));
+        assertEquals(squares("b4"), structure.doubled(true));
+        assertEquals(0, structure.doubled(false));
+        assertEquals(0, structure.passed(true));
+        assertEquals(squares("g7"), structure.passed(false));
+        assertEquals(squares("e4"), structure.backward(true));
+        assertEquals(squares("d6"), structure.backward(false));
+        assertEquals(squares("a4", "c4", "a5", "c5", "d5", "f5"), structure.attacks(true));
+        assertTrue(Bits.contains(structure.attackSpans(true), Square.fromNotation("c8")));
+        assertFalse(Bits.contains(structure.attackSpans(true), Square.fromNotation("c3")));
+
+        assertEquals(File.C | File.F | File.H, structure.openFiles());
+        assertEquals(File.A | File.D | File.G, structure.halfOpenFiles(true));
+        assertEquals(File.B | File.E, structure.halfOpenFiles(false));
+    }
+
+    @Test
+    void testCache() {
+        final PawnCache cache = new PawnCache(1000);
+        assertEquals(1024, cache.capacity());
+        final Board board = Board.from(FEN.STARTPOS);
+        final PawnStructure structure = cache.get(board);
+        assertEquals(0, structure.passed(true));
+
+        // A knight move doesn't change the pawn structure
+        board.makeMove(new Move(6, 21));
+        assertSame(structure, cache.get(board));
+        board.makeMove(new Move(52, 36, Move.PAWN_DOUBLE_MOVE_FLAG));
+        final PawnStructure afterE5 = cache.get(board);
+        assertNotSame(structure, afterE5);
+        assertEquals(board.getPawns(false), afterE5.pawns(false));
+        board.unmakeMove();
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+
+        // Collisions are detected even if all the structures share the same slot
+        final PawnCache single = new PawnCache(1);
+        assertEquals(Bits.of(12), single.get(Board.from("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1")).pawns(true));
+        assertEquals(0, single.get(Board.from("4k3/8/8/8/8/8/8/4K3 w - - 0 1")).pawns(true));
+
+        cache.clear();
+        assertEquals(0, cache.hits());
+        assertThrows(IllegalArgumentException.class, () -> new PawnCache(0));
+    }
+
+    private static long squares(String... squares) {
+        long bitboard = 0;
+        for (String square : squares) {
+            bitboard |= Bits.of(Square.fromNotation(square));
+        }
+        return bitboard;
+    }
+}
@@ -0,0 +1,127 @@
+package com.kelseyde.calvin.tables;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.tables.TranspositionTable.Bound;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+
+    @Test
+    void testStoreAndProbe() {
+        final TranspositionTable tt = new TranspositionTable(1);
+        assertEquals((1 << 20) / 16, tt.capacity());
+        final Board board = Board.from(FEN.STARTPOS);
+        assertEquals(0, tt.probe(board));
+
+        final Move e4 = new Move(12, 28, Move.PAWN_DOUBLE_MOVE_FLAG);
+        tt.store(board, e4, -150, 32, 12, Bound.LOWER);
+        long data = tt.probe(board);
+        assertEquals(e4, TranspositionTable.move(data));
+        assertEquals(-150, TranspositionTable.score(data));
+        assertEquals(32, TranspositionTable.staticEval(data));
+        assertEquals(12, TranspositionTable.depth(data));
+        assertEquals(Bound.LOWER, TranspositionTable.bound(data));
+
+        // Replacing the entry without a move keeps the previous move, depth is clamped
+        tt.store(board, null, 30000, -30000, 300, Bound.EXACT);
+        data = tt.probe(board);
+        assertEquals(e4, TranspositionTable.move(data));
+        assertEquals(30000, TranspositionTable.score(data));
+        assertEquals(-30000, TranspositionTable.staticEval(data));
+        assertEquals(255, TranspositionTable.depth(data));
+        assertEquals(Bound.EXACT, TranspositionTable.bound(data));
+
+        assertEquals(2, tt.hits());
+        assertEquals(1, tt.misses());
+        assertEquals(0, tt.collisions());
+
+        tt.clear();
+        assertEquals(0, tt.probe(board));
+        assertEquals(0, tt.hashfull());
+        tt.resize(2);
+        assertEquals((2 << 20) / 16, tt.capacity());
+        assertEquals(0, tt.probe(board));
+        // Resizing to the same size clears the table, an invalid size keeps it
+        tt.store(board, e4, -150, 32, 12, Bound.LOWER);
+        assertThrows(IllegalArgumentException.class, () -> tt.resize(0));
+        assertNotEquals(0, tt.probe(board));
+        tt.resize(2);
+        assertEquals((2 << 20) / 16, tt.capacity());
+        assertEquals(0, tt.probe(board));
+        assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+    }
+
+    @Test
+    void testReplacement() {
+        final TranspositionTable tt = new TranspositionTable(1);
+        // Keys with the same high bits share a bucket
+        final long base = 0x1234567800000000L;
+        final int bucket = tt.index(base);
+        for (int i = 1; i <= TranspositionTable.BUCKET_SIZE; i++) {
+            assertEquals(bucket, tt.index(base + i));
+            tt.store(base + i, null, i, 0, 10 + i, Bound.EXACT);
+        }
+        // The bucket is full, the shallowest entry is replaced
+        tt.store(base + 10, null, 0, 0, 20, Bound.EXACT);
+        assertEquals(1, tt.collisions());
+        assertEquals(0, tt.probe(base + 1));
+        assertNotEquals(0, tt.probe(base + 2));
+
+        // Entries of a previous search are replaced first, even if deeper
+        tt.newSearch();
+        tt.store(base + 11, null, 0, 0, 10, Bound.UPPER);
+        tt.store(base + 12, null, 0, 0, 10, Bound.UPPER);
+        assertNotEquals(0, tt.probe(base + 11));
+        assertNotEquals(0, tt.probe(base + 12));
+        assertEquals(0, tt.probe(base + 2));
+        assertEquals(0, tt.probe(base + 3));
+        assertNotEquals(0, tt.probe(base + 10));
+    }
+
+    @Test
+    void testConcurrentAccess() throws Exception {
+        final TranspositionTable tt = new TranspositionTable(1);
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    final Random random = new Random(seed);
+                    for (int i = 0; i < 200_000; i++) {
+                        // A small key space to have a lot of concurrent writes on the same entries
+                        final long key = random.nextInt(5000) * 0x9E3779B97F4A7C15L;
+                        final long data = tt.probe(key);
+                        if (data != 0) {
+                            // The score is derived from the key, a torn entry would break this
+                            assertEquals((short) key, TranspositionTable.score(data));
+                        }
+                        tt.store(key, null, (short) key, seed, random.nextInt(20), Bound.EXACT);
+                        if (i % 50_000 == 0) {
+                            tt.clear();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.kelseyde.calvin.test;
 
 import java.util.List;
-import java.util.Optional;
 
 import com.fathzer.chess.utils.model.BoardPieceScanner;
 import com.fathzer.chess.utils.model.IBoard;
@@ -44,15 +43,7 @@ public class ChessTestUtils {
 		
 		@Override
 		public Move toMove(String uciMove) {
-			final Move move = Move.fromUCI(uciMove);
-	        final List<Move> legalMoves = getMoves();
-	        final Optional<Move> legalMove = legalMoves.stream()
-	                .filter(m -> m.matches(move))
-	                .findAny();
-	        if (legalMove.isEmpty()) {
-	        	throw new IllegalArgumentException("Illegal move "+uciMove);
-	        }
-	        return legalMove.get();
+			return board.parseUciMove(uciMove, 0, mg);
 		}
 
 		@Override
@@ -0,0 +1,56 @@
+package com.kelseyde.calvin.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void testAddContains() {
+        final LongHashSet set = new LongHashSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-1));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertFalse(set.add(-1));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertFalse(set.contains(1));
+        assertArrayEquals(new long[] {Long.MIN_VALUE, -1, 0}, set.toSortedArray());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-1));
+    }
+
+    @Test
+    void testGrowth() {
+        final LongHashSet set = new LongHashSet(4);
+        final Set<Long> reference = new HashSet<>();
+        final Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            // Few bits to have duplicates
+            final long value = random.nextLong() & 0xFFFF00000L;
+            assertEquals(reference.add(value), set.add(value));
+        }
+        assertEquals(reference.size(), set.size());
+        reference.forEach(value -> assertTrue(set.contains(value)));
+        assertArrayEquals(reference.stream().mapToLong(Long::longValue).sorted().toArray(), set.toSortedArray());
+    }
+
+    @Test
+    void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new LongHashSet(-1));
+        assertThrows(IllegalArgumentException.class, () -> new LongHashSet(LongHashSet.MAX_SIZE + 1));
+        // The capacity of a set would overflow if it grew above its maximum size
+        assertEquals(3 << 28, LongHashSet.MAX_SIZE);
+    }
+}
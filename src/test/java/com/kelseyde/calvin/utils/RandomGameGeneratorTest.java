@@ -0,0 +1,113 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Draw;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+import com.kelseyde.calvin.utils.RandomGameGenerator.Format;
+import com.kelseyde.calvin.utils.RandomGameGenerator.PositionFilter;
+import com.kelseyde.calvin.utils.binary.PackedPosition;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomGameGeneratorTest {
+
+    @Test
+    void testFen() throws IOException {
+        final int count = 5000;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RandomGameGenerator().withSeed(1).withPlies(6, 12).withParallelism(4)
+                .withFilter(PositionFilter.quiet().and(PositionFilter.material(60, 78)))
+                .generate(count, Format.FEN, out);
+        final String[] fens = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(count, fens.length);
+
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        for (String fen : fens) {
+            final Board board = FEN.toBoard(fen);
+            assertFalse(moveGenerator.isCheck(board, board.isWhite()), fen);
+            assertTrue(moveGenerator.generateMoves(board, MoveFilter.NOISY).isEmpty(), fen);
+            assertFalse(moveGenerator.generateMoves(board).isEmpty(), fen);
+        }
+    }
+
+    @Test
+    void testSameSeed() throws IOException {
+        final String[] expected = generate(1);
+        assertArrayEquals(expected, generate(3));
+        // Positions are diversified
+        assertTrue(Arrays.stream(expected).distinct().count() > expected.length / 2);
+    }
+
+    @Test
+    void testBinary() throws IOException {
+        final int count = 100;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RandomGameGenerator().withVariant(ChessVariant.CHESS960).withPlies(0, 4).withFilter(PositionFilter.notInCheck())
+                .generate(count, Format.BINARY, out);
+        final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(count * PackedPosition.BYTES, buffer.remaining());
+
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        final Board board = new Board();
+        while (buffer.hasRemaining()) {
+            PackedPosition.read(buffer, board);
+            assertEquals(ChessVariant.CHESS960, board.variant());
+            assertFalse(moveGenerator.isCheck(board, board.isWhite()));
+        }
+    }
+
+    @Test
+    void testConsumerAndWeigher() {
+        // Only pawn moves have a weight
+        final ConcurrentLinkedQueue<String> positions = new ConcurrentLinkedQueue<>();
+        final AtomicInteger draws = new AtomicInteger();
+        new RandomGameGenerator().withPlies(4, 4).withParallelism(2)
+                .withWeigher((board, move) -> board.pieceAt(move.from()) == Piece.PAWN ? 1 : 0)
+                .generate(10_000, board -> {
+                    positions.add(FEN.toFEN(board));
+                    if (Draw.isDraw(board, new MoveGenerator())) {
+                        draws.incrementAndGet();
+                    }
+                });
+        assertEquals(10_000, positions.size());
+        assertEquals(0, draws.get());
+        for (String fen : positions) {
+            // The pieces are on their start squares
+            assertTrue(fen.startsWith("rnbqkbnr/"), fen);
+            assertTrue(fen.contains("/RNBQKBNR w KQkq "), fen);
+        }
+    }
+
+    @Test
+    void testInvalid() {
+        final RandomGameGenerator generator = new RandomGameGenerator();
+        assertThrows(IllegalArgumentException.class, () -> generator.withPlies(-1, 3));
+        assertThrows(IllegalArgumentException.class, () -> generator.withPlies(4, 3));
+        assertThrows(IllegalArgumentException.class, () -> generator.withParallelism(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(-1, board -> {}));
+        assertThrows(IllegalArgumentException.class,
+                () -> generator.withWeigher((board, move) -> -1).generate(1, board -> {}));
+    }
+
+    private static String[] generate(int parallelism) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RandomGameGenerator().withSeed(42).withPlies(10, 20).withParallelism(parallelism)
+                .generate(10_000, Format.FEN, out);
+        final String[] fens = out.toString(StandardCharsets.US_ASCII).split("\n");
+        Arrays.sort(fens);
+        return fens;
+    }
+}
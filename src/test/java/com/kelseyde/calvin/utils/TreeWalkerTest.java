@@ -0,0 +1,106 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeWalkerTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static class Counter implements TreeVisitor {
+        private final MoveGenerator movegen = new MoveGenerator();
+        private long inner;
+        private long leaves;
+        private long checks;
+        private long left;
+
+        @Override
+        public boolean enter(Board board, int ply, List<Move> moves) {
+            inner++;
+            return true;
+        }
+
+        @Override
+        public void leaf(Board board, int ply) {
+            leaves++;
+            if (movegen.isCheck(board)) {
+                checks++;
+            }
+        }
+
+        @Override
+        public void leave(Board board, int ply) {
+            left++;
+        }
+    }
+
+    @Test
+    void testWalk() {
+        final Board board = Board.from(KIWIPETE);
+        final String fen = board.toString();
+        final Counter counter = new Counter();
+        final TreeWalker walker = new TreeWalker();
+        walker.walk(board, 3, counter);
+        assertFalse(walker.isStopped());
+        // Known values from https://www.chessprogramming.org/Perft_Results
+        assertEquals(97862, counter.leaves);
+        assertEquals(993, counter.checks);
+        assertEquals(1 + 48 + 2039, counter.inner);
+        assertEquals(counter.inner, counter.left);
+        assertEquals(fen, board.toString());
+
+        // Depth 0 only visits the root as a leaf
+        final Counter root = new Counter();
+        walker.walk(board, 0, root);
+        assertEquals(1, root.leaves);
+        assertEquals(0, root.inner);
+    }
+
+    @Test
+    void testFilterAndPruning() {
+        final Board board = Board.from(KIWIPETE);
+        final Counter captures = new Counter();
+        new TreeWalker().withFilter(MoveFilter.CAPTURES_ONLY).walk(board, 1, captures);
+        assertEquals(8, captures.leaves);
+
+        // Children of the root moves are skipped
+        final Counter pruned = new Counter() {
+            @Override
+            public boolean enter(Board board, int ply, List<Move> moves) {
+                super.enter(board, ply, moves);
+                return ply == 0;
+            }
+        };
+        new TreeWalker().walk(board, 3, pruned);
+        assertEquals(1 + 48, pruned.inner);
+        assertEquals(0, pruned.leaves);
+    }
+
+    @Test
+    void testStop() {
+        final Board board = Board.from(KIWIPETE);
+        final String fen = board.toString();
+        final TreeWalker walker = new TreeWalker();
+        final Counter counter = new Counter() {
+            @Override
+            public void leaf(Board board, int ply) {
+                super.leaf(board, ply);
+                if (super.leaves == 100) {
+                    walker.stop();
+                }
+            }
+        };
+        walker.walk(board, 3, counter);
+        assertTrue(walker.isStopped());
+        assertEquals(100, counter.leaves);
+        assertEquals(fen, board.toString());
+        assertThrows(IllegalArgumentException.class, () -> walker.walk(board, -1, counter));
+    }
+}
@@ -0,0 +1,156 @@
+package com.kelseyde.calvin.utils.binary;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.utils.notation.FEN;
+import com.kelseyde.calvin.utils.notation.PGN;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameChainTest {
+
+    private static final List<String> START_FENS = List.of(
+            FEN.STARTPOS,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"
+    );
+
+    @Test
+    void testRoundTrip() throws IOException {
+        final Random random = new Random(46);
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        final List<Board> games = new ArrayList<>();
+        for (String fen : START_FENS) {
+            for (int i = 0; i < 5; i++) {
+                games.add(randomGame(FEN.toBoard(fen), random, moveGenerator));
+            }
+        }
+        games.add(randomGame(FEN.toBoard("nbbqrknr/pppppppp/8/8/8/8/PPPPPPPP/NBBQRKNR w HEhe - 0 1", ChessVariant.CHESS960), random, moveGenerator));
+        // A game without moves
+        games.add(FEN.toBoard(START_FENS.get(2)));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int plies = 0;
+        try (GameChainWriter writer = new GameChainWriter(bytes)) {
+            for (int i = 0; i < games.size(); i++) {
+                final Board game = games.get(i);
+                final String fen = FEN.toFEN(game);
+                writer.write(game, i % 2 == 0 ? PGN.DRAW : PGN.PLAYING);
+                // The board is left unchanged
+                assertEquals(fen, FEN.toFEN(game));
+                plies += game.getPly();
+            }
+        }
+        // Headers excluded, a ply takes less than a byte
+        assertTrue(bytes.size() - games.size() * GameChainWriter.HEADER_BYTES < plies);
+
+        try (GameChainReader reader = new GameChainReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Board board = new Board();
+            for (int i = 0; i < games.size(); i++) {
+                assertTrue(reader.next(board));
+                final Board expected = games.get(i);
+                assertEquals(i % 2 == 0 ? PGN.DRAW : PGN.PLAYING, reader.result());
+                assertEquals(expected.variant(), board.variant());
+                assertEquals(toUCI(expected), toUCI(board));
+                assertEquals(expected.key(), board.key());
+                final String fen = FEN.toFEN(expected);
+                assertEquals(fen.substring(0, fen.lastIndexOf(' ')), FEN.toFEN(board).substring(0, fen.lastIndexOf(' ')));
+            }
+            assertFalse(reader.next(board));
+        }
+    }
+
+    @Test
+    void testBitWidth() {
+        assertEquals(0, GameChainWriter.bitWidth(1));
+        assertEquals(1, GameChainWriter.bitWidth(2));
+        assertEquals(2, GameChainWriter.bitWidth(3));
+        assertEquals(2, GameChainWriter.bitWidth(4));
+        assertEquals(5, GameChainWriter.bitWidth(20));
+        assertEquals(6, GameChainWriter.bitWidth(64));
+        assertEquals(8, GameChainWriter.bitWidth(218));
+    }
+
+    @Test
+    void testInvalid() throws IOException {
+        final Board board = FEN.toBoard(FEN.STARTPOS);
+        board.makeMove(Move.fromUCI("e2e4", Move.PAWN_DOUBLE_MOVE_FLAG));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameChainWriter writer = new GameChainWriter(bytes)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(board, "1-1"));
+            writer.write(board, PGN.WHITE_WON);
+        }
+        final byte[] game = bytes.toByteArray();
+        assertEquals(GameChainWriter.HEADER_BYTES + 1, game.length);
+
+        // Truncated moves
+        final GameChainReader truncated = new GameChainReader(new ByteArrayInputStream(game, 0, game.length - 1));
+        assertThrows(EOFException.class, () -> truncated.next(new Board()));
+
+        // Move index out of range (20 moves in the start position, encoded with 5 bits)
+        final byte[] corrupted = Arrays.copyOf(game, game.length);
+        corrupted[corrupted.length - 1] = 31;
+        final GameChainReader reader = new GameChainReader(new ByteArrayInputStream(corrupted));
+        assertThrows(IOException.class, () -> reader.next(new Board()));
+    }
+
+    @Test
+    void testIllegalMove() throws IOException {
+        // The third move is illegal, the king can't move two squares
+        final Board board = FEN.toBoard(FEN.STARTPOS);
+        board.makeMove(Move.fromUCI("e2e4", Move.PAWN_DOUBLE_MOVE_FLAG));
+        board.makeMove(Move.fromUCI("e7e5", Move.PAWN_DOUBLE_MOVE_FLAG));
+        board.makeMove(Move.fromUCI("e1e3"));
+        final String fen = FEN.toFEN(board);
+        final Board valid = FEN.toBoard(FEN.STARTPOS);
+        valid.makeMove(Move.fromUCI("d2d4", Move.PAWN_DOUBLE_MOVE_FLAG));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameChainWriter writer = new GameChainWriter(bytes)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(board, PGN.DRAW));
+            writer.flush();
+            // Nothing is written and the board is left unchanged
+            assertEquals(0, bytes.size());
+            assertEquals(fen, FEN.toFEN(board));
+            writer.write(valid, PGN.WHITE_WON);
+        }
+        try (GameChainReader reader = new GameChainReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Board read = new Board();
+            assertTrue(reader.next(read));
+            assertEquals(PGN.WHITE_WON, reader.result());
+            assertEquals(valid.key(), read.key());
+            assertFalse(reader.next(read));
+        }
+    }
+
+    private static Board randomGame(Board board, Random random, MoveGenerator moveGenerator) {
+        for (int i = 0; i < 120; i++) {
+            final List<Move> moves = moveGenerator.generateMoves(board);
+            if (moves.isEmpty()) {
+                break;
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    private static List<String> toUCI(Board board) {
+        final List<String> moves = new ArrayList<>();
+        for (int i = 0; i < board.getPly(); i++) {
+            moves.add(Move.toUCI(board.getMoves()[i]));
+        }
+        return moves;
+    }
+}
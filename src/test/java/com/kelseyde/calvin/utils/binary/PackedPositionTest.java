@@ -0,0 +1,146 @@
+package com.kelseyde.calvin.utils.binary;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Key;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedPositionTest {
+
+    private static final List<String> FENS = List.of(
+            FEN.STARTPOS,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbqkbnr/pp1p1ppp/4p3/2pP4/8/8/PPP1PPPP/RNBQKBNR w Kq c6 0 3",
+            "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+            "2r3k1/p4p2/3Rp2p/1p2P1pK/8/1P4P1/P3Q2P/1q6 b - - 37 1",
+            "4k3/1P6/8/8/8/8/6p1/4K3 w - - 1000 1"
+    );
+
+    private static final List<String> CHESS960_FENS = List.of(
+            "nbbqrknr/pppppppp/8/8/8/8/PPPPPPPP/NBBQRKNR w HEhe - 0 1",
+            "rn2k1r1/ppp1pp1p/3p2p1/5bn1/P7/2N2B2/1PPPPP2/2BNK1RR w Gga - 4 1",
+            "4k3/8/8/8/8/8/8/RR2K2R w HB - 0 1"
+    );
+
+    @Test
+    void testRoundTrip() {
+        final ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.BYTES * (FENS.size() + CHESS960_FENS.size()));
+        for (String fen : FENS) {
+            PackedPosition.write(FEN.toBoard(fen), buffer);
+        }
+        for (String fen : CHESS960_FENS) {
+            PackedPosition.write(FEN.toBoard(fen, ChessVariant.CHESS960), buffer);
+        }
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        final Board board = new Board();
+        for (String fen : FENS) {
+            PackedPosition.read(buffer, board);
+            assertSame(FEN.toBoard(fen), board);
+            assertEquals(ChessVariant.STANDARD, board.variant());
+        }
+        for (String fen : CHESS960_FENS) {
+            PackedPosition.read(buffer, board);
+            assertSame(FEN.toBoard(fen, ChessVariant.CHESS960), board);
+            assertEquals(ChessVariant.CHESS960, board.variant());
+        }
+        assertThrows(BufferUnderflowException.class, () -> PackedPosition.read(buffer, board));
+    }
+
+    @Test
+    void testPlayedMoves() {
+        // Positions reached by moves, including double pawn pushes, castling and lost castling rights
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        final Board board = FEN.toBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        final ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.BYTES);
+        final Board decoded = new Board();
+        for (Move move : moveGenerator.generateMoves(board)) {
+            board.makeMove(move);
+            for (Move reply : moveGenerator.generateMoves(board)) {
+                board.makeMove(reply);
+                PackedPosition.write(board, buffer, 0);
+                PackedPosition.read(buffer, 0, decoded);
+                assertSame(board, decoded);
+                board.unmakeMove();
+            }
+            board.unmakeMove();
+        }
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void testByteOrder() {
+        final Board board = FEN.toBoard(FENS.get(1));
+        final ByteBuffer little = ByteBuffer.allocate(PackedPosition.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer big = ByteBuffer.allocate(PackedPosition.BYTES);
+        PackedPosition.write(board, little);
+        PackedPosition.write(board, big);
+        assertArrayEquals(little.array(), big.array());
+        // The occupancy bitboard comes first, a1 being the lowest bit of the first byte
+        assertEquals((byte) 0x91, big.get(0));
+    }
+
+    @Test
+    void testInvalid() {
+        final ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.BYTES + 4);
+        buffer.position(8);
+        assertThrows(BufferOverflowException.class, () -> PackedPosition.write(FEN.toBoard(FEN.STARTPOS), buffer));
+        assertEquals(8, buffer.position());
+
+        final Board board = new Board();
+        // Too many pieces
+        final ByteBuffer full = ByteBuffer.allocate(PackedPosition.BYTES).putLong(0, -1L);
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(full, 0, board));
+
+        // A castling rook (code 6) on e4
+        final ByteBuffer rook = ByteBuffer.allocate(PackedPosition.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(0, 1L << 28).putLong(8, 6);
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(rook, 0, board));
+
+        // An en passant pawn (code 7) of the side to move
+        final ByteBuffer pawn = ByteBuffer.allocate(PackedPosition.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(0, 1L << 28).putLong(8, 7);
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(pawn, 0, board));
+
+        // Kings on e1 (code 5) and e8 (code 13)
+        PackedPosition.read(encoded((1L << 4) | (1L << 60), 0xD5), 0, board);
+        assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 0 1", FEN.toFEN(board));
+        // No black king
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(encoded(1L << 4, 0x5), 0, board));
+        // Two white kings
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(encoded((1L << 4) | (1L << 5) | (1L << 60), 0xD55), 0, board));
+        // A white pawn (code 0) on a1, a black pawn (code 8) on h8
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(encoded(1L | (1L << 4) | (1L << 60), 0xD50), 0, board));
+        assertThrows(IllegalArgumentException.class, () -> PackedPosition.read(encoded((1L << 4) | (1L << 60) | (1L << 63), 0x8D5), 0, board));
+    }
+
+    private static ByteBuffer encoded(long occupied, long codes) {
+        return ByteBuffer.allocate(PackedPosition.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, occupied).putLong(8, codes);
+    }
+
+    private static void assertSame(Board expected, Board actual) {
+        // The full move number is not encoded
+        final String fen = FEN.toFEN(expected);
+        assertEquals(fen.substring(0, fen.lastIndexOf(' ')), FEN.toFEN(actual).substring(0, fen.lastIndexOf(' ')));
+        assertEquals(expected.key(), actual.key());
+        assertEquals(Key.generateSecondaryKey(expected), Key.generateSecondaryKey(actual));
+        assertEquals(expected.pawnKey(), actual.pawnKey());
+        assertEquals(expected.getState().getEnPassantFile(), actual.getState().getEnPassantFile());
+        assertEquals(expected.getState().getRights(), actual.getState().getRights());
+        assertEquals(0, actual.getPly());
+    }
+}
@@ -0,0 +1,175 @@
+package com.kelseyde.calvin.utils.book;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.utils.TestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PolyglotBookTest {
+
+    private static final long[] RANDOM = new Random(0).longs(PolyglotKeys.RANDOM_COUNT).toArray();
+    private static final PolyglotKeys KEYS = new PolyglotKeys(RANDOM);
+
+    @Test
+    void testKey() {
+        final Board board = Board.from("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1");
+        long expected = RANDOM[768] ^ RANDOM[771] ^ RANDOM[780];
+        for (int square = 0; square < 64; square++) {
+            final Piece piece = board.pieceAt(square);
+            if (piece != null) {
+                final boolean white = (board.getWhitePieces() & (1L << square)) != 0;
+                expected ^= RANDOM[64 * (2 * piece.index() + (white ? 1 : 0)) + square];
+            }
+        }
+        assertEquals(expected, KEYS.key(board));
+        assertEquals(expected ^ RANDOM[780], KEYS.key(Board.from("r3k2r/8/8/8/8/8/8/R3K2R b Kq - 0 1")));
+    }
+
+    @Test
+    void testEnPassantKey() {
+        // No black pawn can capture e4, the en passant file is ignored
+        final Board board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        play(board, "e2e4");
+        assertEquals(KEYS.key(Board.from("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1")), KEYS.key(board));
+
+        // The pawn on b4 can capture c4 (file 2)
+        play(board, "e7e5", "d2d4", "b7b5", "a2a3", "b5b4", "c2c4");
+        final long withoutEnPassant = KEYS.key(Board.from("rnbqkbnr/p1pp1ppp/8/4p3/1pPPP3/P7/1P3PPP/RNBQKBNR b KQkq - 0 4"));
+        assertEquals(withoutEnPassant ^ RANDOM[774], KEYS.key(board));
+    }
+
+    @Test
+    void testStandardKeys() {
+        assumeTrue(PolyglotKeys.class.getResource(PolyglotKeys.STANDARD_RESOURCE) != null, "Standard Polyglot keys are not available");
+        // Test vectors from the Polyglot book format specification
+        final PolyglotKeys keys = PolyglotKeys.standard();
+        final Board board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        assertEquals(0x463b96181691fc9cL, keys.key(board));
+        play(board, "e2e4");
+        assertEquals(0x823c9b50fd114196L, keys.key(board));
+        play(board, "d7d5");
+        assertEquals(0x0756b94461c50fb0L, keys.key(board));
+        play(board, "e4e5");
+        assertEquals(0x662fafb965db29d4L, keys.key(board));
+        play(board, "f7f5");
+        assertEquals(0x22a48b5a8e47ff78L, keys.key(board));
+        play(board, "e1e2");
+        assertEquals(0x652a607ca3f242c1L, keys.key(board));
+        play(board, "e8f7");
+        assertEquals(0x00fdd303c946bdd9L, keys.key(board));
+
+        final Board other = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        play(other, "a2a4", "b7b5", "h2h4", "b5b4", "c2c4");
+        assertEquals(0x3c8123ea7b067637L, keys.key(other));
+        play(other, "b4c3", "a1a3");
+        assertEquals(0x5c3f9b829b279560L, keys.key(other));
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        final String source = LongStream.of(RANDOM).mapToObj(l -> "0x" + Long.toHexString(l) + "ULL")
+                .collect(Collectors.joining(",\n", "const uint64 Random64[781] = {\n", "\n};\n"));
+        final PolyglotKeys keys = PolyglotKeys.load(stream(source));
+        final Board board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        assertEquals(KEYS.key(board), keys.key(board));
+
+        assertThrows(IllegalArgumentException.class, () -> PolyglotKeys.load(stream("0x1, 0x2")));
+        assertThrows(IllegalArgumentException.class, () -> PolyglotKeys.load(stream(source + ", 0x0")));
+        assertThrows(IllegalArgumentException.class, () -> new PolyglotKeys(new long[780]));
+    }
+
+    @Test
+    void testBook(@TempDir Path dir) throws IOException {
+        final Board startpos = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        final Board castling = Board.from("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        final long startKey = KEYS.key(startpos);
+        final long castlingKey = KEYS.key(castling);
+        // Book entries are sorted by unsigned key
+        final boolean startFirst = Long.compareUnsigned(startKey, castlingKey) < 0;
+        final Path file = dir.resolve("book.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            if (!startFirst) {
+                write(out, castlingKey, "e1h1", 1);
+            }
+            write(out, startKey, "e2e4", 10);
+            write(out, startKey, "d2d4", 20);
+            write(out, startKey, "g1f3", 5);
+            if (startFirst) {
+                write(out, castlingKey, "e1h1", 1);
+            }
+        }
+
+        try (PolyglotBook book = PolyglotBook.open(file, KEYS)) {
+            assertEquals(4, book.size());
+            final int first = book.firstIndex(startKey);
+            assertEquals(startFirst ? 0 : 1, first);
+            assertEquals(first + 1, book.bestIndex(startKey));
+            assertEquals(20, book.weight(first + 1));
+            assertEquals(0, book.learn(first));
+            assertEquals(-1, book.firstIndex(startKey + 1));
+            assertEquals(-1, book.bestIndex(startKey + 1));
+
+            assertEquals(TestUtils.getLegalMove(startpos, "d2", "d4"), book.bestMove(startpos));
+            assertEquals(TestUtils.getLegalMove(castling, "e1", "g1"), book.bestMove(castling));
+            assertNull(book.bestMove(Board.from("4k3/8/8/8/8/8/8/4K3 w - - 0 1")));
+            assertThrows(IndexOutOfBoundsException.class, () -> book.key(4));
+        }
+    }
+
+    @Test
+    void testInvalidBook(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("book.bin");
+        Files.write(file, new byte[PolyglotBook.ENTRY_SIZE + 1]);
+        assertThrows(IllegalArgumentException.class, () -> PolyglotBook.open(file, KEYS));
+    }
+
+    @Test
+    void testToMove() {
+        final Board board = Board.from("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        assertEquals(TestUtils.getLegalMove(board, "e1", "g1"), PolyglotBook.toMove(polyglot("e1h1"), board));
+        assertEquals(TestUtils.getLegalMove(board, "e1", "c1"), PolyglotBook.toMove(polyglot("e1a1"), board));
+        assertEquals(TestUtils.getLegalMove(board, "e5", "d6"), PolyglotBook.toMove(polyglot("e5d6"), board));
+        assertEquals(TestUtils.getLegalMove(board, "a1", "a8"), PolyglotBook.toMove(polyglot("a1a8"), board));
+        assertEquals(new Move(49, 57, Move.PROMOTE_TO_KNIGHT_FLAG), PolyglotBook.toMove(polyglot("b7b8") | 1 << 12, board));
+        assertEquals(new Move(49, 56, Move.PROMOTE_TO_QUEEN_FLAG), PolyglotBook.toMove(polyglot("b7a8") | 4 << 12, board));
+    }
+
+    private static void write(DataOutputStream out, long key, String move, int weight) throws IOException {
+        out.writeLong(key);
+        out.writeShort(polyglot(move));
+        out.writeShort(weight);
+        out.writeInt(0);
+    }
+
+    private static int polyglot(String uci) {
+        final int from = (uci.charAt(0) - 'a') + 8 * (uci.charAt(1) - '1');
+        final int to = (uci.charAt(2) - 'a') + 8 * (uci.charAt(3) - '1');
+        return from << 6 | to;
+    }
+
+    private static void play(Board board, String... moves) {
+        for (String move : moves) {
+            board.makeMove(TestUtils.getLegalMove(board, move.substring(0, 2), move.substring(2)));
+        }
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,164 @@
+package com.kelseyde.calvin.utils.fen;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.utils.notation.EPDReader;
+import com.kelseyde.calvin.utils.notation.EPDWriter;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EPDTest {
+
+    private static final String SUITE = """
+            2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - bm Qg6; id "WAC.001";
+            r1b1k2r/ppppnppp/2n2q2/2b5/3NP3/2P1B3/PP3PPP/RN1QKB1R w KQkq - bm Nf5 Nb5; am Qd2; c0 "a comment; with a semicolon";
+
+            rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 ;D1 20 ;D2 400 ;D3 8902\r
+            4k3/8/8/8/8/8/8/4K3 b - - hmvc 37; noop; bm e8d7;""";
+
+    @Test
+    void testRead() throws IOException {
+        try (EPDReader reader = new EPDReader(stream(SUITE))) {
+            final Board board = new Board();
+            assertTrue(reader.next(board));
+            assertEquals(1, reader.lineNumber());
+            assertEquals("2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1", FEN.toFEN(board));
+            assertEquals(2, reader.operationCount());
+            assertEquals("bm", reader.opcode(0));
+            assertEquals("id", reader.opcode(1));
+            assertEquals("WAC.001", reader.operand("id"));
+            assertEquals(List.of("g3g6"), toUCI(reader.moves("bm")));
+            assertFalse(reader.hasOperation("am"));
+            assertNull(reader.operand("am"));
+            assertTrue(reader.moves("am").isEmpty());
+
+            assertTrue(reader.next(board));
+            assertEquals(List.of("d4f5", "d4b5"), toUCI(reader.moves("bm")));
+            assertEquals("Nf5 Nb5", reader.operand("bm"));
+            assertEquals(List.of("Nf5", "Nb5"), reader.operands("bm"));
+            assertEquals(List.of("d1d2"), toUCI(reader.moves("am")));
+            assertEquals("a comment; with a semicolon", reader.operand("c0"));
+            assertEquals(List.of("a comment; with a semicolon"), reader.operands("c0"));
+
+            // The blank line is skipped, the move counters are accepted
+            assertTrue(reader.next(board));
+            assertEquals(4, reader.lineNumber());
+            assertEquals(FEN.STARTPOS, FEN.toFEN(board));
+            assertEquals(List.of("D1", "D2", "D3"), List.of(reader.opcode(0), reader.opcode(1), reader.opcode(2)));
+            assertEquals("8902", reader.operand("D3"));
+
+            // The half move clock is applied, an operation may have no operand, UCI moves are accepted
+            assertTrue(reader.next(board));
+            assertEquals(37, board.getState().getHalfMoveClock());
+            assertTrue(reader.hasOperation("noop"));
+            assertEquals("", reader.operand("noop"));
+            assertEquals(List.of("e8d7"), toUCI(reader.moves("bm")));
+
+            assertFalse(reader.next(board));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.opcode(0));
+        }
+    }
+
+    @Test
+    void testInvalid() throws IOException {
+        final String epd = """
+                4k3/8/8/8/8/8/8/4K3 w - - bm Kd8;
+                8/8/8/8/8/8/8/4K3 w - - id "no black king";
+                4k3/8/8/8/8/8/8/4K3 w - - hmvc x;
+                4k3/8/8/8/8/8/8/4K3 w - - id "valid";
+                """;
+        try (EPDReader reader = new EPDReader(stream(epd))) {
+            final Board board = new Board();
+            assertTrue(reader.next(board));
+            assertThrows(IllegalArgumentException.class, () -> reader.moves("bm"));
+            assertThrows(IllegalArgumentException.class, () -> reader.next(board));
+            assertThrows(IllegalArgumentException.class, () -> reader.next(board));
+            // The reader recovers from the errors
+            assertTrue(reader.next(board));
+            assertEquals("valid", reader.operand("id"));
+            assertEquals(4, reader.lineNumber());
+        }
+    }
+
+    @Test
+    void testLongLines() throws IOException {
+        // Lines longer than the read buffer
+        final String comment = "x".repeat(100_000);
+        final String line = FEN.STARTPOS.substring(0, FEN.STARTPOS.length() - 4) + " c0 \"" + comment + "\";\n";
+        try (EPDReader reader = new EPDReader(stream(line.repeat(3)))) {
+            final Board board = new Board();
+            for (int i = 0; i < 3; i++) {
+                assertTrue(reader.next(board));
+                assertEquals(comment, reader.operand("c0"));
+            }
+            assertFalse(reader.next(board));
+        }
+    }
+
+    @Test
+    void testWrite() throws IOException {
+        final StringWriter out = new StringWriter();
+        try (EPDWriter writer = new EPDWriter(out)) {
+            final Map<String, String> operations = new LinkedHashMap<>();
+            operations.put("bm", "Qg6");
+            operations.put("id", "WAC.001");
+            operations.put("c1", "semi;colon");
+            operations.put("noop", "");
+            writer.write(FEN.toBoard("2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1"), operations);
+            writer.write(FEN.toBoard("4k3/8/8/8/8/8/8/4K3 b - - 37 80"));
+            writer.write(FEN.toBoard("nbbqrknr/pppppppp/8/8/8/8/PPPPPPPP/NBBQRKNR w HEhe - 0 1", ChessVariant.CHESS960));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(new Board(), Map.of("id", "a\"quote")));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(new Board(), Map.of("b m", "e4")));
+        }
+        assertEquals("""
+                2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - bm Qg6; id "WAC.001"; c1 "semi;colon"; noop;
+                4k3/8/8/8/8/8/8/4K3 b - - hmvc 37;
+                nbbqrknr/pppppppp/8/8/8/8/PPPPPPPP/NBBQRKNR w HEhe -
+                """, out.toString());
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EPDWriter writer = new EPDWriter(bytes); EPDReader reader = new EPDReader(stream(SUITE))) {
+            final Board board = new Board();
+            while (reader.next(board)) {
+                final Map<String, String> operations = new LinkedHashMap<>();
+                for (int i = 0; i < reader.operationCount(); i++) {
+                    final String opcode = reader.opcode(i);
+                    if (!EPDReader.HALF_MOVE_CLOCK.equals(opcode)) {
+                        operations.put(opcode, reader.operand(opcode));
+                    }
+                }
+                writer.write(board, operations);
+            }
+        }
+        assertEquals("""
+                2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - bm Qg6; id "WAC.001";
+                r1b1k2r/ppppnppp/2n2q2/2b5/3NP3/2P1B3/PP3PPP/RN1QKB1R w KQkq - bm Nf5 Nb5; am Qd2; c0 "a comment; with a semicolon";
+                rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - D1 20; D2 400; D3 8902;
+                4k3/8/8/8/8/8/8/4K3 b - - hmvc 37; noop; bm e8d7;
+                """, bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> toUCI(List<Move> moves) {
+        return moves.stream().map(Move::toUCI).toList();
+    }
+}
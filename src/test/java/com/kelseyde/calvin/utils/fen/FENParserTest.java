@@ -0,0 +1,154 @@
+package com.kelseyde.calvin.utils.fen;
+
+import static com.kelseyde.calvin.utils.notation.FENParser.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Square;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.utils.notation.FEN;
+import com.kelseyde.calvin.utils.notation.FENParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class FENParserTest {
+
+    private static final List<String> FENS = List.of(
+            FEN.STARTPOS,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "rnbqkb1r/pp1p1ppp/4pn2/2pP4/2P5/8/PP2PPPP/RNBQKBNR w KQkq c6 0 4",
+            "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3",
+            "2r3k1/p4p2/3Rp2p/1p2P1pK/8/1P4P1/P3Q2P/1q6 b - - 37 60",
+            "4k3/1P6/8/8/8/8/6p1/4K3 w - -"
+    );
+
+    private final FENParser parser = new FENParser();
+
+    @Test
+    void testSameAsFEN() {
+        final Board board = new Board();
+        for (String fen : FENS) {
+            assertEquals(OK, parser.parse(fen, board), fen);
+            assertSameBoard(FEN.toBoard(fen), board);
+        }
+    }
+
+    @Test
+    void testChess960() {
+        final List<String> fens = List.of(
+                "nbbqrknr/pppppppp/8/8/8/8/PPPPPPPP/NBBQRKNR w KQkq - 0 1",
+                "rn2k1r1/ppp1pp1p/3p2p1/5bn1/P7/2N2B2/1PPPPP2/2BNK1RR w Gkq - 4 4",
+                "1r2k1r1/ppp1pp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/RR2K3 w Bkq - 4 1");
+        final Board board = new Board();
+        board.setVariant(ChessVariant.CHESS960);
+        for (String fen : fens) {
+            assertEquals(OK, parser.parse(fen, board), fen);
+            assertSameBoard(FEN.toBoard(fen, ChessVariant.CHESS960), board);
+        }
+
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r2k3/ppp1ppr1/3p2pp/5bn1/P7/2N2B2/1PPPPP2/RR2K3 w Bqg - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r4r1/pppkpp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/RR2K3 w Bqg - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r4rk/ppp1pp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/1R2K1R1 w KQq - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r3rk1/ppp1pp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/1R2KR2 w k - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r2kr2/ppp1pp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/1R1K1R2 w KQkq - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r2k1r1/ppp1pp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/1R2KR2 w Kk - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1r2kr2/ppp1pp2/3p2pp/5bn1/P7/2N2B2/1PPPPP2/R3KR2 w Qq - 4 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rr2k3/1pppqppp/2nb1n1b/pP6/4Q3/2NBBP1N/P1PPP1P1/RR2K3 w BQbq - 0 1", board));
+    }
+
+    @Test
+    void testSlices() {
+        final String text = "xx" + FENS.get(1) + "\n" + FENS.get(5) + "\n";
+        final int firstEnd = text.indexOf('\n');
+        final Board board = new Board();
+        assertEquals(OK, parser.parse(text, 2, firstEnd, board));
+        assertSameBoard(FEN.toBoard(FENS.get(1)), board);
+
+        final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(OK, parser.parse(bytes, firstEnd + 1, bytes.length - 1, board));
+        assertSameBoard(FEN.toBoard(FENS.get(5)), board);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> parser.parse(bytes, 2, bytes.length + 1, board));
+        assertThrows(IndexOutOfBoundsException.class, () -> parser.parse(text, 3, 2, board));
+    }
+
+    @Test
+    void testReusedBoard() {
+        final Board board = FEN.toBoard(FENS.get(1));
+        final MoveGenerator movegen = new MoveGenerator();
+        for (int i = 0; i < 10; i++) {
+            board.makeMove(movegen.generateMoves(board).get(0));
+        }
+        board.makeNullMove();
+        assertEquals(OK, parser.parse(FENS.get(3), board));
+        assertSameBoard(FEN.toBoard(FENS.get(3)), board);
+        assertEquals(0, board.getPly());
+        assertNull(board.getStates()[0]);
+
+        // The board can be played after parsing
+        board.makeMove(movegen.generateMoves(board).get(0));
+        board.unmakeMove();
+        assertSameBoard(FEN.toBoard(FENS.get(3)), board);
+    }
+
+    @Test
+    void testWrongFEN() {
+        final Board board = new Board();
+        assertEquals(INVALID_PIECES, parser.parse("", board));
+        assertEquals(INVALID_PIECES, parser.parse("rnbqkbn/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board));
+        assertEquals(INVALID_PIECES, parser.parse("rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board));
+        assertEquals(INVALID_PIECES, parser.parse("rnbqkbnr/pppppppp//8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board));
+        assertEquals(INVALID_PIECES, parser.parse("w KQkq - 0 1", board));
+        assertEquals(INVALID_PIECES, parser.parse("rnTqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board));
+        assertEquals(INVALID_PIECES, parser.parse("rnbqkbnr/pppppppp/44/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board));
+        assertEquals(INVALID_PIECES, parser.parse("rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", board));
+
+        assertEquals(INVALID_SIDE_TO_MOVE, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR KQkq - 0 1", board));
+        assertEquals(INVALID_SIDE_TO_MOVE, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1", board));
+        assertEquals(INVALID_SIDE_TO_MOVE, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", board));
+
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnbqkbnr/pppppppp/8/8/P7/R7/1PPPPPPP/1NBQKBNR w QK - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnbqkbnr/pppppppp/8/8/8/7R/PPPPPPPP/RNBQKBN1 w K - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnbqkbn1/pppppppp/7r/8/8/8/PPPPPPPP/RNBQKBNR w k - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1nbqkbnr/pppppppp/r7/8/8/8/PPPPPPPP/RNBQKBNR w q - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1nbqkbnr/1ppppppp/8/p7/P7/2R5/1PPPPPPP/rNBQKBNR w QK - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnb1kbnr/pppp1ppp/4p3/6q1/8/2P5/PPQPPPPP/RNBK1BNR w K - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnbk1bnr/pppp1ppp/4p3/6q1/8/2P5/PPQPPPPP/RNB1KBNR w q - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("1rb1k1r1/1pppqppp/2n2n1b/pP6/4Q3/2NB1P1N/P1PPP1P1/1RB1K1R1 w KQkq - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KK - 0 1", board));
+        assertEquals(INVALID_CASTLING_RIGHTS, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w", board));
+
+        assertEquals(INVALID_EN_PASSANT, parser.parse("r1b1k2r/1pppqppp/2n2n1b/1P6/p3Q3/3B1P1N/P1PPP1P1/RNB1K2R w KQq a6 0 1", board));
+        assertEquals(INVALID_EN_PASSANT, parser.parse("r1b1k2r/1pppqppp/2n2n1b/pP6/4Q3/3B1P1N/P1PPP1P1/RNB1K2R b KQq a6", board));
+        assertEquals(INVALID_EN_PASSANT, parser.parse("r1b1k2r/1pppqppp/2n2n1b/pP6/4Q3/3B1P1N/P1PPP1P1/RNB1K2R w KQq a5 0 1", board));
+        assertEquals(INVALID_EN_PASSANT, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq", board));
+
+        assertEquals(INVALID_KINGS, parser.parse("r1b1k2r/1pppqppp/2nk1n1b/pP6/4Q3/3B1P1N/P1PPP1P1/RNB1K2R w - - 0 1", board));
+        assertEquals(INVALID_KINGS, parser.parse("r1b4r/1pppqppp/2n2n1b/pP6/4Q3/3B1P1N/P1PPP1P1/RNB1K2R w - - 0 1", board));
+
+        assertEquals(INVALID_MOVE_COUNTERS, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - x 1", board));
+        assertEquals(INVALID_MOVE_COUNTERS, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1x", board));
+        assertEquals(TRAILING_CHARACTERS, parser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 bm e4;", board));
+
+        assertEquals("Invalid castling rights", FENParser.message(INVALID_CASTLING_RIGHTS));
+        assertThrows(IllegalArgumentException.class, () -> FENParser.message(-1));
+    }
+
+    private static void assertSameBoard(Board expected, Board actual) {
+        assertEquals(FEN.toFEN(expected), FEN.toFEN(actual));
+        assertEquals(expected.getWhitePieces(), actual.getWhitePieces());
+        assertEquals(expected.getBlackPieces(), actual.getBlackPieces());
+        for (int square = 0; square < Square.COUNT; square++) {
+            assertEquals(expected.pieceAt(square), actual.pieceAt(square));
+        }
+        assertEquals(expected.getState(), actual.getState());
+        assertArrayEquals(expected.nonPawnKeys(), actual.nonPawnKeys());
+        assertEquals(expected.isWhite(), actual.isWhite());
+    }
+}
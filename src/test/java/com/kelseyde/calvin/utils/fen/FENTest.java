@@ -8,11 +8,19 @@ import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.BoardState;
 import com.kelseyde.calvin.board.Castling;
 import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.board.Piece;
 import com.kelseyde.calvin.board.Square;
 import com.kelseyde.calvin.utils.notation.FEN;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 class FENTest {
 
     @Test
@@ -67,6 +75,52 @@ class FENTest {
         assertEquals(0, state.getEnPassantFile());
     }
     
+    @Test
+    void testWrite() {
+        final String fen = "r1b1k2r/1pppqppp/2n2n1b/pP6/4Q3/3B1P1N/P1PPP1P1/RNB1K2R w KQq a6 12 1";
+        final Board board = FEN.toBoard(fen);
+        final StringBuilder builder = new StringBuilder("fen ");
+        FEN.write(board, builder);
+        assertEquals("fen " + fen, builder.toString());
+
+        final ByteBuffer buffer = ByteBuffer.allocate(2 * FEN.MAX_LENGTH);
+        FEN.write(board, buffer);
+        buffer.put((byte) '\n');
+        final Board chess960 = FEN.toBoard("rn2k1r1/ppp1pp1p/3p2p1/5bn1/P7/2N2B2/1PPPPP2/2BNK1RR w Gkq - 4 1", ChessVariant.CHESS960);
+        FEN.write(chess960, buffer);
+        assertEquals(fen + "\n" + FEN.toFEN(chess960), new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+        assertEquals("rn2k1r1/ppp1pp1p/3p2p1/5bn1/P7/2N2B2/1PPPPP2/2BNK1RR w Gga - 4 1", FEN.toFEN(chess960));
+
+        assertThrows(BufferOverflowException.class, () -> FEN.write(board, ByteBuffer.allocate(10)));
+        final Appendable failing = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException();
+            }
+            @Override
+            public void flush() {}
+            @Override
+            public void close() {}
+        };
+        assertThrows(UncheckedIOException.class, () -> FEN.write(board, failing));
+    }
+
+    @Test
+    void testWriteEnPassantSquare() {
+        // The en passant square is behind the pawn that was just pushed: rank 3 for white, rank 6 for black
+        final Board board = FEN.toBoard(FEN.STARTPOS);
+        board.makeMove(Move.fromUCI("e2e4", Move.PAWN_DOUBLE_MOVE_FLAG));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", FEN.toFEN(board));
+        board.makeMove(Move.fromUCI("c7c5", Move.PAWN_DOUBLE_MOVE_FLAG));
+        final String fen = "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq c6 0 2";
+        assertEquals(fen, FEN.toFEN(board));
+        final ByteBuffer buffer = ByteBuffer.allocate(FEN.MAX_LENGTH);
+        FEN.write(board, buffer);
+        assertEquals(fen, new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+        // The written square is parsed back to the same position
+        assertEquals(board.key(), FEN.toBoard(fen).key());
+    }
+
     private void assertChess960FenEquals(String expected, String actual) {
         final boolean ok =new FENComparator().withStrictCastling(false).withStrictMoveNumber(false).areEqual(expected, actual);
         assertTrue(ok, expected + " is not a FEN equivalent of " + actual);
@@ -0,0 +1,255 @@
+package com.kelseyde.calvin.utils.pgn;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.utils.notation.FEN;
+import com.kelseyde.calvin.utils.notation.PGN;
+import com.kelseyde.calvin.utils.notation.PGNReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PGNReaderTest {
+
+    private static final String OPERA_GAME = """
+            [Event "Paris"]
+            [Site "Paris FRA"]
+            [White "Morphy, Paul"]
+            [Black "Duke Karl / Count \\"Isouard\\""]
+            [Result "1-0"]
+
+            1.e4 e5 2.Nf3 d6 3.d4 Bg4 4.dxe5 {A comment (with parenthesis)} Bxf3 $2 5.Qxf3 (5.gxf3 dxe5 (5... Nc6)) dxe5
+            6.Bc4!? Nf6 ; a line comment
+            7.Qb3 Qe7 8.Nc3 c6 9.Bg5 b5 10.Nxb5 cxb5 11.Bxb5+ Nbd7 12.O-O-O Rd8 13.Rxd7 Rxd7 14.Rd1 Qe6
+            15.Bxd7+ Nxd7 16.Qb8+ Nxb8 17.Rd8# 1-0
+            """;
+    private static final String OPERA_GAME_FEN = "1n1Rkb1r/p4ppp/4q3/4p1B1/4P3/8/PPP2PPP/2K5 b k - 1 17";
+
+    private static final String FEN_GAME = """
+            [Event "Promotion"]
+            [FEN "4k3/1P6/8/8/8/8/6p1/4K3 w - - 0 1"]
+
+            1. b8=Q+ Kd7 2. Qb5+ Kd6 3. Kd2 g1N *
+            """;
+
+    private static final String CHESS960_GAME = """
+            [Event "Chess960"]
+            [Variant "Chess960"]
+            [FEN "4k3/8/8/8/8/8/8/RR2K2R w AH - 0 1"]
+
+            1. O-O Ke7 2. Rb2
+            """;
+
+    private static final String ILLEGAL_GAME = """
+            [Event "Illegal"]
+
+            1. e4 e5 2. Ke3 Nc6 1/2-1/2
+            """;
+
+    @Test
+    void testRead() {
+        final List<Game> games = read(OPERA_GAME + "\n" + FEN_GAME + "\n" + CHESS960_GAME);
+        assertEquals(3, games.size());
+
+        final Game opera = games.get(0);
+        assertEquals(0, opera.offset);
+        assertEquals("Duke Karl / Count \"Isouard\"", opera.tags.get(PGN.BLACK_TAG));
+        assertEquals(PGN.WHITE_WON, opera.result);
+        assertEquals(OPERA_GAME_FEN, opera.fen);
+        assertEquals(33, opera.moves.size());
+        assertEquals("e2e4", Move.toUCI(opera.moves.get(0)));
+        assertNull(opera.error);
+
+        final Game promotion = games.get(1);
+        assertEquals(OPERA_GAME.length() + 1, promotion.offset);
+        assertEquals(PGN.PLAYING, promotion.result);
+        assertEquals("8/8/3k4/1Q6/8/8/3K4/6n1 w - - 0 4", promotion.fen);
+        assertEquals(List.of("b7b8q", "e8d7", "b8b5", "d7d6", "e1d2", "g2g1n"), promotion.moves.stream().map(Move::toUCI).toList());
+
+        final Game chess960 = games.get(2);
+        assertEquals(ChessVariant.CHESS960, chess960.variant);
+        assertEquals(PGN.PLAYING, chess960.result);
+        assertTrue(chess960.fen.startsWith("8/4k3/8/8/8/8/1R6/R4RK1 b - -"), chess960.fen);
+    }
+
+    @Test
+    void testVariantTag() {
+        // The variant name is not case sensitive
+        final List<Game> games = read(CHESS960_GAME.replace("Chess960\"]", "CHESS960\"]") + "\n"
+                + OPERA_GAME.replace("[Event", "[Variant \"Chess9600\"]\n[Event"));
+        assertEquals(ChessVariant.CHESS960, games.get(0).variant);
+        assertEquals(ChessVariant.STANDARD, games.get(1).variant);
+    }
+
+    @Test
+    void testError() {
+        final List<Game> games = read(ILLEGAL_GAME + "\n" + OPERA_GAME);
+        assertEquals(2, games.size());
+        assertNotNull(games.get(0).error);
+        assertTrue(games.get(0).error.contains("Ke3"), games.get(0).error);
+        assertEquals(ILLEGAL_GAME.indexOf("Ke3"), games.get(0).errorOffset);
+        assertNull(games.get(0).result);
+        assertEquals(OPERA_GAME_FEN, games.get(1).fen);
+    }
+
+    @Test
+    void testInvalidTagsAndFEN() {
+        final String pgn = "[Event \"Unterminated]\n[Site \"?\"]\n\n1. e4 *\n\n[FEN \"8/8/8/8/8/8/8/8 w - - 0 1\"]\n\n1. e4 *\n\n" + FEN_GAME;
+        final List<Game> games = read(pgn);
+        assertEquals(3, games.size());
+        assertNotNull(games.get(0).error);
+        assertNotNull(games.get(1).error);
+        assertNull(games.get(2).error);
+        assertEquals(6, games.get(2).moves.size());
+    }
+
+    @Test
+    void testSkipMoves() {
+        final List<String> results = new ArrayList<>();
+        new PGNReader().read(buffer(OPERA_GAME + FEN_GAME), new PGNReader.Handler() {
+            @Override
+            public boolean startMoves(Board board) {
+                return false;
+            }
+
+            @Override
+            public void move(Board board, Move move) {
+                fail("Moves should be skipped");
+            }
+
+            @Override
+            public void endGame(Board board, String result) {
+                results.add(result + " " + board.getPly());
+            }
+        });
+        assertEquals(List.of("1-0 0", "* 0"), results);
+    }
+
+    @Test
+    void testFiles(@TempDir Path dir) throws IOException {
+        final StringBuilder pgn = new StringBuilder("﻿");
+        final int count = 500;
+        for (int i = 0; i < count; i++) {
+            pgn.append(switch (i % 3) {
+                case 0 -> OPERA_GAME;
+                case 1 -> FEN_GAME;
+                default -> ILLEGAL_GAME;
+            }).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        final Path file = dir.resolve("games.pgn");
+        Files.writeString(file, pgn, StandardCharsets.UTF_8);
+
+        final List<String> sequential = new ArrayList<>();
+        new PGNReader().read(file, new Collector(sequential));
+        assertEquals(count, sequential.size());
+        assertEquals(OPERA_GAME_FEN, sequential.get(0).substring(sequential.get(0).indexOf(' ') + 1));
+
+        final List<String> parallel = Collections.synchronizedList(new ArrayList<>());
+        PGNReader.read(file, 4, () -> new Collector(parallel));
+        assertEquals(count, parallel.size());
+        final List<String> sorted = new ArrayList<>(parallel);
+        sorted.sort((s1, s2) -> Long.compare(Long.parseLong(s1.substring(0, s1.indexOf(' '))), Long.parseLong(s2.substring(0, s2.indexOf(' ')))));
+        assertEquals(sequential, sorted);
+
+        assertThrows(IllegalArgumentException.class, () -> PGNReader.read(file, 0, () -> new Collector(parallel)));
+    }
+
+    private static ByteBuffer buffer(String pgn) {
+        return ByteBuffer.wrap(pgn.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Game> read(String pgn) {
+        final List<Game> games = new ArrayList<>();
+        new PGNReader().read(buffer(pgn), new PGNReader.Handler() {
+            private Game game;
+
+            @Override
+            public void startGame(long offset) {
+                game = new Game(offset);
+                games.add(game);
+            }
+
+            @Override
+            public void tag(CharSequence name, CharSequence value) {
+                game.tags.put(name.toString(), value.toString());
+            }
+
+            @Override
+            public boolean startMoves(Board board) {
+                game.variant = board.variant();
+                return true;
+            }
+
+            @Override
+            public void move(Board board, Move move) {
+                game.moves.add(move);
+            }
+
+            @Override
+            public void endGame(Board board, String result) {
+                game.result = result;
+                game.fen = FEN.toFEN(board);
+            }
+
+            @Override
+            public void error(long offset, String message) {
+                game.errorOffset = offset;
+                game.error = message;
+            }
+        });
+        return games;
+    }
+
+    private static class Game {
+        private final long offset;
+        private final Map<String, String> tags = new TreeMap<>();
+        private final List<Move> moves = new ArrayList<>();
+        private ChessVariant variant;
+        private String result;
+        private String fen;
+        private long errorOffset;
+        private String error;
+
+        private Game(long offset) {
+            this.offset = offset;
+        }
+    }
+
+    // Records the offset and the final position of each game, or its error
+    private static class Collector implements PGNReader.Handler {
+        private final List<String> games;
+        private long offset;
+
+        private Collector(List<String> games) {
+            this.games = games;
+        }
+
+        @Override
+        public void startGame(long offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public void endGame(Board board, String result) {
+            games.add(offset + " " + FEN.toFEN(board));
+        }
+
+        @Override
+        public void error(long offset, String message) {
+            games.add(this.offset + " " + message);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.kelseyde.calvin.utils.pgn;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.utils.notation.FEN;
+import com.kelseyde.calvin.utils.notation.PGN;
+import com.kelseyde.calvin.utils.notation.PGNReader;
+import com.kelseyde.calvin.utils.notation.PGNWriter;
+import com.kelseyde.calvin.utils.notation.SAN;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PGNWriterTest {
+
+    private static final String OPERA_GAME = "e4 e5 Nf3 d6 d4 Bg4 dxe5 Bxf3 Qxf3 dxe5 Bc4 Nf6 Qb3 Qe7 Nc3 c6 Bg5 b5 Nxb5 cxb5 " +
+            "Bxb5+ Nbd7 O-O-O Rd8 Rxd7 Rxd7 Rd1 Qe6 Bxd7+ Nxd7 Qb8+ Nxb8 Rd8#";
+
+    @Test
+    void testWrite() throws IOException {
+        final Board board = play(FEN.STARTPOS, ChessVariant.STANDARD, OPERA_GAME);
+        final String fen = FEN.toFEN(board);
+        final Map<String, String> tags = new LinkedHashMap<>();
+        tags.put(PGN.WHITE_TAG, "Morphy, Paul");
+        tags.put("Annotator", "A \"quoted\" name \\");
+        tags.put(PGN.EVENT_TAG, "Paris");
+        final StringWriter out = new StringWriter();
+        try (PGNWriter writer = new PGNWriter(out)) {
+            writer.write(board, tags);
+        }
+        assertEquals(fen, FEN.toFEN(board));
+        assertEquals(33, board.getPly());
+
+        final String pgn = out.toString();
+        assertTrue(pgn.startsWith("""
+                [Event "Paris"]
+                [Site "?"]
+                [Date "????.??.??"]
+                [Round "?"]
+                [White "Morphy, Paul"]
+                [Black "?"]
+                [Result "1-0"]
+                [Annotator "A \\"quoted\\" name \\\\"]
+
+                1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7 8.
+                Nc3 c6 9. Bg5                """), pgn);
+        assertTrue(pgn.endsWith("Rd8# 1-0\n\n"), pgn);
+        for (String line : pgn.split("\n")) {
+            assertTrue(line.length() < 80, line);
+        }
+
+        final List<String> read = read(pgn);
+        assertEquals(List.of("A \"quoted\" name \\", "1-0", fen), read);
+    }
+
+    @Test
+    void testManyGames() throws IOException {
+        final Board chess960 = play("4k3/8/8/8/8/8/8/RR2K2R w AH - 0 1", ChessVariant.CHESS960, "O-O Ke7 Rb2");
+        final Board blackFirst = play("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", ChessVariant.STANDARD, "e5 Nf3");
+        final Board empty = FEN.toBoard(FEN.STARTPOS);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PGNWriter writer = new PGNWriter(bytes)) {
+            writer.write(chess960);
+            writer.write(blackFirst, Map.of(PGN.RESULT_TAG, PGN.DRAW));
+            writer.write(empty);
+        }
+        final String pgn = bytes.toString();
+        assertTrue(pgn.contains("[Variant \"Chess960\"]\n[FEN \"4k3/8/8/8/8/8/8/RR2K2R w HA - 0 1\"]\n\n1. O-O Ke7 2. Rb2 *\n"), pgn);
+        assertTrue(pgn.contains("\n1... e5 2. Nf3 1/2-1/2\n"), pgn);
+        assertTrue(pgn.endsWith("[Result \"*\"]\n\n*\n\n"), pgn);
+
+        final List<String> read = read(pgn);
+        assertEquals(List.of("*", FEN.toFEN(chess960), "1/2-1/2", FEN.toFEN(blackFirst), "*", FEN.STARTPOS), read);
+    }
+
+    @Test
+    void testWithoutGameSeparator() throws IOException {
+        final Board board = play("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", ChessVariant.STANDARD, "e5 Nf3");
+        final StringWriter out = new StringWriter();
+        try (PGNWriter writer = new PGNWriter(out).withGameSeparator(false)) {
+            writer.write(board);
+        }
+        assertTrue(out.toString().endsWith("\n\n1... e5 2. Nf3 *"), out.toString());
+    }
+
+    @Test
+    void testPGNCompatibility() {
+        // PGN.toString keeps the output of the previous implementation: no termination marker, no trailing new line
+        final Board board = play(FEN.STARTPOS, ChessVariant.STANDARD, OPERA_GAME);
+        assertEquals("""
+                [Event "?"]
+                [Site "?"]
+                [Date "????.??.??"]
+                [Round "?"]
+                [White "?"]
+                [Black "?"]
+                [Result "1-0"]
+
+                1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7 8.
+                Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7 14.
+                Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8#""", PGN.toPGN(board));
+
+        assertEquals("""
+                [Event "?"]
+                [Site "?"]
+                [Date "????.??.??"]
+                [Round "?"]
+                [White "?"]
+                [Black "?"]
+                [Result "*"]
+
+                """, new PGN(FEN.toBoard(FEN.STARTPOS)).toString());
+
+        // Except for the games that start with black to move, numbered "1... e5" instead of "1. e5"
+        final Board blackFirst = play("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", ChessVariant.STANDARD, "e5 Nf3");
+        assertTrue(PGN.toPGN(blackFirst).endsWith("""
+                [FEN "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"]
+
+                1... e5 2. Nf3"""));
+    }
+
+    private static Board play(String fen, ChessVariant variant, String moves) {
+        final Board board = FEN.toBoard(fen, variant);
+        for (String san : moves.split(" ")) {
+            board.makeMove(SAN.toMove(board, san));
+        }
+        return board;
+    }
+
+    // Reads the games, returns the Annotator tags, the results and the final positions
+    private static List<String> read(String pgn) {
+        final List<String> result = new ArrayList<>();
+        new PGNReader().read(ByteBuffer.wrap(pgn.getBytes()), new PGNReader.Handler() {
+            @Override
+            public void tag(CharSequence name, CharSequence value) {
+                if ("Annotator".contentEquals(name)) {
+                    result.add(value.toString());
+                }
+            }
+
+            @Override
+            public void endGame(Board board, String gameResult) {
+                result.add(gameResult);
+                result.add(FEN.toFEN(board));
+            }
+
+            @Override
+            public void error(long offset, String message) {
+                fail(message);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package com.kelseyde.calvin.utils.pgn;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.ChessVariant;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.utils.notation.FEN;
+import com.kelseyde.calvin.utils.notation.SAN;
+import com.kelseyde.calvin.utils.notation.SANConverter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SANTest {
+
+    private static final List<String> FENS = List.of(
+            FEN.STARTPOS,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3",
+            "8/8/8/K2pP2r/8/8/8/7k w - d6 0 2",
+            "1k6/8/8/8/8/1Q3Q2/8/1Q3Q1K w - - 0 1"
+    );
+
+    @Test
+    void testAllLegalMoves() {
+        final MoveGenerator moveGenerator = new MoveGenerator();
+        for (String fen : FENS) {
+            final Board board = FEN.toBoard(fen);
+            final long key = board.key();
+            for (Move move : moveGenerator.generateMoves(board)) {
+                final String san = SAN.fromMove(move, board);
+                assertEquals(move, SAN.toMove(board, san), fen + " " + san);
+            }
+            // The board is left unchanged
+            assertEquals(key, board.key());
+            assertEquals(0, board.getPly());
+        }
+    }
+
+    @Test
+    void testFromMoves() {
+        final Board board = FEN.toBoard(FEN.STARTPOS);
+        final List<String> game = List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "Nf6", "O-O", "Nxe4", "d4", "Nd6", "Bxc6", "dxc6",
+                "dxe5", "Nf5", "Qxd8+", "Kxd8", "Nc3", "Ke8", "h3", "h5", "Bf4", "Be7", "Rad1", "Be6", "Ng5", "Rh6",
+                "Rfe1", "Bb4", "g4", "hxg4", "hxg4", "Nh4", "Nxe6", "fxe6", "Re4", "Bxc3", "bxc3", "Ng6", "Bg5", "Rh3", "Kg2", "Rxc3");
+        final List<Move> moves = new ArrayList<>();
+        for (String san : game) {
+            final Move move = SAN.toMove(board, san);
+            assertEquals(san, SAN.fromMove(move, board));
+            moves.add(move);
+            board.makeMove(move);
+        }
+        final long key = board.key();
+        for (int i = 0; i < moves.size(); i++) {
+            board.unmakeMove();
+        }
+        assertEquals(game, SAN.fromMoves(board, moves));
+        assertEquals(0, board.getPly());
+        assertEquals(FEN.STARTPOS, FEN.toFEN(board));
+
+        final SANConverter converter = new SANConverter();
+        final StringBuilder san = new StringBuilder();
+        for (Move move : moves) {
+            converter.play(board, move, san);
+            san.append(' ');
+        }
+        assertEquals(String.join(" ", game) + " ", san.toString());
+        assertEquals(key, board.key());
+    }
+
+    @Test
+    void testCheckAndMate() {
+        final Board castling = FEN.toBoard("5k2/8/8/8/8/8/8/4K2R w K - 0 1");
+        assertEquals("O-O+", SAN.fromMove(SAN.toMove(castling, "O-O"), castling));
+        final Board mate = FEN.toBoard("6k1/5ppp/8/8/8/8/8/R3K3 w - - 0 1");
+        assertEquals("Ra8#", SAN.fromMove(SAN.toMove(mate, "Ra8"), mate));
+        final Board promotion = FEN.toBoard("k7/2P5/8/8/8/8/8/4K3 w - - 0 1");
+        assertEquals("c8=Q+", SAN.fromMove(SAN.toMove(promotion, "c8=Q"), promotion));
+        assertEquals("c8=N", SAN.fromMove(SAN.toMove(promotion, "c8=N"), promotion));
+    }
+
+    @Test
+    void testLenientNotation() {
+        final Board board = FEN.toBoard("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 b kq - 0 1");
+        assertEquals("b2a1q", Move.toUCI(SAN.toMove(board, "bxa1Q")));
+        assertEquals("b2a1q", Move.toUCI(SAN.toMove(board, "bxa1=Q+")));
+        assertEquals("b2b1n", Move.toUCI(SAN.toMove(board, "b1N")));
+        assertEquals("e8c8", Move.toUCI(SAN.toMove(board, "0-0-0")));
+        assertEquals("e8c8", Move.toUCI(SAN.toMove(board, "O-O-O!?")));
+        assertEquals("a3a4", Move.toUCI(SAN.toMove(board, "Qa3a4")));
+        assertEquals("f6e4", Move.toUCI(SAN.toMove(board, "Nf6xe4")));
+    }
+
+    @Test
+    void testChess960Castling() {
+        final Board board = FEN.toBoard("4k3/8/8/8/8/8/8/RR2K2R w AH - 0 1", ChessVariant.CHESS960);
+        final Move move = SAN.toMove(board, "O-O");
+        assertTrue(move.isCastling());
+        assertEquals("e1h1", Move.toUCI(move));
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(board, "O-O-O"));
+    }
+
+    @Test
+    void testInvalidMoves() {
+        final Board board = FEN.toBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        final List<String> invalid = List.of("", "+", "e9", "i4", "Nxe4x", "Zf3",
+                // Illegal moves
+                "e5", "Nc5", "Qxa8", "Bxb4", "Kd2", "d8=Q", "a3=Q", "a4a5", "exf6");
+        for (String san : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> SAN.toMove(board, san), san);
+        }
+        // Ambiguous moves
+        final Board queens = FEN.toBoard("1k6/8/8/8/8/1Q3Q2/8/1Q3Q1K w - - 0 1");
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(queens, "Qd3"));
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(queens, "Qb2"));
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(queens, "Qbd3"));
+        assertEquals("b3d3", Move.toUCI(SAN.toMove(queens, "Qb3d3")));
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(queens, "Q1d3"));
+        assertEquals("f1d3", Move.toUCI(SAN.toMove(queens, "Qf1d3")));
+        // Pinned piece
+        final Board pinned = FEN.toBoard("4k3/4r3/8/8/8/2n5/4N3/4K3 w - - 0 1");
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(pinned, "Nxc3"));
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(pinned, "Nd4"));
+        // Evasion
+        final Board check = FEN.toBoard("4k3/8/8/8/1b6/8/8/1N2K2N w - - 0 1");
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(check, "Nf2"));
+        assertEquals("b1d2", Move.toUCI(SAN.toMove(check, "Nd2")));
+        // En passant discovering a check along the rank
+        final Board enPassant = FEN.toBoard("8/8/8/K2pP2r/8/8/8/7k w - d6 0 2");
+        assertThrows(IllegalArgumentException.class, () -> SAN.toMove(enPassant, "exd6"));
+    }
+}